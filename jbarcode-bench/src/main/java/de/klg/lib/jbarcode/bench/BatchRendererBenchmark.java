@@ -0,0 +1,90 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.bench;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.klg.lib.jbarcode.lib.BarcodeBatchRenderer;
+import de.klg.lib.jbarcode.lib.BarcodeSpec;
+import de.klg.lib.jbarcode.lib.BarcodeType;
+
+/**
+ * Throughput of BarcodeBatchRenderer over the number of worker threads. One
+ * operation is one label, a batch has BenchmarkData.SIZE labels.
+ *
+ * @author Boris Klug
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class BatchRendererBenchmark {
+
+  @Param({ "1", "2", "4", "8", "16", "32" })
+  public int threads;
+
+  @Param({ "true", "false" })
+  public boolean ordered;
+
+  private ForkJoinPool pool;
+  private BarcodeBatchRenderer renderer;
+  private List<BarcodeBatchRenderer.Job> jobs;
+
+  @Setup
+  public void setup() {
+    pool = new ForkJoinPool(threads);
+    renderer = new BarcodeBatchRenderer(pool);
+    renderer.setOrdered(ordered);
+    BarcodeSpec spec = BarcodeSpec.builder(BarcodeType.CODE128).magnification(2).build();
+    jobs = new ArrayList<>();
+    for (String code : BenchmarkData.alphanumeric()) {
+      jobs.add(new BarcodeBatchRenderer.Job(spec, code));
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BenchmarkData.SIZE)
+  public int render(Blackhole bh) throws InterruptedException {
+    return renderer.render(jobs, new BarcodeBatchRenderer.Sink() {
+      @Override
+      public void rendered(int index, BarcodeBatchRenderer.Job job, BufferedImage image) {
+        bh.consume(image);
+      }
+
+      @Override
+      public void failed(int index, BarcodeBatchRenderer.Job job, Exception ex) {
+        bh.consume(ex);
+      }
+    });
+  }
+}
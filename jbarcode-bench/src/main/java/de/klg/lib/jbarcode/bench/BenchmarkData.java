@@ -0,0 +1,205 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.bench;
+
+import java.util.Random;
+
+import de.klg.lib.jbarcode.lib.Barcode128;
+import de.klg.lib.jbarcode.lib.BarcodeEAN;
+import de.klg.lib.jbarcode.lib.BarcodeType;
+
+/**
+ * Input sets for the benchmarks. All sets are generated with a fixed seed, so
+ * every run works on the same data.
+ *
+ * The size of each set is a power of two, so the benchmarks can cycle through
+ * it with a simple mask.
+ *
+ * @author Boris Klug
+ */
+public class BenchmarkData {
+
+  /** Number of codes in every input set */
+  public static final int SIZE = 1024;
+
+  /** Name of the data set with numeric GS1 element strings */
+  public static final String GS1_NUMERIC = "gs1Numeric";
+  /** Name of the data set with mixed alphanumerical codes */
+  public static final String ALPHANUMERIC = "alphanumeric";
+  /** Name of the data set with alphanumerical codes and control characters */
+  public static final String CONTROL_CHARS = "controlChars";
+  /** Name of the data set with letters and digit runs of odd length */
+  public static final String DIGIT_RUNS = "digitRuns";
+
+  private static final String ALNUM = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-./";
+  private static final char[] CONTROLS = { '\t', '\r', '\n', 0x1d, 0x1e, 0x04 };
+
+  private BenchmarkData() {
+  }
+
+  /**
+   * Returns the input set with the given name
+   */
+  public static String[] dataset(String name) {
+    switch (name) {
+    case GS1_NUMERIC:
+      return gs1Numeric();
+    case ALPHANUMERIC:
+      return alphanumeric();
+    case CONTROL_CHARS:
+      return controlChars();
+    case DIGIT_RUNS:
+      return digitRuns();
+    default:
+      throw new IllegalArgumentException("unknown data set '" + name + "'");
+    }
+  }
+
+  /**
+   * Returns the input set with the given name prepared for the given code 128
+   * mode: for CODE128_A no lowercase chars are used and for CODE128_RAW the
+   * codes are converted to raw code 128 text.
+   */
+  public static String[] code128(BarcodeType type, String name) {
+    String[] codes = dataset(name);
+    if (type == BarcodeType.CODE128_A) {
+      for (int i = 0; i < codes.length; i++) {
+        codes[i] = codes[i].toUpperCase();
+      }
+    } else if (type == BarcodeType.CODE128_RAW) {
+      Barcode128 bc = new Barcode128();
+      bc.setCodeType(BarcodeType.CODE128);
+      for (int i = 0; i < codes.length; i++) {
+        codes[i] = bc.toRawText(codes[i]);
+      }
+    }
+    return codes;
+  }
+
+  /**
+   * GS1 element strings like on pallet labels: (01) GTIN, (15) best before date
+   * and (10) lot number.
+   */
+  public static String[] gs1Numeric() {
+    Random rnd = new Random(4711);
+    String[] codes = new String[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      String gtin = digits(rnd, 13);
+      gtin = gtin + BarcodeEAN.calculateEANParity(gtin);
+      String date = String.format("%02d%02d%02d", 20 + rnd.nextInt(10), 1 + rnd.nextInt(12), 1 + rnd.nextInt(28));
+      codes[i] = "01" + gtin + "15" + date + "10" + digits(rnd, 6);
+    }
+    return codes;
+  }
+
+  /**
+   * Article numbers with letters, digits and some punctuation, 8 to 20 chars
+   */
+  public static String[] alphanumeric() {
+    Random rnd = new Random(815);
+    String[] codes = new String[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      int len = 8 + rnd.nextInt(13);
+      StringBuilder sb = new StringBuilder(len);
+      for (int k = 0; k < len; k++) {
+        sb.append(ALNUM.charAt(rnd.nextInt(ALNUM.length())));
+      }
+      codes[i] = sb.toString();
+    }
+    return codes;
+  }
+
+  /**
+   * Alphanumerical codes with embedded control chars (tab, cr, lf, GS, RS, EOT)
+   * like they are used in data matrix style field separation
+   */
+  public static String[] controlChars() {
+    Random rnd = new Random(42);
+    String[] codes = alphanumeric();
+    for (int i = 0; i < SIZE; i++) {
+      StringBuilder sb = new StringBuilder(codes[i]);
+      int n = 1 + rnd.nextInt(3);
+      for (int k = 0; k < n; k++) {
+        sb.insert(rnd.nextInt(sb.length() + 1), CONTROLS[rnd.nextInt(CONTROLS.length)]);
+      }
+      codes[i] = sb.toString();
+    }
+    return codes;
+  }
+
+  /**
+   * Codes made of short letter groups and digit runs with 1 to 9 digits, e.g.
+   * "AB12345c7Xyz001"
+   */
+  public static String[] digitRuns() {
+    Random rnd = new Random(2357);
+    String[] codes = new String[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      StringBuilder sb = new StringBuilder();
+      int groups = 2 + rnd.nextInt(4);
+      for (int g = 0; g < groups; g++) {
+        int letters = 1 + rnd.nextInt(3);
+        for (int k = 0; k < letters; k++) {
+          sb.append(ALNUM.charAt(rnd.nextInt(52)));
+        }
+        sb.append(digits(rnd, 1 + rnd.nextInt(9)));
+      }
+      codes[i] = sb.toString();
+    }
+    return codes;
+  }
+
+  /**
+   * Valid EAN 13 codes including the check digit
+   */
+  public static String[] ean13() {
+    return ean(new Random(13), 12);
+  }
+
+  /**
+   * Valid EAN 8 codes including the check digit
+   */
+  public static String[] ean8() {
+    return ean(new Random(8), 7);
+  }
+
+  /**
+   * UPC-E codes: number system 0, six digits and a check digit
+   */
+  public static String[] upce() {
+    Random rnd = new Random(6);
+    String[] codes = new String[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      codes[i] = "0" + digits(rnd, 7);
+    }
+    return codes;
+  }
+
+  /**
+   * ITF-14 codes (14 digits, so no padding is needed)
+   */
+  public static String[] itf14() {
+    return ean(new Random(14), 13);
+  }
+
+  private static String[] ean(Random rnd, int len) {
+    String[] codes = new String[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      String code = digits(rnd, len);
+      codes[i] = code + BarcodeEAN.calculateEANParity(code);
+    }
+    return codes;
+  }
+
+  private static String digits(Random rnd, int len) {
+    char[] c = new char[len];
+    for (int k = 0; k < len; k++) {
+      c[k] = (char) ('0' + rnd.nextInt(10));
+    }
+    return new String(c);
+  }
+}
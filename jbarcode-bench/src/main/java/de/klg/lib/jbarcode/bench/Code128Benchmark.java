@@ -0,0 +1,85 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.klg.lib.jbarcode.lib.Barcode128;
+import de.klg.lib.jbarcode.lib.Barcode128Decoder;
+import de.klg.lib.jbarcode.lib.BarcodeException;
+import de.klg.lib.jbarcode.lib.BarcodeType;
+
+/**
+ * Throughput of Barcode128.getBars() in all code 128 modes and of the
+ * allocation free Barcode128.encodeInto() into a reused buffer, also followed
+ * by the verification of the bars with Barcode128Decoder.
+ *
+ * @author Boris Klug
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Code128Benchmark {
+
+  @Param({ "CODE128", "CODE128_A", "CODE128_RAW", "EAN128" })
+  public BarcodeType type;
+
+  @Param({ BenchmarkData.GS1_NUMERIC, BenchmarkData.ALPHANUMERIC, BenchmarkData.CONTROL_CHARS })
+  public String dataset;
+
+  private Barcode128 bc;
+  private String[] codes;
+  private byte[] buffer;
+  private final StringBuilder decoded = new StringBuilder(128);
+  private int index;
+
+  @Setup
+  public void setup() {
+    bc = new Barcode128();
+    bc.setCodeType(type);
+    codes = BenchmarkData.code128(type, dataset);
+    int maxLen = 0;
+    for (String code : codes) {
+      maxLen = Math.max(maxLen, code.length());
+    }
+    buffer = new byte[Barcode128.getMaxBarsLength(maxLen)];
+  }
+
+  @Benchmark
+  public byte[] getBars() {
+    bc.setCode(codes[index++ & (BenchmarkData.SIZE - 1)]);
+    return bc.getBars();
+  }
+
+  @Benchmark
+  public int encodeInto() {
+    return bc.encodeInto(codes[index++ & (BenchmarkData.SIZE - 1)], buffer, 0);
+  }
+
+  @Benchmark
+  public int encodeIntoAndDecode() throws BarcodeException {
+    int n = bc.encodeInto(codes[index++ & (BenchmarkData.SIZE - 1)], buffer, 0);
+    decoded.setLength(0);
+    Barcode128Decoder.decode(buffer, 0, n, decoded);
+    return decoded.length();
+  }
+}
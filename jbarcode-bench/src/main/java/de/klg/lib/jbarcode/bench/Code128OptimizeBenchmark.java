@@ -0,0 +1,81 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.klg.lib.jbarcode.lib.Barcode128;
+import de.klg.lib.jbarcode.lib.BarcodeType;
+
+/**
+ * Compares the greedy subset selection of code 128 with the optimizer. The
+ * encode cost is measured as throughput, the average symbol width of the data
+ * set (in modules, without quiet zone) is printed at the start of each trial.
+ *
+ * @author Boris Klug
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Code128OptimizeBenchmark {
+
+  @Param({ "false", "true" })
+  public boolean optimize;
+
+  @Param({ "CODE128", "EAN128" })
+  public BarcodeType type;
+
+  @Param({ BenchmarkData.GS1_NUMERIC, BenchmarkData.ALPHANUMERIC, BenchmarkData.CONTROL_CHARS,
+      BenchmarkData.DIGIT_RUNS })
+  public String dataset;
+
+  private Barcode128 bc;
+  private String[] codes;
+  private byte[] buffer;
+  private int index;
+
+  @Setup
+  public void setup() {
+    bc = new Barcode128();
+    bc.setCodeType(type);
+    bc.setOptimizeSubsets(optimize);
+    codes = BenchmarkData.dataset(dataset);
+    int maxLen = 0;
+    for (String code : codes) {
+      maxLen = Math.max(maxLen, code.length());
+    }
+    buffer = new byte[Barcode128.getMaxBarsLength(maxLen)];
+
+    long sum = 0;
+    for (String code : codes) {
+      bc.setCode(code);
+      sum += bc.getBarsum(bc.getBars());
+    }
+    System.out.printf("%n%s %s optimize=%s: average width %.1f modules%n", type, dataset, optimize,
+        (double) sum / codes.length);
+  }
+
+  @Benchmark
+  public int encodeInto() {
+    return bc.encodeInto(codes[index++ & (BenchmarkData.SIZE - 1)], buffer, 0);
+  }
+}
@@ -0,0 +1,65 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.klg.lib.jbarcode.lib.BarcodeEAN128Textdecoder;
+
+/**
+ * Throughput of the conversion of GS1 element strings to human readable text,
+ * as new String and appended to a reused StringBuilder, and of the validation
+ * of a column of BenchmarkData.SIZE texts.
+ *
+ * @author Boris Klug
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EAN128TextdecoderBenchmark {
+
+  private String[] codes;
+  private int index;
+  private final StringBuilder out = new StringBuilder(64);
+  private final int[] status = new int[BenchmarkData.SIZE];
+
+  @Setup
+  public void setup() {
+    codes = BenchmarkData.gs1Numeric();
+  }
+
+  @Benchmark
+  public String toHumanText() {
+    return BarcodeEAN128Textdecoder.toHumanText(codes[index++ & (BenchmarkData.SIZE - 1)]);
+  }
+
+  @Benchmark
+  public int appendHumanText() {
+    out.setLength(0);
+    BarcodeEAN128Textdecoder.appendHumanText(codes[index++ & (BenchmarkData.SIZE - 1)], out);
+    return out.length();
+  }
+
+  @Benchmark
+  public int validateColumn() {
+    return BarcodeEAN128Textdecoder.validate(codes, status);
+  }
+}
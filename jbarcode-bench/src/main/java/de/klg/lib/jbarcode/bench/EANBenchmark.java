@@ -0,0 +1,75 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.klg.lib.jbarcode.lib.BarcodeEAN;
+import de.klg.lib.jbarcode.lib.BarcodeType;
+
+/**
+ * Throughput of the EAN 13, EAN 8 and UPC-E bar generation.
+ *
+ * @author Boris Klug
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EANBenchmark {
+
+  private BarcodeEAN ean13;
+  private BarcodeEAN ean8;
+  private BarcodeEAN upce;
+  private String[] codes13;
+  private String[] codes8;
+  private String[] codesUpce;
+  private int index;
+
+  @Setup
+  public void setup() {
+    ean13 = new BarcodeEAN();
+    ean13.setCodeType(BarcodeType.EAN13);
+    ean8 = new BarcodeEAN();
+    ean8.setCodeType(BarcodeType.EAN8);
+    upce = new BarcodeEAN();
+    codes13 = BenchmarkData.ean13();
+    codes8 = BenchmarkData.ean8();
+    codesUpce = BenchmarkData.upce();
+  }
+
+  @Benchmark
+  public byte[] getBarsEAN13() {
+    ean13.setCode(codes13[index++ & (BenchmarkData.SIZE - 1)]);
+    return ean13.getBarsEAN13();
+  }
+
+  @Benchmark
+  public byte[] getBarsEAN8() {
+    ean8.setCode(codes8[index++ & (BenchmarkData.SIZE - 1)]);
+    return ean8.getBarsEAN8();
+  }
+
+  @Benchmark
+  public byte[] getBarsUPCE() {
+    upce.setCode(codesUpce[index++ & (BenchmarkData.SIZE - 1)]);
+    return upce.getBarsUPCE();
+  }
+}
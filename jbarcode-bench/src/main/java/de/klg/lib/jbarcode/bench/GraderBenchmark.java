@@ -0,0 +1,78 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.bench;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.klg.lib.jbarcode.lib.Barcode;
+import de.klg.lib.jbarcode.lib.BarcodeException;
+import de.klg.lib.jbarcode.lib.BarcodeGrader;
+import de.klg.lib.jbarcode.lib.BarcodeRenderer;
+
+/**
+ * Throughput of BarcodeGrader with 10 scanlines per image, on the calling
+ * thread and on the common ForkJoinPool.
+ *
+ * @author Boris Klug
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GraderBenchmark {
+
+  private static final int IMAGES = 64;
+
+  @Param({ "EAN13", "CODE128" })
+  public String symbology;
+
+  @Param({ "2" })
+  public int magnification;
+
+  private final BarcodeGrader sequential = new BarcodeGrader();
+  private final BarcodeGrader parallel = new BarcodeGrader(ForkJoinPool.commonPool());
+  private BufferedImage[] images;
+  private int index;
+
+  @Setup
+  public void setup() throws BarcodeException {
+    Barcode bc = RendererSetup.barcode(symbology);
+    String[] codes = RendererSetup.codes(symbology);
+    bc.setMagnification(magnification);
+    images = new BufferedImage[IMAGES];
+    for (int k = 0; k < IMAGES; ++k) {
+      bc.setCode(codes[k]);
+      images[k] = BarcodeRenderer.getBarcodeBufimageDirect(bc);
+    }
+  }
+
+  @Benchmark
+  public BarcodeGrader.Report grade() {
+    return sequential.grade(images[index++ & (IMAGES - 1)]);
+  }
+
+  @Benchmark
+  public BarcodeGrader.Report gradeParallel() {
+    return parallel.grade(images[index++ & (IMAGES - 1)]);
+  }
+}
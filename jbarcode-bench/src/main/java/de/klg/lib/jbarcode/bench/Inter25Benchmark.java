@@ -0,0 +1,52 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.klg.lib.jbarcode.lib.BarcodeInter25;
+
+/**
+ * Throughput of the 2/5 interleaved bar generation with ITF-14 codes.
+ *
+ * @author Boris Klug
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Inter25Benchmark {
+
+  private BarcodeInter25 bc;
+  private String[] codes;
+  private int index;
+
+  @Setup
+  public void setup() {
+    bc = new BarcodeInter25();
+    codes = BenchmarkData.itf14();
+  }
+
+  @Benchmark
+  public byte[] getBars() {
+    bc.setCode(codes[index++ & (BenchmarkData.SIZE - 1)]);
+    return bc.getBars();
+  }
+}
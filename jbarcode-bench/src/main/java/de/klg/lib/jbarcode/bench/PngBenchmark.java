@@ -0,0 +1,97 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.bench;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.klg.lib.jbarcode.lib.Barcode;
+import de.klg.lib.jbarcode.lib.BarcodeException;
+import de.klg.lib.jbarcode.lib.BarcodePngWriter;
+import de.klg.lib.jbarcode.lib.BarcodeRenderer;
+
+/**
+ * Encoding of a rendered barcode with ImageIO (jpg, png) compared with
+ * BarcodePngWriter for gray and 1 bit images. The file sizes are printed in
+ * the setup.
+ *
+ * @author Boris Klug
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PngBenchmark {
+
+  @Param({ "EAN13", "CODE128" })
+  public String symbology;
+
+  @Param({ "1", "4" })
+  public int magnification;
+
+  private BufferedImage gray;
+  private BufferedImage binary;
+  private final BarcodePngWriter writer = new BarcodePngWriter();
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+
+  @Setup
+  public void setup() throws BarcodeException, IOException {
+    Barcode bc = RendererSetup.barcode(symbology);
+    bc.setCode(RendererSetup.codes(symbology)[0]);
+    bc.setMagnification(magnification);
+    gray = BarcodeRenderer.getBarcodeBufimage(bc);
+    binary = BarcodeRenderer.getBarcodeBufimageDirect(bc, null, BufferedImage.TYPE_BYTE_BINARY);
+    System.out.printf("%n%s x%d bytes: imageio jpg %d, imageio png %d, writer gray %d, writer binary %d%n",
+        symbology, magnification, imageIoJpg(), imageIoPng(), writerGray(), writerBinary());
+  }
+
+  @Benchmark
+  public int imageIoJpg() throws IOException {
+    out.reset();
+    ImageIO.write(gray, "jpg", out);
+    return out.size();
+  }
+
+  @Benchmark
+  public int imageIoPng() throws IOException {
+    out.reset();
+    ImageIO.write(gray, "png", out);
+    return out.size();
+  }
+
+  @Benchmark
+  public int writerGray() throws IOException {
+    out.reset();
+    writer.write(gray, out);
+    return out.size();
+  }
+
+  @Benchmark
+  public int writerBinary() throws IOException {
+    out.reset();
+    writer.write(binary, out);
+    return out.size();
+  }
+}
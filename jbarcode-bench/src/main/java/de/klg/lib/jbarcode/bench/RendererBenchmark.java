@@ -0,0 +1,89 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.bench;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.klg.lib.jbarcode.lib.Barcode;
+import de.klg.lib.jbarcode.lib.BarcodeException;
+import de.klg.lib.jbarcode.lib.BarcodeRenderer;
+
+/**
+ * Throughput and allocation of BarcodeRenderer.getBarcodeBufimage() over
+ * magnification, text drawing and guard bars, compared with the direct raster
+ * writer getBarcodeBufimageDirect() for gray and 1 bit images. The bytes allocated per image
+ * are reported by the gc profiler as gc.alloc.rate.norm.
+ *
+ * Char positioning is only defined for EAN, so it is part of the symbology
+ * parameter (EAN13_CHARPOS) instead of a parameter of its own.
+ *
+ * @author Boris Klug
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RendererBenchmark {
+
+  @Param({ "EAN13", "EAN13_CHARPOS", "CODE128", "ITF" })
+  public String symbology;
+
+  @Param({ "1", "2", "4", "8" })
+  public int magnification;
+
+  @Param({ "true", "false" })
+  public boolean drawText;
+
+  @Param({ "true", "false" })
+  public boolean guardBars;
+
+  private Barcode bc;
+  private String[] codes;
+  private int index;
+
+  @Setup
+  public void setup() {
+    bc = RendererSetup.barcode(symbology);
+    codes = RendererSetup.codes(symbology);
+    bc.setMagnification(magnification);
+    bc.setDrawtext(drawText);
+    bc.setGuardBars(guardBars);
+  }
+
+  @Benchmark
+  public BufferedImage getBarcodeBufimage() throws BarcodeException {
+    bc.setCode(codes[index++ & (BenchmarkData.SIZE - 1)]);
+    return BarcodeRenderer.getBarcodeBufimage(bc);
+  }
+
+  @Benchmark
+  public BufferedImage getBarcodeBufimageDirect() throws BarcodeException {
+    bc.setCode(codes[index++ & (BenchmarkData.SIZE - 1)]);
+    return BarcodeRenderer.getBarcodeBufimageDirect(bc);
+  }
+
+  @Benchmark
+  public BufferedImage getBarcodeBufimageDirectBinary() throws BarcodeException {
+    bc.setCode(codes[index++ & (BenchmarkData.SIZE - 1)]);
+    return BarcodeRenderer.getBarcodeBufimageDirect(bc, null, BufferedImage.TYPE_BYTE_BINARY);
+  }
+}
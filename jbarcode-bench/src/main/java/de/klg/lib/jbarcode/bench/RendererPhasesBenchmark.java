@@ -0,0 +1,124 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.bench;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.klg.lib.jbarcode.lib.Barcode;
+import de.klg.lib.jbarcode.lib.BarcodeException;
+import de.klg.lib.jbarcode.lib.BarcodePoint;
+import de.klg.lib.jbarcode.lib.BarcodeRenderer;
+
+/**
+ * Splits the cost of BarcodeRenderer.getBarcodeBufimage() into its phases:
+ *
+ * bars - the image with the bars only (image allocation, clearing, fillRect)
+ * fontSetup - creating the Font and the FontMetrics and measuring the text
+ * drawString - drawing the human readable text the way the renderer does it
+ * full - the complete render including text
+ *
+ * @author Boris Klug
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RendererPhasesBenchmark {
+
+  @Param({ "EAN13_CHARPOS", "CODE128", "ITF" })
+  public String symbology;
+
+  @Param({ "1", "2", "4", "8" })
+  public int magnification;
+
+  private Barcode bc;
+  private Barcode bcNoText;
+  private String[] codes;
+  private int index;
+
+  // scratch image for the text phases
+  private BufferedImage image;
+  private Graphics2D g;
+  private Font font;
+
+  @Setup
+  public void setup() throws BarcodeException {
+    bc = RendererSetup.barcode(symbology);
+    bcNoText = RendererSetup.barcode(symbology);
+    codes = RendererSetup.codes(symbology);
+    bc.setMagnification(magnification);
+    bcNoText.setMagnification(magnification);
+    bcNoText.setDrawtext(false);
+
+    bc.setCode(codes[0]);
+    image = BarcodeRenderer.getBarcodeBufimage(bc);
+    g = image.createGraphics();
+    font = new Font(bc.getFontname(), Font.PLAIN, bc.getFontsize() * magnification);
+    g.setFont(font);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    g.dispose();
+  }
+
+  @Benchmark
+  public BufferedImage bars() throws BarcodeException {
+    bcNoText.setCode(codes[index++ & (BenchmarkData.SIZE - 1)]);
+    return BarcodeRenderer.getBarcodeBufimage(bcNoText);
+  }
+
+  @Benchmark
+  public int fontSetup() {
+    String text = codes[index++ & (BenchmarkData.SIZE - 1)];
+    Font f = new Font(bc.getFontname(), Font.PLAIN, bc.getFontsize() * magnification);
+    FontMetrics fontmetric = g.getFontMetrics(f);
+    return fontmetric.stringWidth(bc.toHumanText(text));
+  }
+
+  @Benchmark
+  public Graphics2D drawString() {
+    String text = bc.toHumanText(codes[index++ & (BenchmarkData.SIZE - 1)]);
+    int txty = (bc.getBarHeight() + bc.getBaseline()) * magnification;
+    if (!bc.isUseCharPos()) {
+      g.drawString(text, 0, txty);
+      return g;
+    }
+    BarcodePoint[] charpos = bc.getCharPosArray();
+    for (int i = 0; i < text.length(); i++) {
+      g.drawString(text.substring(i, i + 1), magnification * (int) charpos[i].getX(),
+          txty + magnification * (int) charpos[i].getY());
+    }
+    return g;
+  }
+
+  @Benchmark
+  public BufferedImage full() throws BarcodeException {
+    bc.setCode(codes[index++ & (BenchmarkData.SIZE - 1)]);
+    return BarcodeRenderer.getBarcodeBufimage(bc);
+  }
+}
@@ -0,0 +1,67 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.bench;
+
+import de.klg.lib.jbarcode.lib.Barcode;
+import de.klg.lib.jbarcode.lib.Barcode128;
+import de.klg.lib.jbarcode.lib.BarcodeEAN;
+import de.klg.lib.jbarcode.lib.BarcodeInter25;
+import de.klg.lib.jbarcode.lib.BarcodeType;
+
+/**
+ * Creates the barcodes and input sets used by the renderer benchmarks.
+ *
+ * Symbologies: EAN13 (text left aligned as one string), EAN13_CHARPOS (text
+ * placed with getCharPosArray() like the default of BarcodeEAN), CODE128 and
+ * ITF.
+ *
+ * @author Boris Klug
+ */
+class RendererSetup {
+
+  private RendererSetup() {
+  }
+
+  static Barcode barcode(String symbology) {
+    Barcode bc;
+    switch (symbology) {
+    case "EAN13":
+      bc = new BarcodeEAN();
+      bc.setUseCharPos(false);
+      break;
+    case "EAN13_CHARPOS":
+      bc = new BarcodeEAN();
+      bc.setUseCharPos(true);
+      break;
+    case "CODE128":
+      bc = new Barcode128();
+      bc.setCodeType(BarcodeType.CODE128);
+      break;
+    case "ITF":
+      bc = new BarcodeInter25();
+      bc.setFontname("SanSerif");
+      break;
+    default:
+      throw new IllegalArgumentException("unknown symbology '" + symbology + "'");
+    }
+    return bc;
+  }
+
+  static String[] codes(String symbology) {
+    switch (symbology) {
+    case "EAN13":
+    case "EAN13_CHARPOS":
+      return BenchmarkData.ean13();
+    case "CODE128":
+      return BenchmarkData.alphanumeric();
+    case "ITF":
+      return BenchmarkData.itf14();
+    default:
+      throw new IllegalArgumentException("unknown symbology '" + symbology + "'");
+    }
+  }
+}
@@ -0,0 +1,743 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.app;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import de.klg.lib.jbarcode.lib.Barcode;
+import de.klg.lib.jbarcode.lib.BarcodeEAN128Builder;
+import de.klg.lib.jbarcode.lib.BarcodeException;
+import de.klg.lib.jbarcode.lib.BarcodePngWriter;
+import de.klg.lib.jbarcode.lib.BarcodeRenderer;
+import de.klg.lib.jbarcode.lib.BarcodeSpec;
+import de.klg.lib.jbarcode.lib.BarcodeSvgWriter;
+import de.klg.lib.jbarcode.lib.BarcodeType;
+import de.klg.lib.jbarcode.lib.BarcodeZplWriter;
+
+/**
+ * Command line tool that writes a file for each code of a list, without a
+ * display. Usage:
+ *
+ * {@code
+ *   java -cp jbarcode.jar de.klg.lib.jbarcode.app.JBarcodeBatch [options] [file]
+ * }
+ *
+ * The codes are read from the file or from stdin if no file or "-" is given,
+ * either one code per line or as CSV with a header line. The columns of the CSV
+ * are "code" and optionally "type", "format" and the options below, so each row
+ * can have its own type and options. Empty values use the defaults of the
+ * command line. Other columns can be used in the file name template. {line}
+ * in the template and in the error messages is the line number of the input,
+ * blank lines and the CSV header are counted.
+ *
+ * The rows are read as they are needed: at most threads + queue rows are in
+ * progress, if the queue is full the reading thread renders the next row
+ * itself. So the memory stays the same for any number of rows.
+ *
+ * At the end the number of rows, the throughput and the latency from reading a
+ * row to the written file are printed.
+ *
+ * Each file is written to a temporary file next to it and moved to its name
+ * when it is complete, so rows with the same file name never mix their output:
+ * the last one written wins.
+ *
+ * @author Boris Klug
+ */
+public class JBarcodeBatch {
+
+  static final String USAGE = String.join("\n", //
+      "Usage: JBarcodeBatch [options] [file]", //
+      "Writes a barcode file for each code of the file or stdin (file missing or -).", //
+      "", //
+      "  -o, --output DIR       output directory (default .)", //
+      "  -f, --format FORMAT    png, svg or zpl (default png)", //
+      "  -t, --type TYPE        EAN13, EAN8, CODE128, CODE128_A, CODE128_RAW, EAN128 or ITF (default CODE128)", //
+      "  -n, --name TEMPLATE    file name with {line} (input line number), {code}, {type}, {ext}", //
+      "                         or a CSV column", //
+      "                         (default {line}_{code}.{ext})", //
+      "  -j, --threads N        worker threads (default number of CPUs)", //
+      "  -q, --queue N          rows waiting for a worker (default 4 * threads)", //
+      "  --csv                  the input is CSV with a header line", //
+      "  --separator CHAR       the CSV separator (default ,)", //
+      "  --magnification N      the magnification, pixels per bar width", //
+      "  --barwidth N           the width of the smallest bar", //
+      "  --barheight N          the height of the bars", //
+      "  --fontsize N           the size of the text", //
+      "  --text true|false      draw the text", //
+      "  --guardbars true|false longer guard bars for EAN", //
+      "  --optimize true|false  optimize the code 128 subsets", //
+      "", //
+      "EAN128 codes may be given as (01)04012345333336(10)ABC.");
+
+  /** The options that can be given on the command line and in CSV columns */
+  private static final List<String> OPTIONS = Arrays.asList("magnification", "barwidth", "barheight", "fontsize",
+      "text", "guardbars", "optimize");
+
+  /** Counter for the names of the temporary files */
+  private static final AtomicLong TMP_FILES = new AtomicLong();
+
+  /** The maximal number of specs kept for reuse */
+  private static final int MAX_SPECS = 1024;
+
+  private static final ThreadLocal<BarcodePngWriter> PNG_WRITER = new ThreadLocal<BarcodePngWriter>() {
+    @Override
+    protected BarcodePngWriter initialValue() {
+      return new BarcodePngWriter();
+    }
+  };
+
+  private Path output = Paths.get(".");
+  private String format = "png";
+  private String type = "CODE128";
+  private String template = "{line}_{code}.{ext}";
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private int queue = -1;
+  private boolean csv;
+  private char separator = ',';
+  private final Map<String, String> defaults = new HashMap<>();
+  private PrintStream err = System.err;
+
+  /** The specs by type and options, only used by the reading thread */
+  private final Map<String, BarcodeSpec> specs = new HashMap<>();
+
+  /**
+   * The counts and latencies of a run
+   */
+  public static final class Summary {
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Latencies latencies = new Latencies();
+    private long rows;
+    private long nanos;
+
+    /**
+     * Returns the number of rows read
+     */
+    public long getRows() {
+      return rows;
+    }
+
+    /**
+     * Returns the number of files written
+     */
+    public long getWritten() {
+      return written.get();
+    }
+
+    /**
+     * Returns the number of rows that failed
+     */
+    public long getFailed() {
+      return failed.get();
+    }
+
+    /**
+     * Returns the time of the run in seconds
+     */
+    public double getSeconds() {
+      return nanos / 1e9;
+    }
+
+    /**
+     * Returns the latency in milliseconds below which the given part of the rows
+     * was written, e.g. 0.99 for the 99th percentile
+     */
+    public double getLatencyMillis(double percentile) {
+      return latencies.percentile(percentile) / 1000.0;
+    }
+
+    /**
+     * Returns the largest latency in milliseconds
+     */
+    public double getMaxLatencyMillis() {
+      return latencies.max.get() / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+      double seconds = Math.max(getSeconds(), 1e-9);
+      return String.format(Locale.ROOT,
+          "%d rows, %d written, %d failed in %.3f s, %.0f rows/s%n"
+              + "latency ms: p50 %.3f, p90 %.3f, p99 %.3f, p99.9 %.3f, max %.3f",
+          rows, getWritten(), getFailed(), getSeconds(), rows / seconds, getLatencyMillis(0.5),
+          getLatencyMillis(0.9), getLatencyMillis(0.99), getLatencyMillis(0.999), getMaxLatencyMillis());
+    }
+  }
+
+  /**
+   * A histogram of latencies in microseconds with a fixed size. Values below 64
+   * have their own bucket, larger values are grouped in 32 buckets per power of
+   * two, so a percentile is at most about 3% off.
+   */
+  static final class Latencies {
+    private static final int SUB_BUCKETS = 32;
+    private final AtomicLongArray counts = new AtomicLongArray(64 + 58 * SUB_BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    void add(long micros) {
+      counts.incrementAndGet(bucket(Math.max(0, micros)));
+      long m;
+      while (micros > (m = max.get()) && !max.compareAndSet(m, micros)) {
+        // retry
+      }
+    }
+
+    static int bucket(long micros) {
+      if (micros < 64) {
+        return (int) micros;
+      }
+      int exponent = 63 - Long.numberOfLeadingZeros(micros);
+      return 64 + (exponent - 6) * SUB_BUCKETS + (int) ((micros >> (exponent - 5)) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Returns the smallest value of the bucket
+     */
+    static long value(int bucket) {
+      if (bucket < 64) {
+        return bucket;
+      }
+      int exponent = (bucket - 64) / SUB_BUCKETS + 6;
+      return (long) (SUB_BUCKETS + (bucket - 64) % SUB_BUCKETS) << (exponent - 5);
+    }
+
+    long percentile(double percentile) {
+      long total = 0;
+      for (int k = 0; k < counts.length(); ++k) {
+        total += counts.get(k);
+      }
+      long limit = (long) Math.ceil(percentile * total);
+      long sum = 0;
+      for (int k = 0; k < counts.length(); ++k) {
+        sum += counts.get(k);
+        if (sum >= limit && sum > 0) {
+          return Math.min(value(k), max.get());
+        }
+      }
+      return 0;
+    }
+  }
+
+  public static void main(String[] args) {
+    JBarcodeBatch batch = new JBarcodeBatch();
+    String input;
+    try {
+      input = batch.parseArgs(args);
+    } catch (IllegalArgumentException ex) {
+      System.err.println(ex.getMessage());
+      System.err.println(USAGE);
+      System.exit(2);
+      return;
+    }
+    if (input == null) {
+      System.out.println(USAGE);
+      return;
+    }
+    try (Reader in = "-".equals(input) ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+        : Files.newBufferedReader(Paths.get(input), StandardCharsets.UTF_8)) {
+      Summary summary = batch.run(in);
+      System.out.println(summary);
+      System.exit(summary.getFailed() == 0 ? 0 : 1);
+    } catch (IOException | IllegalArgumentException ex) {
+      System.err.println(ex.getMessage());
+      System.exit(2);
+    } catch (InterruptedException ex) {
+      System.err.println("interrupted");
+      System.exit(2);
+    }
+  }
+
+  /**
+   * Sets the options of the command line
+   *
+   * @return the input file, "-" for stdin or null if the help was asked for
+   * @throws IllegalArgumentException if an option is unknown or has a wrong
+   *                                  value
+   */
+  String parseArgs(String[] args) {
+    String input = "-";
+    for (int k = 0; k < args.length; ++k) {
+      String arg = args[k];
+      if (arg.equals("--help")) {
+        return null;
+      }
+      if (!arg.startsWith("-") || arg.equals("-")) {
+        input = arg;
+        continue;
+      }
+      if (arg.equals("--csv")) {
+        csv = true;
+        continue;
+      }
+      if (k + 1 == args.length) {
+        throw new IllegalArgumentException("Missing value for " + arg);
+      }
+      String value = args[++k];
+      switch (arg) {
+      case "-o":
+      case "--output":
+        output = Paths.get(value);
+        break;
+      case "-f":
+      case "--format":
+        format = checkFormat(value);
+        break;
+      case "-t":
+      case "--type":
+        type = value;
+        toType(value);
+        break;
+      case "-n":
+      case "--name":
+        template = value;
+        break;
+      case "-j":
+      case "--threads":
+        threads = toInt("threads", value, 1);
+        break;
+      case "-q":
+      case "--queue":
+        queue = toInt("queue", value, 0);
+        break;
+      case "--separator":
+        if (value.length() != 1) {
+          throw new IllegalArgumentException("The separator must be one char");
+        }
+        separator = value.charAt(0);
+        break;
+      default:
+        String option = arg.substring(2);
+        if (!arg.startsWith("--") || !OPTIONS.contains(option)) {
+          throw new IllegalArgumentException("Unknown option " + arg);
+        }
+        // checked here once, CSV columns are checked for each row in spec()
+        checkOption(option, value);
+        defaults.put(option, value);
+      }
+    }
+    return input;
+  }
+
+  /**
+   * Sets the stream for the errors of the rows, System.err by default
+   */
+  void setError(PrintStream err) {
+    this.err = err;
+  }
+
+  /**
+   * Reads all rows, writes the files and waits until all are written
+   *
+   * @param in the codes, one per line or CSV
+   * @return the summary
+   * @throws IOException          if the input cant be read or the output
+   *                              directory cant be created
+   * @throws InterruptedException if the thread is interrupted while waiting
+   *                              for the workers
+   */
+  public Summary run(Reader in) throws IOException, InterruptedException {
+    Files.createDirectories(output);
+    Template names = new Template(template);
+    Summary summary = new Summary();
+    long start = System.nanoTime();
+
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(Math.max(1, queue < 0 ? 4 * threads : queue)),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    try {
+      BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+      List<String> header = null;
+      Map<String, String> row = new HashMap<>();
+      String line;
+      long lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        long number = ++lineNumber;
+        if (line.trim().isEmpty()) {
+          continue;
+        }
+        row.clear();
+        if (csv) {
+          List<String> values = splitCsv(line, separator);
+          if (header == null) {
+            header = values;
+            if (!header.contains("code")) {
+              throw new IllegalArgumentException("The CSV header has no column 'code'");
+            }
+            continue;
+          }
+          for (int k = 0; k < header.size(); ++k) {
+            row.put(header.get(k), k < values.size() ? values.get(k) : "");
+          }
+        } else {
+          row.put("code", line);
+        }
+        ++summary.rows;
+        long read = System.nanoTime();
+        try {
+          Job job = newJob(number, row, names);
+          executor.execute(() -> {
+            try {
+              job.write();
+              summary.written.incrementAndGet();
+            } catch (Exception ex) {
+              fail(summary, number, ex);
+            }
+            summary.latencies.add((System.nanoTime() - read) / 1000);
+          });
+        } catch (IllegalArgumentException ex) {
+          fail(summary, number, ex);
+        }
+      }
+    } finally {
+      executor.shutdown();
+      while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+        // wait for the last rows
+      }
+    }
+    summary.nanos = System.nanoTime() - start;
+    return summary;
+  }
+
+  /**
+   * One file to write
+   */
+  private static final class Job {
+    private final Path file;
+    private final String format;
+    private final BarcodeSpec spec;
+    private final String code;
+
+    Job(Path file, String format, BarcodeSpec spec, String code) {
+      this.file = file;
+      this.format = format;
+      this.spec = spec;
+      this.code = code;
+    }
+
+    void write() throws BarcodeException, IOException {
+      Barcode bc = spec.newBarcode(code);
+      // render before the file is created, so no empty files are left
+      BufferedImage image = format.equals("png") ? BarcodeRenderer.getBarcodeBufimageDirect(bc) : null;
+      Path parent = file.getParent();
+      if (parent != null && !Files.isDirectory(parent)) {
+        Files.createDirectories(parent);
+      }
+      // a unique name in the same directory, so the move is a rename
+      Path tmp = file.resolveSibling("." + file.getFileName() + "." + TMP_FILES.incrementAndGet() + ".tmp");
+      try (OutputStream out = new BufferedOutputStream(
+          Files.newOutputStream(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), 16 * 1024)) {
+        switch (format) {
+        case "png":
+          PNG_WRITER.get().write(image, out);
+          break;
+        case "svg":
+          Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+          BarcodeSvgWriter.write(bc, writer);
+          writer.flush();
+          break;
+        default:
+          BarcodeZplWriter.write(bc, out);
+        }
+      } catch (BarcodeException | IOException | RuntimeException ex) {
+        Files.deleteIfExists(tmp);
+        throw ex;
+      }
+      try {
+        try {
+          Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+          Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+      } catch (IOException | RuntimeException ex) {
+        Files.deleteIfExists(tmp);
+        throw ex;
+      }
+    }
+  }
+
+  /**
+   * Creates the job for the row on the reading thread
+   */
+  private Job newJob(long number, Map<String, String> row, Template names) {
+    String code = row.get("code");
+    if (code == null || code.isEmpty()) {
+      throw new IllegalArgumentException("No code");
+    }
+    String rowType = value(row, "type", type);
+    String rowFormat = checkFormat(value(row, "format", format));
+    BarcodeSpec spec = spec(rowType, row);
+    if (spec.getType() == BarcodeType.EAN128 && code.startsWith("(")) {
+      code = ean128Text(code);
+    }
+    row.put("line", Long.toString(number));
+    row.put("type", spec.getType().name());
+    row.put("ext", rowFormat);
+    return new Job(output.resolve(names.expand(row)), rowFormat, spec, code);
+  }
+
+  /**
+   * Returns the spec for the type and the options of the row, the specs are
+   * reused for rows with the same type and options
+   */
+  private BarcodeSpec spec(String typeName, Map<String, String> row) {
+    StringBuilder key = new StringBuilder(typeName);
+    for (String option : OPTIONS) {
+      key.append('|').append(value(row, option, ""));
+    }
+    BarcodeSpec spec = specs.get(key.toString());
+    if (spec != null) {
+      return spec;
+    }
+
+    BarcodeSpec.Builder b = BarcodeSpec.builder(toType(typeName));
+    String v;
+    if (!(v = value(row, "magnification", "")).isEmpty()) {
+      b.magnification(toInt("magnification", v, 1));
+    }
+    if (!(v = value(row, "barwidth", "")).isEmpty()) {
+      b.barWidth(toInt("barwidth", v, 1));
+    }
+    if (!(v = value(row, "barheight", "")).isEmpty()) {
+      b.barHeight(toInt("barheight", v, 1));
+    }
+    if (!(v = value(row, "fontsize", "")).isEmpty()) {
+      b.fontsize(toInt("fontsize", v, 1));
+    }
+    if (!(v = value(row, "text", "")).isEmpty()) {
+      b.drawtext(toBoolean("text", v));
+    }
+    if (!(v = value(row, "guardbars", "")).isEmpty()) {
+      b.guardBars(toBoolean("guardbars", v));
+    }
+    if (!(v = value(row, "optimize", "")).isEmpty()) {
+      b.optimizeSubsets(toBoolean("optimize", v));
+    }
+    spec = b.build();
+    if (specs.size() == MAX_SPECS) {
+      specs.clear();
+    }
+    specs.put(key.toString(), spec);
+    return spec;
+  }
+
+  /**
+   * Returns the value of the column, or the default of the command line, or
+   * the given default
+   */
+  private String value(Map<String, String> row, String column, String dflt) {
+    String v = row.get(column);
+    if (v == null || v.isEmpty()) {
+      v = defaults.getOrDefault(column, dflt);
+    }
+    return v.trim();
+  }
+
+  /**
+   * Converts a human readable EAN128 text like "(01)04012345333336(10)ABC" to
+   * the text of the barcode
+   */
+  static String ean128Text(String human) {
+    BarcodeEAN128Builder b = new BarcodeEAN128Builder();
+    int k = 0;
+    while (k < human.length()) {
+      int end = human.indexOf(')', k);
+      if (human.charAt(k) != '(' || end < 0) {
+        throw new IllegalArgumentException("Wrong EAN128 text '" + human + "'");
+      }
+      int next = human.indexOf('(', end);
+      if (next < 0) {
+        next = human.length();
+      }
+      b.add(human.substring(k + 1, end), human.substring(end + 1, next));
+      k = next;
+    }
+    return b.toText();
+  }
+
+  static BarcodeType toType(String name) {
+    String n = name.trim().toUpperCase(Locale.ROOT);
+    switch (n) {
+    case "ITF":
+    case "ITF14":
+    case "INTERLEAVED25":
+      return BarcodeType.CODE25INTER;
+    case "GS1-128":
+    case "GS1128":
+      return BarcodeType.EAN128;
+    case "CODE128_UCC":
+      break; // no encoder
+    default:
+      try {
+        return BarcodeType.valueOf(n);
+      } catch (IllegalArgumentException ex) {
+        // below
+      }
+    }
+    throw new IllegalArgumentException("Unknown barcode type '" + name + "'");
+  }
+
+  private static String checkFormat(String format) {
+    String f = format.toLowerCase(Locale.ROOT);
+    if (!f.equals("png") && !f.equals("svg") && !f.equals("zpl")) {
+      throw new IllegalArgumentException("Unknown format '" + format + "'");
+    }
+    return f;
+  }
+
+  /**
+   * Checks the value of one of the OPTIONS like spec() does
+   *
+   * @throws IllegalArgumentException if the value is wrong
+   */
+  static void checkOption(String option, String value) {
+    switch (option) {
+    case "text":
+    case "guardbars":
+    case "optimize":
+      toBoolean(option, value);
+      break;
+    default:
+      toInt(option, value, 1);
+    }
+  }
+
+  private static int toInt(String name, String value, int min) {
+    try {
+      int n = Integer.parseInt(value.trim());
+      if (n >= min) {
+        return n;
+      }
+    } catch (NumberFormatException ex) {
+      // below
+    }
+    throw new IllegalArgumentException("Wrong " + name + " '" + value + "'");
+  }
+
+  private static boolean toBoolean(String name, String value) {
+    switch (value.trim().toLowerCase(Locale.ROOT)) {
+    case "true":
+    case "yes":
+    case "1":
+      return true;
+    case "false":
+    case "no":
+    case "0":
+      return false;
+    default:
+      throw new IllegalArgumentException("Wrong " + name + " '" + value + "'");
+    }
+  }
+
+  private void fail(Summary summary, long number, Exception ex) {
+    summary.failed.incrementAndGet();
+    err.println("line " + number + ": " + ex.getMessage());
+  }
+
+  /**
+   * Splits a CSV line. Values may be quoted with ", a quote in a quoted value is
+   * written as "".
+   */
+  static List<String> splitCsv(String line, char separator) {
+    List<String> values = new ArrayList<>();
+    StringBuilder sb = new StringBuilder();
+    boolean quoted = false;
+    for (int k = 0; k < line.length(); ++k) {
+      char c = line.charAt(k);
+      if (quoted) {
+        if (c != '"') {
+          sb.append(c);
+        } else if (k + 1 < line.length() && line.charAt(k + 1) == '"') {
+          sb.append('"');
+          ++k;
+        } else {
+          quoted = false;
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == separator) {
+        values.add(sb.toString());
+        sb.setLength(0);
+      } else {
+        sb.append(c);
+      }
+    }
+    values.add(sb.toString());
+    return values;
+  }
+
+  /**
+   * A file name with placeholders in {}, parsed once. The values are made safe
+   * for file names: chars other than letters, digits, '.', '-' and '_' are
+   * replaced by '_'.
+   */
+  static final class Template {
+    /** Literal text and placeholder names, alternating, starting with text */
+    private final List<String> parts = new ArrayList<>();
+
+    Template(String template) {
+      int k = 0;
+      while (true) {
+        int open = template.indexOf('{', k);
+        int close = open < 0 ? -1 : template.indexOf('}', open);
+        if (close < 0) {
+          parts.add(template.substring(k));
+          break;
+        }
+        parts.add(template.substring(k, open));
+        parts.add(template.substring(open + 1, close));
+        k = close + 1;
+      }
+    }
+
+    String expand(Map<String, String> values) {
+      StringBuilder sb = new StringBuilder(64);
+      for (int k = 0; k < parts.size(); ++k) {
+        if ((k & 1) == 0) {
+          sb.append(parts.get(k));
+          continue;
+        }
+        String v = values.get(parts.get(k));
+        if (v == null) {
+          throw new IllegalArgumentException("Unknown name '" + parts.get(k) + "' in the file name template");
+        }
+        for (int i = 0; i < v.length(); ++i) {
+          char c = v.charAt(i);
+          boolean safe = c < 128 && (Character.isLetterOrDigit(c) || c == '.' || c == '-' || c == '_');
+          sb.append(safe && !(i == 0 && c == '.') ? c : '_');
+        }
+      }
+      return sb.toString();
+    }
+  }
+}
@@ -178,7 +178,7 @@ public class JBarcodeSampleframe extends JFrame {
     jMenuFile.setText("File");
     jMenuFileExit.setText("Exit");
     jMenuFileExit.addActionListener(this::jMenuFileExitActionPerformed);
-    jMenuItemExport.setText("Export to /tmp/barcode.jpg");
+    jMenuItemExport.setText("Export to /tmp/barcode.png");
     jMenuItemExport.addActionListener(this::jMenuItemExportActionPerformed);
 
     jMenuBarcode.setText("Barcode");
@@ -414,16 +414,16 @@ public class JBarcodeSampleframe extends JFrame {
   }
 
   /**
-   * Exports the selected barcode to a jpg file
+   * Exports the selected barcode to a png file
    *
    * @param e the actionevent from the menu
    */
   void jMenuItemExportActionPerformed(ActionEvent e) {
     if (bcComponent.getBc() != null) {
       try {
-        BarcodeRenderer.exportJpg(bcComponent.getBc(), "/tmp/barcode.jpg");
+        BarcodeRenderer.exportPng(bcComponent.getBc(), "/tmp/barcode.png");
       } catch (Exception ex) {
-        System.err.println("Cant export barcode to '/tmp/barcode.jpg'");
+        System.err.println("Cant export barcode to '/tmp/barcode.png'");
       }
     }
   }
@@ -19,6 +19,9 @@ public abstract class Barcode {
   public static final char ALIGN_RIGHT = 2;
   public static final char ALIGN_CENTER = 3;
 
+  /** No special char positions, shared by all barcodes */
+  static final BarcodePoint[] NO_CHARPOS = {};
+
   /**
    * The name of the font to use for writing the code below the barcode. If null,
    * the text is omitted
@@ -98,6 +101,11 @@ public abstract class Barcode {
    */
   protected boolean useCharPos;
 
+  /**
+   * Optional cache for the bars, used by getCachedBars()
+   */
+  protected BarcodeBarsCache barsCache;
+
   /**
    * If true, the human readable text is draw below or above the barcode If false,
    * no text is drawn
@@ -353,6 +361,48 @@ public abstract class Barcode {
    */
   public abstract byte[] getBars();
 
+  /**
+   * Returns the modules of the barcode as packed bit vector with the guard bars.
+   * The default implementation converts the bars, subclasses create the modules
+   * directly.
+   *
+   * @return the modules or null if the barcode cant generate bars
+   */
+  public BarcodeModules getModules() {
+    byte[] bars = getBars();
+    if (bars == null) {
+      return null;
+    }
+    return BarcodeModules.fromBars(bars, getGuardBarsArray());
+  }
+
+  /**
+   * Returns the bars like getBars(), but takes them from the bars cache if one is
+   * set. The returned array may be shared with other callers and must not be
+   * modified.
+   */
+  public byte[] getCachedBars() {
+    if (barsCache == null) {
+      return getBars();
+    }
+    return barsCache.getBars(this);
+  }
+
+  /**
+   * Gets the cache used by getCachedBars()
+   */
+  public BarcodeBarsCache getBarsCache() {
+    return barsCache;
+  }
+
+  /**
+   * Sets the cache used by getCachedBars(). Set to null to generate the bars on
+   * every call. One cache can be shared by many barcodes.
+   */
+  public void setBarsCache(BarcodeBarsCache barsCache) {
+    this.barsCache = barsCache;
+  }
+
   /**
    * Returns the sum of all bars in this array. Used for calculating the width of
    * the barcode
@@ -367,6 +417,47 @@ public abstract class Barcode {
     return sum;
   }
 
+  /**
+   * Returns the y position of the top of the bars (without magnification), the
+   * same for all renderers and writers
+   */
+  int getBarsTop() {
+    // text has to be placed above the barcode, move barcode to south
+    if (drawtext && baseline <= 0) {
+      return 1 + baseline + fontsize;
+    }
+    return 1;
+  }
+
+  /**
+   * Returns how far the guard bars reach below the other bars (without
+   * magnification), 0 if they are not longer
+   */
+  int getGuardExtension() {
+    if (guardBars && drawtext && baseline > 0) {
+      return baseline / 2;
+    }
+    return 0;
+  }
+
+  /**
+   * Returns the width of the image for the given bars (without magnification)
+   */
+  int getImageWidth(byte[] bars) {
+    return (getBarsum(bars) * barWidth) + (2 * preflightWidth);
+  }
+
+  /**
+   * Returns the height of the image (without magnification)
+   */
+  int getImageHeight() {
+    if (drawtext) { // draw text
+      return barHeight + 2 + baseline;
+    } else { // do not draw text
+      return barHeight + 2;
+    }
+  }
+
   /**
    * Get the position of the guard bars (if any)
    */
@@ -382,7 +473,15 @@ public abstract class Barcode {
    * baseline where normal text drawing would start
    */
   public BarcodePoint[] getCharPosArray() {
-    return new BarcodePoint[0];
+    return NO_CHARPOS;
+  }
+
+  /**
+   * Like getCharPosArray(), but subclasses may return a shared array that is
+   * not copied. For the renderers and writers, which do not modify it.
+   */
+  BarcodePoint[] charPosArray() {
+    return getCharPosArray();
   }
 
   /**
@@ -6,6 +6,8 @@
  * ---------------------------------------------------------------------------- */
 package de.klg.lib.jbarcode.lib;
 
+import java.nio.ByteBuffer;
+
 /**
  * Barcode generator class for the following barcodes:
  *
@@ -20,6 +22,9 @@ package de.klg.lib.jbarcode.lib;
  *
  * EAN 128 like Code 128 but after the start a FNC1 is inserted.
  *
+ * For Code 128 and EAN 128 the subsets can also be selected by an optimizer
+ * (see setOptimizeSubsets()) which always finds the shortest barcode.
+ *
  * Code 128 A Uses only subset A for coding the barcode.
  *
  * Code 128 Raw The user has to generate the barcode sequence. Chars are valid
@@ -31,44 +36,64 @@ package de.klg.lib.jbarcode.lib;
 public class Barcode128 extends Barcode {
 
   /**
-   * The bars to generate the code.
-   */
-  static final byte[][] BARS = { { 2, 1, 2, 2, 2, 2 }, // 00
-      { 2, 2, 2, 1, 2, 2 }, { 2, 2, 2, 2, 2, 1 }, { 1, 2, 1, 2, 2, 3 }, { 1, 2, 1, 3, 2, 2 }, { 1, 3, 1, 2, 2, 2 },
-      { 1, 2, 2, 2, 1, 3 }, { 1, 2, 2, 3, 1, 2 }, { 1, 3, 2, 2, 1, 2 }, { 2, 2, 1, 2, 1, 3 }, { 2, 2, 1, 3, 1, 2 }, // 10
-      // "*"
-      { 2, 3, 1, 2, 1, 2 }, { 1, 1, 2, 2, 3, 2 }, { 1, 2, 2, 1, 3, 2 }, { 1, 2, 2, 2, 3, 1 }, { 1, 1, 3, 2, 2, 2 },
-      { 1, 2, 3, 1, 2, 2 }, { 1, 2, 3, 2, 2, 1 }, { 2, 2, 3, 2, 1, 1 }, { 2, 2, 1, 1, 3, 2 }, { 2, 2, 1, 2, 3, 1 }, // 20
-      // "4"
-      { 2, 1, 3, 2, 1, 2 }, { 2, 2, 3, 1, 1, 2 }, { 3, 1, 2, 1, 3, 1 }, { 3, 1, 1, 2, 2, 2 }, { 3, 2, 1, 1, 2, 2 },
-      { 3, 2, 1, 2, 2, 1 }, { 3, 1, 2, 2, 1, 2 }, { 3, 2, 2, 1, 1, 2 }, { 3, 2, 2, 2, 1, 1 }, { 2, 1, 2, 1, 2, 3 }, // 30
-      { 2, 1, 2, 3, 2, 1 }, { 2, 3, 2, 1, 2, 1 }, { 1, 1, 1, 3, 2, 3 }, { 1, 3, 1, 1, 2, 3 }, { 1, 3, 1, 3, 2, 1 },
-      { 1, 1, 2, 3, 1, 3 }, { 1, 3, 2, 1, 1, 3 }, { 1, 3, 2, 3, 1, 1 }, { 2, 1, 1, 3, 1, 3 }, { 2, 3, 1, 1, 1, 3 }, // 40
-      // "H"
-      { 2, 3, 1, 3, 1, 1 }, { 1, 1, 2, 1, 3, 3 }, { 1, 1, 2, 3, 3, 1 }, { 1, 3, 2, 1, 3, 1 }, { 1, 1, 3, 1, 2, 3 },
-      { 1, 1, 3, 3, 2, 1 }, { 1, 3, 3, 1, 2, 1 }, { 3, 1, 3, 1, 2, 1 }, { 2, 1, 1, 3, 3, 1 }, { 2, 3, 1, 1, 3, 1 }, // 50
-      { 2, 1, 3, 1, 1, 3 }, { 2, 1, 3, 3, 1, 1 }, { 2, 1, 3, 1, 3, 1 }, { 3, 1, 1, 1, 2, 3 }, { 3, 1, 1, 3, 2, 1 },
-      { 3, 3, 1, 1, 2, 1 }, { 3, 1, 2, 1, 1, 3 }, { 3, 1, 2, 3, 1, 1 }, { 3, 3, 2, 1, 1, 1 }, { 3, 1, 4, 1, 1, 1 }, // 60
-      { 2, 2, 1, 4, 1, 1 }, { 4, 3, 1, 1, 1, 1 }, { 1, 1, 1, 2, 2, 4 }, { 1, 1, 1, 4, 2, 2 }, { 1, 2, 1, 1, 2, 4 },
-      { 1, 2, 1, 4, 2, 1 }, { 1, 4, 1, 1, 2, 2 }, { 1, 4, 1, 2, 2, 1 }, { 1, 1, 2, 2, 1, 4 }, { 1, 1, 2, 4, 1, 2 }, // 70
-      { 1, 2, 2, 1, 1, 4 }, { 1, 2, 2, 4, 1, 1 }, { 1, 4, 2, 1, 1, 2 }, { 1, 4, 2, 2, 1, 1 }, { 2, 4, 1, 2, 1, 1 },
-      { 2, 2, 1, 1, 1, 4 }, { 4, 1, 3, 1, 1, 1 }, { 2, 4, 1, 1, 1, 2 }, { 1, 3, 4, 1, 1, 1 }, { 1, 1, 1, 2, 4, 2 }, // 80
-      { 1, 2, 1, 1, 4, 2 }, { 1, 2, 1, 2, 4, 1 }, { 1, 1, 4, 2, 1, 2 }, { 1, 2, 4, 1, 1, 2 }, { 1, 2, 4, 2, 1, 1 },
-      { 4, 1, 1, 2, 1, 2 }, { 4, 2, 1, 1, 1, 2 }, { 4, 2, 1, 2, 1, 1 }, { 2, 1, 2, 1, 4, 1 }, { 2, 1, 4, 1, 2, 1 }, // 90
-      { 4, 1, 2, 1, 2, 1 }, { 1, 1, 1, 1, 4, 3 }, { 1, 1, 1, 3, 4, 1 }, { 1, 3, 1, 1, 4, 1 }, { 1, 1, 4, 1, 1, 3 },
-      { 1, 1, 4, 3, 1, 1 }, { 4, 1, 1, 1, 1, 3 }, { 4, 1, 1, 3, 1, 1 }, { 1, 1, 3, 1, 4, 1 }, // 99 Code C, 99
-      { 1, 1, 4, 1, 3, 1 }, // 100 Code B, FNC4
-      { 3, 1, 1, 1, 4, 1 }, // 101 Code A, FNC4
-      { 4, 1, 1, 1, 3, 1 }, // 102 FNC1
-      { 2, 1, 1, 4, 1, 2 }, // 103 Start Code A
-      { 2, 1, 1, 2, 1, 4 }, // 104 Start Code B
-      { 2, 1, 1, 2, 3, 2 } // 105 Start Code C
+   * The bars to generate the code, packed in one array. Each char 0..105 has 6
+   * bars starting at index char * 6. The stop char with its 7 bars follows at
+   * STOP_OFFSET.
+   */
+  static final byte[] BARS = {
+      2, 1, 2, 2, 2, 2, 2, 2, 2, 1, 2, 2, 2, 2, 2, 2, 2, 1, 1, 2, 1, 2, 2, 3, 1, 2, 1, 3, 2, 2, // 0 - 4
+      1, 3, 1, 2, 2, 2, 1, 2, 2, 2, 1, 3, 1, 2, 2, 3, 1, 2, 1, 3, 2, 2, 1, 2, 2, 2, 1, 2, 1, 3, // 5 - 9
+      2, 2, 1, 3, 1, 2, 2, 3, 1, 2, 1, 2, 1, 1, 2, 2, 3, 2, 1, 2, 2, 1, 3, 2, 1, 2, 2, 2, 3, 1, // 10 - 14
+      1, 1, 3, 2, 2, 2, 1, 2, 3, 1, 2, 2, 1, 2, 3, 2, 2, 1, 2, 2, 3, 2, 1, 1, 2, 2, 1, 1, 3, 2, // 15 - 19
+      2, 2, 1, 2, 3, 1, 2, 1, 3, 2, 1, 2, 2, 2, 3, 1, 1, 2, 3, 1, 2, 1, 3, 1, 3, 1, 1, 2, 2, 2, // 20 - 24
+      3, 2, 1, 1, 2, 2, 3, 2, 1, 2, 2, 1, 3, 1, 2, 2, 1, 2, 3, 2, 2, 1, 1, 2, 3, 2, 2, 2, 1, 1, // 25 - 29
+      2, 1, 2, 1, 2, 3, 2, 1, 2, 3, 2, 1, 2, 3, 2, 1, 2, 1, 1, 1, 1, 3, 2, 3, 1, 3, 1, 1, 2, 3, // 30 - 34
+      1, 3, 1, 3, 2, 1, 1, 1, 2, 3, 1, 3, 1, 3, 2, 1, 1, 3, 1, 3, 2, 3, 1, 1, 2, 1, 1, 3, 1, 3, // 35 - 39
+      2, 3, 1, 1, 1, 3, 2, 3, 1, 3, 1, 1, 1, 1, 2, 1, 3, 3, 1, 1, 2, 3, 3, 1, 1, 3, 2, 1, 3, 1, // 40 - 44
+      1, 1, 3, 1, 2, 3, 1, 1, 3, 3, 2, 1, 1, 3, 3, 1, 2, 1, 3, 1, 3, 1, 2, 1, 2, 1, 1, 3, 3, 1, // 45 - 49
+      2, 3, 1, 1, 3, 1, 2, 1, 3, 1, 1, 3, 2, 1, 3, 3, 1, 1, 2, 1, 3, 1, 3, 1, 3, 1, 1, 1, 2, 3, // 50 - 54
+      3, 1, 1, 3, 2, 1, 3, 3, 1, 1, 2, 1, 3, 1, 2, 1, 1, 3, 3, 1, 2, 3, 1, 1, 3, 3, 2, 1, 1, 1, // 55 - 59
+      3, 1, 4, 1, 1, 1, 2, 2, 1, 4, 1, 1, 4, 3, 1, 1, 1, 1, 1, 1, 1, 2, 2, 4, 1, 1, 1, 4, 2, 2, // 60 - 64
+      1, 2, 1, 1, 2, 4, 1, 2, 1, 4, 2, 1, 1, 4, 1, 1, 2, 2, 1, 4, 1, 2, 2, 1, 1, 1, 2, 2, 1, 4, // 65 - 69
+      1, 1, 2, 4, 1, 2, 1, 2, 2, 1, 1, 4, 1, 2, 2, 4, 1, 1, 1, 4, 2, 1, 1, 2, 1, 4, 2, 2, 1, 1, // 70 - 74
+      2, 4, 1, 2, 1, 1, 2, 2, 1, 1, 1, 4, 4, 1, 3, 1, 1, 1, 2, 4, 1, 1, 1, 2, 1, 3, 4, 1, 1, 1, // 75 - 79
+      1, 1, 1, 2, 4, 2, 1, 2, 1, 1, 4, 2, 1, 2, 1, 2, 4, 1, 1, 1, 4, 2, 1, 2, 1, 2, 4, 1, 1, 2, // 80 - 84
+      1, 2, 4, 2, 1, 1, 4, 1, 1, 2, 1, 2, 4, 2, 1, 1, 1, 2, 4, 2, 1, 2, 1, 1, 2, 1, 2, 1, 4, 1, // 85 - 89
+      2, 1, 4, 1, 2, 1, 4, 1, 2, 1, 2, 1, 1, 1, 1, 1, 4, 3, 1, 1, 1, 3, 4, 1, 1, 3, 1, 1, 4, 1, // 90 - 94
+      1, 1, 4, 1, 1, 3, 1, 1, 4, 3, 1, 1, 4, 1, 1, 1, 1, 3, 4, 1, 1, 3, 1, 1, // 95 - 98
+      1, 1, 3, 1, 4, 1, // 99 Code C, 99
+      1, 1, 4, 1, 3, 1, // 100 Code B, FNC4
+      3, 1, 1, 1, 4, 1, // 101 Code A, FNC4
+      4, 1, 1, 1, 3, 1, // 102 FNC1
+      2, 1, 1, 4, 1, 2, // 103 Start Code A
+      2, 1, 1, 2, 1, 4, // 104 Start Code B
+      2, 1, 1, 2, 3, 2, // 105 Start Code C
+      2, 3, 3, 1, 1, 1, 2 // Stop
   };
 
   /**
-   * The stop bars, it has 7 bars, all other chars have 6
+   * The index of the stop bars in BARS. The stop char has 7 bars, all other
+   * chars have 6
    */
-  static final byte[] BARS_STOP = { 2, 3, 3, 1, 1, 1, 2 };
+  static final int STOP_OFFSET = 106 * 6;
+  /**
+   * The modules of the chars 0..105 (11 bits each) and of the stop char (13
+   * bits) at index 106, derived from BARS. The highest bit is the first module.
+   */
+  static final int[] MODULES = new int[107];
+
+  static {
+    for (int c = 0; c <= 106; ++c) {
+      int m = 0;
+      int n = c < 106 ? 6 : 7;
+      for (int k = 0; k < n; ++k) {
+        int w = BARS[c * 6 + k];
+        m = (m << w) | ((k & 1) == 0 ? (1 << w) - 1 : 0);
+      }
+      MODULES[c] = m;
+    }
+  }
+
   /**
    * The charset code change from A or B to C
    */
@@ -97,6 +122,21 @@ public class Barcode128 extends Barcode {
    * The start code with subset C
    */
   public static final char START_C = 105;
+  /**
+   * The shift to the other subset (A to B or B to A) for the next char only
+   */
+  public static final char SHIFT = 98;
+  /**
+   * The char to use in the code text for a FNC1, e.g. as separator after fields
+   * with variable length in EAN128. It is encoded as FNC1 in every subset.
+   */
+  public static final char FNC1_CHAR = '\u00f1';
+
+  /**
+   * If true, the subsets for CODE128 and EAN128 are selected by the optimizer,
+   * not by the simple rules in toRawText()
+   */
+  protected boolean optimizeSubsets;
 
   /**
    * Constructor - creates new Barcode128
@@ -112,6 +152,22 @@ public class Barcode128 extends Barcode {
     code = "01040123453333361503123110123456";
   }
 
+  /**
+   * If true, the subsets are selected by the optimizer which finds the shortest
+   * sequence of code 128 chars for the text. Only used for CODE128 and EAN128.
+   */
+  public boolean isOptimizeSubsets() {
+    return optimizeSubsets;
+  }
+
+  /**
+   * Set to true to select the subsets with the optimizer which finds the shortest
+   * sequence of code 128 chars for the text. Only used for CODE128 and EAN128.
+   */
+  public void setOptimizeSubsets(boolean optimizeSubsets) {
+    this.optimizeSubsets = optimizeSubsets;
+  }
+
   /**
    * Returns true if the next numDigits starting from index textIndex are numeric.
    *
@@ -120,7 +176,7 @@ public class Barcode128 extends Barcode {
    * @param numDigits the number of digits to check
    * @return the check result
    */
-  static boolean isNextDigits(String text, int textIndex, int numDigits) {
+  static boolean isNextDigits(CharSequence text, int textIndex, int numDigits) {
     if (textIndex + numDigits > text.length())
       return false;
     while (numDigits-- > 0) {
@@ -159,7 +215,15 @@ public class Barcode128 extends Barcode {
    */
   @Override
   public String toHumanText(String text) {
-    if (codeType != BarcodeType.EAN128) {
+    return humanText(codeType, text);
+  }
+
+  /**
+   * Converts the text to human readable text for the given type, see
+   * toHumanText()
+   */
+  static String humanText(BarcodeType type, String text) {
+    if (type != BarcodeType.EAN128) {
       return text;
     }
 
@@ -187,180 +251,490 @@ public class Barcode128 extends Barcode {
    */
   @Override
   public String toRawText(String text) {
-    boolean ean128 = false;
-
-    // In mode "code128A" we force the charset A
-    if (codeType == BarcodeType.CODE128_A) {
-      StringBuilder out = new StringBuilder();
-      out.append(START_A);
-      int tLen = text.length();
-      int i = 0;
-      while (i < tLen) {
-        char currentchar = text.charAt(i);
-        if (currentchar > 127) {
-          throw new RuntimeException("There are illegal characters for barcode 128 in '" + text + "'.");
-        }
-        if (currentchar < ' ') {
-          out.append((char) (currentchar + 64)); // control chars
-        } else {
-          out.append((char) (currentchar - ' ')); // normal chars
-        }
-        i++;
-      }
-
-      return out.toString();
-    }
-
     // In raw mode, just return the text. The caller is responsible
     // to provide a valid code128 text
     if (codeType == BarcodeType.CODE128_RAW) {
       return text;
     }
-
-    // In EAN128, we have to add a FNC1 in front of the code
-    if (codeType == BarcodeType.EAN128) {
-      ean128 = true;
-    } else if (codeType != BarcodeType.CODE128) {
+    if (codeType != BarcodeType.CODE128 && codeType != BarcodeType.CODE128_A && codeType != BarcodeType.EAN128) {
       return null; // we cant handle other codes than this
     }
 
-    StringBuilder out = new StringBuilder();
+    byte[] chars = new byte[2 * text.length() + 2];
+    int n = toCodewords(codeType, optimizeSubsets, text, chars, null, 0);
+    StringBuilder out = new StringBuilder(n);
+    for (int k = 0; k < n; k++) {
+      out.append((char) chars[k]);
+    }
+    return out.toString();
+  }
+
+  /**
+   * Generates the bars. The input is the actual barcodes, not the human readable text.
+   */
+  @Override
+  public byte[] getBars() {
+    byte[] bars = new byte[getBarsLength(code)];
+    encode(codeType, optimizeSubsets, code, bars, null, 0);
+    return bars;
+  }
+
+  /**
+   * Generates the modules directly from the chars, without the bars.
+   */
+  @Override
+  public BarcodeModules getModules() {
+    return modules(codeType, optimizeSubsets, code);
+  }
+
+  /**
+   * Generates the modules for the text, see encode()
+   */
+  static BarcodeModules modules(BarcodeType type, boolean optimize, CharSequence text) {
+    int n = toCodewords(type, optimize, text, null, null, 0);
+    if (n == 0) {
+      throw new IllegalArgumentException("There are no code 128 chars in '" + text + "'.");
+    }
+    byte[] chars = new byte[n];
+    toCodewords(type, optimize, text, chars, null, 0);
+
+    BarcodeModules.Builder b = new BarcodeModules.Builder((n + 1) * 11 + 13);
+    for (int k = 0; k < n; ++k) {
+      b.append(MODULES[chars[k]], 11);
+    }
+    b.append(MODULES[checksum(chars, null, 0, n)], 11);
+    b.append(MODULES[106], 13);
+    return b.build();
+  }
+
+  /**
+   * Returns the number of bars getBars() or encodeInto() generate for the given
+   * text. Use it to size the buffers for encodeInto().
+   *
+   * @param text the text to encode
+   * @return the number of bars
+   */
+  public int getBarsLength(CharSequence text) {
+    return encode(codeType, optimizeSubsets, text, null, null, 0);
+  }
+
+  /**
+   * Returns the maximal number of bars for a text with the given length in any
+   * code 128 mode. A buffer of this size is always big enough for encodeInto().
+   *
+   * @param textLength the length of the text
+   * @return the maximal number of bars
+   */
+  public static int getMaxBarsLength(int textLength) {
+    // start, FNC1, two chars per text char (subset change), checksum and stop
+    return (2 + 2 * textLength + 1) * 6 + 7;
+  }
+
+  /**
+   * Generates the bars for the text into the given array, like getBars() but
+   * without any allocation (with optimized subsets, the tables of the optimizer
+   * are kept per thread and only grow for a longer text). Subset selection, checksum and the copying of the
+   * patterns are done directly in the output array.
+   *
+   * @param text   the text to encode
+   * @param out    the array for the bars
+   * @param offset the index of the first bar in out
+   * @return the number of bars written
+   * @throws IndexOutOfBoundsException if the bars do not fit into out
+   */
+  public int encodeInto(CharSequence text, byte[] out, int offset) {
+    return encode(codeType, optimizeSubsets, text, out, null, offset);
+  }
+
+  /**
+   * Generates the bars for the text into the given buffer, starting at its
+   * position. The position is advanced by the number of bars written. Like
+   * encodeInto(CharSequence, byte[], int), nothing is allocated.
+   *
+   * @param text the text to encode
+   * @param out  the buffer for the bars
+   * @return the number of bars written
+   * @throws IndexOutOfBoundsException if the bars do not fit into out
+   */
+  public int encodeInto(CharSequence text, ByteBuffer out) {
+    int n;
+    if (out.hasArray()) {
+      // the array may be longer than the buffer, only up to its limit is used
+      n = encode(codeType, optimizeSubsets, text, out.array(), null, out.arrayOffset() + out.position(),
+          out.arrayOffset() + out.limit());
+    } else {
+      n = encode(codeType, optimizeSubsets, text, null, out, out.position(), out.limit());
+    }
+    out.position(out.position() + n);
+    return n;
+  }
+
+  /**
+   * Returns the sum of all bars for the text without generating them: 11 modules
+   * per char and for the checksum, 13 for the stop char.
+   */
+  static int barsum(BarcodeType type, boolean optimize, CharSequence text) {
+    int n = toCodewords(type, optimize, text, null, null, 0);
+    if (n == 0) {
+      throw new IllegalArgumentException("There are no code 128 chars in '" + text + "'.");
+    }
+    return (n + 1) * 11 + 13;
+  }
+
+  /**
+   * Generates the bars for the text. Either out or buf is the output, if both are
+   * null, only the number of bars is calculated.
+   *
+   * First the chars are written as one byte per char to the output. Then the
+   * checksum is calculated from them and the chars are expanded to the bars from
+   * the back, so no char is overwritten before it is expanded.
+   *
+   * @return the number of bars
+   */
+  static int encode(BarcodeType type, boolean optimize, CharSequence text, byte[] out, ByteBuffer buf,
+      int offset) {
+    return encode(type, optimize, text, out, buf, offset, out != null ? out.length : buf != null ? buf.limit() : 0);
+  }
+
+  /**
+   * Generates the bars for the text, nothing is written at or after the index
+   * limit of the output. If the bars may not fit, the chars are counted first,
+   * so nothing is written if they do not fit.
+   *
+   * @return the number of bars
+   * @throws IndexOutOfBoundsException if the bars do not fit before limit
+   */
+  static int encode(BarcodeType type, boolean optimize, CharSequence text, byte[] out, ByteBuffer buf,
+      int offset, int limit) {
+    if (out == null && buf == null) {
+      return checkedLength(toCodewords(type, optimize, text, null, null, 0), text);
+    }
+    if (offset < 0 || offset + getMaxBarsLength(text.length()) > limit) {
+      int len = checkedLength(toCodewords(type, optimize, text, null, null, 0), text);
+      if (offset < 0 || offset + len > limit) {
+        throw new IndexOutOfBoundsException("The " + len + " bars for '" + text + "' do not fit into the buffer.");
+      }
+    }
+    int n = toCodewords(type, optimize, text, out, buf, offset);
+    int len = checkedLength(n, text);
+
+    int chk = checksum(out, buf, offset, n);
+
+    // Add stop char and checksum, then expand the chars
+    copy(STOP_OFFSET, 7, out, buf, offset + (n + 1) * 6);
+    copy(chk * 6, 6, out, buf, offset + n * 6);
+    for (int k = n - 1; k >= 0; --k) {
+      copy(get(out, buf, offset + k) * 6, 6, out, buf, offset + k * 6);
+    }
+    return len;
+  }
+
+  /**
+   * Returns the number of bars for n chars
+   *
+   * @throws IllegalArgumentException if there are no chars
+   */
+  private static int checkedLength(int n, CharSequence text) {
+    if (n == 0) {
+      throw new IllegalArgumentException("There are no code 128 chars in '" + text + "'.");
+    }
+    return (n + 1) * 6 + 7;
+  }
+
+  /**
+   * Writes the code 128 chars for the text, one byte per char starting at
+   * offset. This is the conversion behind toRawText().
+   *
+   * @return the number of chars
+   */
+  static int toCodewords(BarcodeType type, boolean optimize, CharSequence text, byte[] out, ByteBuffer buf,
+      int offset) {
     int tLen = text.length();
+    int n = 0;
 
-    if (tLen == 0) { // empty barcode!
-      out.append(START_B);
-      if (ean128) {
-        out.append(FNC1);
+    // In raw mode, the chars are the codes. There could be human reable text
+    // after the raw chars, marked by '\uffff'
+    if (type == BarcodeType.CODE128_RAW) {
+      for (int i = 0; i < tLen; i++) {
+        char c = text.charAt(i);
+        if (c == '\uffff') {
+          break;
+        }
+        if (c > START_C) {
+          throw new RuntimeException("There are illegal characters for barcode 128 in '" + text + "'.");
+        }
+        n = put(out, buf, offset, n, c);
       }
-      return out.toString();
+      return n;
     }
 
-    int c = 0;
-    // check the characters inside the text
-    for (int k = 0; k < tLen; ++k) {
-      c = text.charAt(k);
-      if (c > 127) {
-        throw new RuntimeException("There are illegal characters for barcode 128 in '" + text + "'.");
+    // In mode "code128A" we force the charset A
+    if (type == BarcodeType.CODE128_A) {
+      n = put(out, buf, offset, n, START_A);
+      for (int i = 0; i < tLen; i++) {
+        char c = text.charAt(i);
+        if (c == FNC1_CHAR) {
+          n = put(out, buf, offset, n, FNC1);
+          continue;
+        }
+        if (c > 127) {
+          throw new RuntimeException("There are illegal characters for barcode 128 in '" + text + "'.");
+        }
+        n = put(out, buf, offset, n, c < ' ' ? c + 64 : c - ' ');
       }
+      return n;
+    }
+
+    boolean ean128 = type == BarcodeType.EAN128;
+    if (!ean128 && type != BarcodeType.CODE128) {
+      throw new IllegalArgumentException("Cant generate code 128 bars for barcode type " + type);
+    }
+
+    if (tLen == 0) { // empty barcode!
+      n = put(out, buf, offset, n, START_B);
+      return ean128 ? put(out, buf, offset, n, FNC1) : n;
+    }
+    if (optimize) {
+      return toCodewordsOptimal(ean128, text, out, buf, offset);
     }
 
     // Lookup which subset we start with
-    c = text.charAt(0);
-    char currentCode = START_B;
     int index = 0;
-    if (isNextDigits(text, index, 2)) { // two digits or more, we start with subset C
+    int c = text.charAt(0);
+    char currentCode;
+    if (isNextDigits(text, 0, 2)) {
       currentCode = START_C;
-      out.append(currentCode);
-      if (ean128) {
-        out.append(FNC1);
-      }
-      out.append(getPackedRawDigits(text, index, 2));
-      index += 2;
-    } else if (c < ' ') { // no lowercase chars, we start with subset A
+    } else if (c < ' ') {
       currentCode = START_A;
-      out.append(currentCode);
-      if (ean128) {
-        out.append(FNC1);
+    } else {
+      currentCode = START_B;
+    }
+    n = put(out, buf, offset, n, currentCode);
+    if (ean128) {
+      n = put(out, buf, offset, n, FNC1);
+    }
+
+    while (index < tLen) {
+      if (currentCode == START_C) {
+        if (isNextDigits(text, index, 2)) {
+          n = put(out, buf, offset, n, (text.charAt(index) - '0') * 10 + text.charAt(index + 1) - '0');
+          index += 2;
+          continue;
+        }
+      } else if (isNextDigits(text, index, 4)) {
+        currentCode = START_C;
+        n = put(out, buf, offset, n, CODE_AB_TO_C);
+        continue;
       }
-      out.append((char) (c + 64));
-      ++index;
-    } else { // OK, we have all kind of chars, we start with subset B
-      out.append(currentCode);
-      if (ean128) {
-        out.append(FNC1);
+
+      c = text.charAt(index++);
+      if (c == FNC1_CHAR) {
+        n = put(out, buf, offset, n, FNC1);
+        continue;
+      }
+      if (c > 127) {
+        throw new RuntimeException("There are illegal characters for barcode 128 in '" + text + "'.");
+      }
+      if (c < ' ') {
+        if (currentCode != START_A) {
+          currentCode = START_A;
+          n = put(out, buf, offset, n, CODE_BC_TO_A);
+        }
+        n = put(out, buf, offset, n, c + 64);
+      } else {
+        if ((currentCode == START_A && c > '_') || currentCode == START_C) {
+          currentCode = START_B;
+          n = put(out, buf, offset, n, CODE_AC_TO_B);
+        }
+        n = put(out, buf, offset, n, c - ' ');
       }
-      out.append((char) (c - ' '));
-      ++index;
     }
+    return n;
+  }
 
-    while (index < tLen) {
-      switch (currentCode) {
-      case START_A:
-        if (isNextDigits(text, index, 4)) {
-          currentCode = START_C;
-          out.append(CODE_AB_TO_C);
-          out.append(getPackedRawDigits(text, index, 4));
-          index += 4;
-        } else {
-          c = text.charAt(index++);
-          if (c > '_') {
-            currentCode = START_B;
-            out.append(CODE_AC_TO_B);
-            out.append((char) (c - ' '));
-          } else if (c < ' ') {
-            out.append((char) (c + 64));
-          } else {
-            out.append((char) (c - ' '));
+  /** Subset index A for the optimizer */
+  private static final int SET_A = 0;
+  /** Subset index B for the optimizer */
+  private static final int SET_B = 1;
+  /** Subset index C for the optimizer */
+  private static final int SET_C = 2;
+  /** Start char for each subset index */
+  private static final char[] START = { START_A, START_B, START_C };
+  /** Subset change char for each subset index */
+  private static final char[] CHANGE = { CODE_BC_TO_A, CODE_AC_TO_B, CODE_AB_TO_C };
+  /** Cost of a char that cant be encoded in a subset */
+  private static final int NOT_POSSIBLE = Integer.MAX_VALUE / 2;
+
+  /** The tables of the optimizer for each thread, grown to the longest text */
+  private static final ThreadLocal<Optimizer> OPTIMIZER = new ThreadLocal<Optimizer>() {
+    @Override
+    protected Optimizer initialValue() {
+      return new Optimizer();
+    }
+  };
+
+  /**
+   * The tables of toCodewordsOptimal()
+   */
+  private static final class Optimizer {
+    int[] cost = new int[0];
+    byte[] next = new byte[0];
+    final int[] direct = new int[3];
+
+    void ensure(int tLen) {
+      if (next.length < tLen * 3) {
+        // grow by half, so texts getting a bit longer dont allocate each time
+        int len = Math.max(tLen, next.length / 2) * 3 / 2 + 1;
+        cost = new int[(len + 1) * 3];
+        next = new byte[len * 3];
+      }
+    }
+  }
+
+  /**
+   * Writes the shortest sequence of code 128 chars for the text.
+   *
+   * The optimizer works backwards over the text: cost[i * 3 + s] is the minimal
+   * number of chars for the text from index i when subset s is active. In each
+   * subset a char is either encoded directly, with a SHIFT (A and B) or as a
+   * digit pair (C), or the subset is changed first. The choice for each index
+   * and subset is kept in next[] and the chars are written going forward again.
+   * The tables are kept per thread, so only a text longer than all before
+   * allocates.
+   *
+   * @return the number of chars
+   */
+  static int toCodewordsOptimal(boolean ean128, CharSequence text, byte[] out, ByteBuffer buf, int offset) {
+    int tLen = text.length();
+    Optimizer optimizer = OPTIMIZER.get();
+    optimizer.ensure(tLen);
+    int[] cost = optimizer.cost;
+    byte[] next = optimizer.next;
+    int[] direct = optimizer.direct;
+    cost[tLen * 3 + SET_A] = 0;
+    cost[tLen * 3 + SET_B] = 0;
+    cost[tLen * 3 + SET_C] = 0;
+    // an empty text starts with subset B
+    direct[SET_A] = direct[SET_B] = direct[SET_C] = 0;
+
+    for (int i = tLen - 1; i >= 0; i--) {
+      char c = text.charAt(i);
+      if (c > 127 && c != FNC1_CHAR) {
+        throw new RuntimeException("There are illegal characters for barcode 128 in '" + text + "'.");
+      }
+      direct[SET_A] = (c < 96 || c == FNC1_CHAR ? 1 : 2) + cost[(i + 1) * 3 + SET_A];
+      direct[SET_B] = (c >= ' ' ? 1 : 2) + cost[(i + 1) * 3 + SET_B];
+      if (c == FNC1_CHAR) {
+        direct[SET_C] = 1 + cost[(i + 1) * 3 + SET_C];
+      } else if (isNextDigits(text, i, 2)) {
+        direct[SET_C] = 1 + cost[(i + 2) * 3 + SET_C];
+      } else {
+        direct[SET_C] = NOT_POSSIBLE;
+      }
+
+      for (int s = 0; s < 3; s++) {
+        int best = direct[s];
+        int choice = s;
+        for (int t = 2; t >= 0; t--) {
+          if (1 + direct[t] < best) {
+            best = 1 + direct[t];
+            choice = t;
           }
         }
-        break;
-      case START_B:
-        if (isNextDigits(text, index, 4)) {
-          currentCode = START_C;
-          out.append(CODE_AB_TO_C);
-          out.append(getPackedRawDigits(text, index, 4));
-          index += 4;
-        } else {
-          c = text.charAt(index++);
-          if (c < ' ') {
-            currentCode = START_A;
-            out.append(CODE_BC_TO_A);
-            out.append((char) (c + 64));
-          } else {
-            out.append((char) (c - ' '));
-          }
+        cost[i * 3 + s] = best;
+        next[i * 3 + s] = (byte) choice;
+      }
+    }
+
+    // The start char selects the first subset, so no change is needed there
+    int set = SET_B;
+    if (direct[SET_C] < direct[set]) {
+      set = SET_C;
+    }
+    if (direct[SET_A] < direct[set]) {
+      set = SET_A;
+    }
+
+    int n = put(out, buf, offset, 0, START[set]);
+    if (ean128) {
+      n = put(out, buf, offset, n, FNC1);
+    }
+    int i = 0;
+    while (i < tLen) {
+      if (i > 0) {
+        int choice = next[i * 3 + set];
+        if (choice != set) {
+          set = choice;
+          n = put(out, buf, offset, n, CHANGE[set]);
         }
-        break;
-      case START_C:
-        if (isNextDigits(text, index, 2)) {
-          out.append(getPackedRawDigits(text, index, 2));
-          index += 2;
+      }
+      char c = text.charAt(i);
+      if (c == FNC1_CHAR) {
+        n = put(out, buf, offset, n, FNC1);
+        i++;
+      } else if (set == SET_C) {
+        n = put(out, buf, offset, n, (c - '0') * 10 + text.charAt(i + 1) - '0');
+        i += 2;
+      } else if (set == SET_A) {
+        if (c >= 96) {
+          n = put(out, buf, offset, n, SHIFT);
+        }
+        n = put(out, buf, offset, n, c < ' ' ? c + 64 : c - ' ');
+        i++;
+      } else {
+        if (c < ' ') {
+          n = put(out, buf, offset, n, SHIFT);
+          n = put(out, buf, offset, n, c + 64);
         } else {
-          c = text.charAt(index++);
-          if (c < ' ') {
-            out.append(START_A);
-            out.append(CODE_BC_TO_A);
-            out.append((char) (c + 64));
-          } else {
-            out.append(START_B);
-            out.append(CODE_AC_TO_B);
-            out.append((char) (c - ' '));
-          }
+          n = put(out, buf, offset, n, c - ' ');
         }
-        break;
+        i++;
       }
     }
-    return out.toString();
+    return n;
   }
 
   /**
-   * Generates the bars. The input is the actual barcodes, not the human readable text.
+   * Calculates the checksum of the n chars at offset
    */
-  @Override
-  public byte[] getBars() {
-    String text = toRawText(code);
-
-    // In raw mode, there could be human reable text after the raw chars
-    // so separate them
-    int idx = text.indexOf('\uffff');
-    if (idx >= 0)
-      text = text.substring(0, idx);
-
-    // Calculate checksum
-    int chk = text.charAt(0);
-    for (int k = 1; k < text.length(); ++k)
-      chk += k * text.charAt(k);
-    chk = chk % 103;
-    text += (char) chk;
-
-    // Generate the bars
-    byte[] bars = new byte[(text.length()) * 6 + 7];
-    int k;
-    for (k = 0; k < text.length(); ++k)
-      System.arraycopy(BARS[text.charAt(k)], 0, bars, k * 6, 6);
-
-    // Add stop char
-    System.arraycopy(BARS_STOP, 0, bars, k * 6, 7);
-    return bars;
+  private static int checksum(byte[] out, ByteBuffer buf, int offset, int n) {
+    int chk = get(out, buf, offset);
+    for (int k = 1; k < n; ++k) {
+      chk += k * get(out, buf, offset + k);
+    }
+    return chk % 103;
+  }
+
+  /**
+   * Writes one code 128 char to the output (if any) and returns the new number of
+   * chars
+   */
+  private static int put(byte[] out, ByteBuffer buf, int offset, int n, int c) {
+    if (out != null) {
+      out[offset + n] = (byte) c;
+    } else if (buf != null) {
+      buf.put(offset + n, (byte) c);
+    }
+    return n + 1;
+  }
+
+  /**
+   * Reads the byte at index from the output
+   */
+  private static int get(byte[] out, ByteBuffer buf, int index) {
+    return out != null ? out[index] : buf.get(index);
+  }
+
+  /**
+   * Copies len bars from BARS to the output
+   */
+  private static void copy(int from, int len, byte[] out, ByteBuffer buf, int index) {
+    if (out != null) {
+      System.arraycopy(BARS, from, out, index, len);
+    } else {
+      for (int k = 0; k < len; k++) {
+        buf.put(index + k, BARS[from + k]);
+      }
+    }
   }
 }
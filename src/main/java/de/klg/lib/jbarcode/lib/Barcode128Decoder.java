@@ -0,0 +1,189 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.util.Arrays;
+
+/**
+ * Decodes the bars of a code 128 barcode, e.g. from Barcode128.getBars(), back
+ * to the codewords and the text. Used to verify barcodes after encoding.
+ *
+ * Every char has 6 bars with a width of 1 to 4 modules. The widths minus one
+ * are taken as 2 bit digits of a 12 bit number, which is the index into a
+ * table of 4096 entries with the code 128 char (or -1). So each char is found
+ * with one array access.
+ *
+ * The stop char and the checksum are checked before the text is decoded.
+ *
+ * @author Boris Klug
+ */
+public class Barcode128Decoder {
+
+  /** The code 128 char for each pattern of 6 widths, -1 if it is no char */
+  private static final short[] PATTERNS = new short[4096];
+
+  static {
+    Arrays.fill(PATTERNS, (short) -1);
+    for (int c = 0; c < 106; ++c) {
+      PATTERNS[key(Barcode128.BARS, c * 6)] = (short) c;
+    }
+  }
+
+  private Barcode128Decoder() {
+  }
+
+  /**
+   * Returns the code 128 char for the 6 bars at offset, -1 if the widths are no
+   * code 128 char
+   */
+  static int codeword(byte[] bars, int offset) {
+    int key = key(bars, offset);
+    return key < 0 ? -1 : PATTERNS[key];
+  }
+
+  /**
+   * Returns the table index for the 6 bars at offset, -1 if a width is not 1 to
+   * 4
+   */
+  private static int key(byte[] bars, int offset) {
+    int w0 = bars[offset] - 1;
+    int w1 = bars[offset + 1] - 1;
+    int w2 = bars[offset + 2] - 1;
+    int w3 = bars[offset + 3] - 1;
+    int w4 = bars[offset + 4] - 1;
+    int w5 = bars[offset + 5] - 1;
+    // a width out of 1..4 sets a bit above the lowest two
+    if (((w0 | w1 | w2 | w3 | w4 | w5) & ~3) != 0) {
+      return -1;
+    }
+    return w0 << 10 | w1 << 8 | w2 << 6 | w3 << 4 | w4 << 2 | w5;
+  }
+
+  /**
+   * Decodes the bars to text, see decode(byte[], int, int, StringBuilder)
+   *
+   * @param bars the bars
+   * @return the text
+   * @throws BarcodeException if the bars are no valid code 128 barcode
+   */
+  public static String decode(byte[] bars) throws BarcodeException {
+    StringBuilder sb = new StringBuilder(bars.length / 6 * 2);
+    decode(bars, 0, bars.length, sb);
+    return sb.toString();
+  }
+
+  /**
+   * Decodes the bars and appends the text to out. The text is the one
+   * Barcode128 encodes: for EAN128 the FNC1 after the start char is left out,
+   * every other FNC1 is written as Barcode128.FNC1_CHAR. FNC2 and FNC3 are
+   * ignored, FNC4 adds 128 to the next char. Nothing is allocated.
+   *
+   * @param bars   the bars
+   * @param offset the index of the first bar
+   * @param length the number of bars, including checksum and stop char
+   * @param out    the builder for the text
+   * @return BarcodeType.EAN128 if the first char after the start is a FNC1,
+   *         BarcodeType.CODE128 otherwise
+   * @throws BarcodeException if the bars are no valid code 128 barcode
+   */
+  public static BarcodeType decode(byte[] bars, int offset, int length, StringBuilder out)
+      throws BarcodeException {
+    int n = check(bars, offset, length);
+
+    int subset = codeword(bars, offset);
+    boolean ean128 = n > 1 && codeword(bars, offset + 6) == Barcode128.FNC1;
+    boolean shift = false;
+    boolean fnc4 = false;
+    for (int k = ean128 ? 2 : 1; k < n; ++k) {
+      int c = codeword(bars, offset + k * 6);
+      int set = shift ? (subset == Barcode128.START_A ? Barcode128.START_B : Barcode128.START_A) : subset;
+      shift = false;
+      if (c == Barcode128.FNC1) {
+        out.append(Barcode128.FNC1_CHAR);
+      } else if (set == Barcode128.START_C) {
+        if (c < 100) {
+          out.append((char) ('0' + c / 10)).append((char) ('0' + c % 10));
+        } else {
+          subset = c == Barcode128.CODE_AC_TO_B ? Barcode128.START_B : Barcode128.START_A;
+        }
+      } else if (c < 96) {
+        int ch = set == Barcode128.START_A && c >= 64 ? c - 64 : c + ' ';
+        out.append((char) (fnc4 ? ch + 128 : ch));
+        fnc4 = false;
+      } else if (c == Barcode128.SHIFT) {
+        shift = true;
+      } else if (c == Barcode128.CODE_AB_TO_C) {
+        subset = Barcode128.START_C;
+      } else if (c == (set == Barcode128.START_A ? Barcode128.CODE_BC_TO_A : Barcode128.CODE_AC_TO_B)) {
+        fnc4 = true; // FNC4 is the subset change to the own subset
+      } else if (c == Barcode128.CODE_BC_TO_A || c == Barcode128.CODE_AC_TO_B) {
+        subset = c == Barcode128.CODE_BC_TO_A ? Barcode128.START_A : Barcode128.START_B;
+      } // else FNC2 or FNC3
+    }
+    return ean128 ? BarcodeType.EAN128 : BarcodeType.CODE128;
+  }
+
+  /**
+   * Decodes the bars to code 128 chars, from the start char to the last char
+   * before the checksum
+   *
+   * @param bars      the bars
+   * @param offset    the index of the first bar
+   * @param length    the number of bars, including checksum and stop char
+   * @param codewords the array for the chars, at least (length - 7) / 6 - 1
+   *                  entries
+   * @return the number of chars
+   * @throws BarcodeException if the bars are no valid code 128 barcode
+   */
+  public static int decodeCodewords(byte[] bars, int offset, int length, int[] codewords) throws BarcodeException {
+    int n = check(bars, offset, length);
+    for (int k = 0; k < n; ++k) {
+      codewords[k] = codeword(bars, offset + k * 6);
+    }
+    return n;
+  }
+
+  /**
+   * Checks the length, the range in the array, the start char, all chars, the
+   * checksum and the stop char
+   *
+   * @return the number of chars without checksum and stop
+   */
+  private static int check(byte[] bars, int offset, int length) throws BarcodeException {
+    if (length < 19 || (length - 7) % 6 != 0) {
+      throw new BarcodeException("wrong number of bars for code 128: " + length);
+    }
+    if (offset < 0 || offset > bars.length - length) {
+      throw new BarcodeException(length + " bars at offset " + offset + " are outside of the " + bars.length
+          + " bars");
+    }
+    int n = (length - 7) / 6 - 1;
+    int stop = offset + (n + 1) * 6;
+    for (int k = 0; k < 7; ++k) {
+      if (bars[stop + k] != Barcode128.BARS[Barcode128.STOP_OFFSET + k]) {
+        throw new BarcodeException("no code 128 stop char");
+      }
+    }
+
+    int start = codeword(bars, offset);
+    if (start < Barcode128.START_A) {
+      throw new BarcodeException("no code 128 start char");
+    }
+    int sum = start;
+    for (int k = 1; k < n; ++k) {
+      int c = codeword(bars, offset + k * 6);
+      if (c < 0 || c >= Barcode128.START_A) {
+        throw new BarcodeException("no code 128 char at bar " + k * 6);
+      }
+      sum += k * c;
+    }
+    if (codeword(bars, offset + n * 6) != sum % 103) {
+      throw new BarcodeException("wrong code 128 checksum");
+    }
+    return n;
+  }
+}
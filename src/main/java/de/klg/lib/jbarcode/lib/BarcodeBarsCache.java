@@ -0,0 +1,252 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size bounded LRU cache for the bars of barcodes. The key is the barcode type,
+ * the code and (for code 128) the subset optimization, so a cache can be shared
+ * by barcodes of all types.
+ *
+ * The cache is split into segments with a lock each, so threads working on
+ * different codes rarely wait for each other. Each segment evicts its least
+ * recently used entries when it is full.
+ *
+ * The cached arrays are returned directly and must not be modified by the
+ * caller.
+ *
+ * Use it with Barcode.setBarsCache() or call getBars() directly.
+ *
+ * @author Boris Klug
+ */
+public class BarcodeBarsCache {
+
+  /** The default number of segments */
+  public static final int DEFAULT_SEGMENTS = 16;
+
+  private final Segment[] segments;
+  private final int mask;
+  private final int maxEntries;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Creates a cache with the default number of segments
+   *
+   * @param maxEntries the maximal number of cached bar arrays
+   */
+  public BarcodeBarsCache(int maxEntries) {
+    this(maxEntries, DEFAULT_SEGMENTS);
+  }
+
+  /**
+   * Creates a cache
+   *
+   * @param maxEntries the maximal number of cached bar arrays
+   * @param segments   the number of segments, rounded up to a power of two
+   */
+  public BarcodeBarsCache(int maxEntries, int segments) {
+    if (maxEntries < 1 || segments < 1) {
+      throw new IllegalArgumentException("maxEntries and segments must be positive");
+    }
+    int n = Integer.highestOneBit(segments - 1) << 1;
+    n = Math.max(1, Math.min(n, maxEntries));
+    n = Integer.highestOneBit(n);
+    this.segments = new Segment[n];
+    for (int i = 0; i < n; i++) {
+      // spread the rest of the entries over the first segments
+      this.segments[i] = new Segment(maxEntries / n + (i < maxEntries % n ? 1 : 0));
+    }
+    this.mask = n - 1;
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * Returns the bars of the barcode from the cache. If they are not cached yet,
+   * they are generated with bc.getBars() and put into the cache.
+   *
+   * @param bc the barcode
+   * @return the bars or null if the barcode cant generate bars
+   * @throws IllegalArgumentException if the code of the barcode is null
+   */
+  public byte[] getBars(Barcode bc) {
+    boolean optimize = bc instanceof Barcode128 && ((Barcode128) bc).isOptimizeSubsets();
+    Key key = new Key(bc.getCodeType(), optimize, bc.getCode());
+    Segment segment = segmentFor(key);
+    byte[] bars = segment.get(key);
+    if (bars != null) {
+      hits.increment();
+      return bars;
+    }
+    misses.increment();
+    bars = bc.getBars();
+    if (bars != null) {
+      segment.put(key, bars);
+    }
+    return bars;
+  }
+
+  /**
+   * Returns the bars for the spec and the code from the cache. If they are not
+   * cached yet, they are generated with the BarcodeEncoder of the spec type.
+   *
+   * @param spec the spec
+   * @param code the code
+   * @return the bars or null if the code cant be encoded
+   * @throws IllegalArgumentException if the code is null
+   */
+  public byte[] getBars(BarcodeSpec spec, String code) {
+    Key key = new Key(spec.getType(), spec.isOptimizeSubsets(), code);
+    Segment segment = segmentFor(key);
+    byte[] bars = segment.get(key);
+    if (bars != null) {
+      hits.increment();
+      return bars;
+    }
+    misses.increment();
+    bars = BarcodeEncoder.forType(spec.getType()).getBars(spec, code);
+    if (bars != null) {
+      segment.put(key, bars);
+    }
+    return bars;
+  }
+
+  /**
+   * Returns the number of lookups that found the bars in the cache
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns the number of lookups that had to generate the bars
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * Returns the number of entries removed because the cache was full
+   */
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  /**
+   * Returns the maximal number of entries
+   */
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /**
+   * Returns the current number of entries
+   */
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  /**
+   * Removes all entries. The counters are not reset.
+   */
+  public void clear() {
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "BarcodeBarsCache [size=" + size() + ", maxEntries=" + maxEntries + ", hits=" + getHitCount()
+        + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+  }
+
+  private Segment segmentFor(Key key) {
+    int h = key.hashCode();
+    return segments[(h ^ (h >>> 16)) & mask];
+  }
+
+  /**
+   * The cache key: type, subset optimization and code
+   */
+  private static final class Key {
+    private final BarcodeType type;
+    private final boolean optimize;
+    private final String code;
+    private final int hash;
+
+    Key(BarcodeType type, boolean optimize, String code) {
+      if (code == null) {
+        throw new IllegalArgumentException("Cant cache the bars of a null code");
+      }
+      this.type = type;
+      this.optimize = optimize;
+      this.code = code;
+      this.hash = (code.hashCode() * 31 + type.ordinal()) * 2 + (optimize ? 1 : 0);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key o = (Key) obj;
+      return hash == o.hash && type == o.type && optimize == o.optimize && code.equals(o.code);
+    }
+  }
+
+  /**
+   * One segment of the cache: a LRU map guarded by its own lock
+   */
+  private final class Segment {
+    private final Map<Key, byte[]> map;
+
+    @SuppressWarnings("serial")
+    Segment(int capacity) {
+      map = new LinkedHashMap<Key, byte[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, byte[]> eldest) {
+          if (size() > capacity) {
+            evictions.increment();
+            return true;
+          }
+          return false;
+        }
+      };
+    }
+
+    synchronized byte[] get(Key key) {
+      return map.get(key);
+    }
+
+    synchronized void put(Key key, byte[] bars) {
+      map.put(key, bars);
+    }
+
+    synchronized int size() {
+      return map.size();
+    }
+
+    synchronized void clear() {
+      map.clear();
+    }
+  }
+}
@@ -0,0 +1,340 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
+
+/**
+ * Renders many barcodes in parallel, e.g. all labels of a shipping wave.
+ *
+ * The jobs are rendered on a ForkJoinPool or any other Executor with the direct
+ * raster writer of BarcodeRenderer. Each worker thread reuses its own barcode
+ * objects, so a job only allocates its image.
+ *
+ * The results are passed to a Sink, either in the order of the jobs or in the
+ * order they are finished. The sink is always called by the thread that called
+ * render(), one result at a time, so it does not have to be thread safe. A job
+ * that fails is passed to Sink.failed() and the other jobs go on.
+ *
+ * At most "window" jobs are rendered or waiting for the sink at the same time,
+ * which limits the memory for images of a big batch. In order mode, a slow job
+ * holds back the delivery of the following ones until the window is full.
+ *
+ * Example:
+ *
+ * {@code
+ *   BarcodeBatchRenderer renderer = new BarcodeBatchRenderer(new ForkJoinPool(32));
+ *   renderer.render(jobs, new BarcodeBatchRenderer.Sink() { ... });
+ * }
+ *
+ * @author Boris Klug
+ */
+public class BarcodeBatchRenderer {
+
+  /**
+   * One barcode to render
+   */
+  public static final class Job {
+    private final BarcodeSpec spec;
+    private final String code;
+    private final String replacementtext;
+
+    public Job(BarcodeSpec spec, String code) {
+      this(spec, code, null);
+    }
+
+    /**
+     * @param spec            the look of the barcode
+     * @param code            the code
+     * @param replacementtext the text to draw instead of the code, may be null
+     */
+    public Job(BarcodeSpec spec, String code, String replacementtext) {
+      this.spec = spec;
+      this.code = code;
+      this.replacementtext = replacementtext;
+    }
+
+    public BarcodeSpec getSpec() {
+      return spec;
+    }
+
+    public String getCode() {
+      return code;
+    }
+
+    public String getReplacementtext() {
+      return replacementtext;
+    }
+
+    @Override
+    public String toString() {
+      return "Job [type=" + spec.getType() + ", code=" + code + "]";
+    }
+  }
+
+  /**
+   * Receives the results of a batch
+   */
+  public interface Sink {
+
+    /**
+     * Called with the image of a job
+     *
+     * @param index the index of the job in the batch
+     * @param job   the job
+     * @param image the rendered image
+     */
+    void rendered(int index, Job job, BufferedImage image);
+
+    /**
+     * Called if a job could not be rendered
+     *
+     * @param index the index of the job in the batch
+     * @param job   the job
+     * @param ex    the reason
+     */
+    void failed(int index, Job job, Exception ex);
+  }
+
+  /** The barcode objects of each worker thread, one per type */
+  private static final ThreadLocal<Map<BarcodeType, Barcode>> SCRATCH = new ThreadLocal<Map<BarcodeType, Barcode>>() {
+    @Override
+    protected Map<BarcodeType, Barcode> initialValue() {
+      return new EnumMap<>(BarcodeType.class);
+    }
+  };
+
+  private final Executor executor;
+  private final int window;
+  private boolean ordered = true;
+  private int imageType = BufferedImage.TYPE_BYTE_GRAY;
+  private BarcodeBarsCache barsCache;
+
+  /**
+   * Creates a batch renderer on the common ForkJoinPool
+   */
+  public BarcodeBatchRenderer() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates a batch renderer on the given pool with a window of four jobs per
+   * thread of the pool
+   */
+  public BarcodeBatchRenderer(ForkJoinPool pool) {
+    this(pool, 4 * pool.getParallelism());
+  }
+
+  /**
+   * Creates a batch renderer
+   *
+   * @param executor the executor for the jobs
+   * @param window   the maximal number of jobs in progress
+   */
+  public BarcodeBatchRenderer(Executor executor, int window) {
+    if (window < 1) {
+      throw new IllegalArgumentException("window must be positive");
+    }
+    this.executor = executor;
+    this.window = window;
+  }
+
+  /**
+   * Returns true if the results are passed to the sink in the order of the jobs
+   */
+  public boolean isOrdered() {
+    return ordered;
+  }
+
+  /**
+   * Set to true (default) to get the results in the order of the jobs, false to
+   * get them as soon as they are finished.
+   */
+  public void setOrdered(boolean ordered) {
+    this.ordered = ordered;
+  }
+
+  public int getImageType() {
+    return imageType;
+  }
+
+  /**
+   * Sets the type of the images, BufferedImage.TYPE_BYTE_GRAY (default) or
+   * BufferedImage.TYPE_BYTE_BINARY
+   */
+  public void setImageType(int imageType) {
+    this.imageType = imageType;
+  }
+
+  public BarcodeBarsCache getBarsCache() {
+    return barsCache;
+  }
+
+  /**
+   * Sets a cache for the bars, see Barcode.setBarsCache()
+   */
+  public void setBarsCache(BarcodeBarsCache barsCache) {
+    this.barsCache = barsCache;
+  }
+
+  public int getWindow() {
+    return window;
+  }
+
+  /**
+   * Renders all jobs of the list and waits until all results are passed to the
+   * sink.
+   *
+   * @return the number of failed jobs
+   * @throws InterruptedException if the thread is interrupted while waiting, the
+   *                              remaining jobs are not started
+   */
+  public int render(List<Job> jobs, Sink sink) throws InterruptedException {
+    return render(jobs.iterator(), sink);
+  }
+
+  /**
+   * Renders all jobs of the stream, see render(List, Sink). The stream is read
+   * by the calling thread, only as far as the window allows.
+   */
+  public int render(Stream<Job> jobs, Sink sink) throws InterruptedException {
+    return render(jobs.iterator(), sink);
+  }
+
+  /**
+   * Renders all jobs of the iterator, see render(List, Sink)
+   */
+  public int render(Iterator<Job> jobs, Sink sink) throws InterruptedException {
+    return ordered ? renderOrdered(jobs, sink) : renderUnordered(jobs, sink);
+  }
+
+  /**
+   * Renders one job on the current thread with its barcode objects
+   */
+  BufferedImage renderJob(Job job) throws BarcodeException {
+    BarcodeType type = job.getSpec().getType();
+    Map<BarcodeType, Barcode> scratch = SCRATCH.get();
+    Barcode bc = scratch.get(type);
+    if (bc == null) {
+      bc = BarcodeEncoder.forType(type).newBarcode();
+      scratch.put(type, bc);
+    }
+    job.getSpec().applyTo(bc);
+    bc.setCode(job.getCode());
+    bc.setBarsCache(barsCache);
+    return BarcodeRenderer.getBarcodeBufimageDirect(bc, job.getReplacementtext(), imageType);
+  }
+
+  private int renderOrdered(Iterator<Job> jobs, Sink sink) throws InterruptedException {
+    ArrayDeque<Result> pending = new ArrayDeque<>(window);
+    int index = 0;
+    int failed = 0;
+    while (jobs.hasNext()) {
+      if (pending.size() == window) {
+        failed += pending.poll().deliver(sink);
+      }
+      Result result = new Result(index++, jobs.next());
+      result.submit(null);
+      pending.add(result);
+    }
+    while (!pending.isEmpty()) {
+      failed += pending.poll().deliver(sink);
+    }
+    return failed;
+  }
+
+  private int renderUnordered(Iterator<Job> jobs, Sink sink) throws InterruptedException {
+    BlockingQueue<Result> done = new LinkedBlockingQueue<>();
+    int index = 0;
+    int inProgress = 0;
+    int failed = 0;
+    while (jobs.hasNext()) {
+      if (inProgress == window) {
+        failed += done.take().deliver(sink);
+        inProgress--;
+      }
+      new Result(index++, jobs.next()).submit(done);
+      inProgress++;
+    }
+    for (; inProgress > 0; inProgress--) {
+      failed += done.take().deliver(sink);
+    }
+    return failed;
+  }
+
+  /**
+   * The image or the error of one job
+   */
+  private final class Result {
+    private final int index;
+    private final Job job;
+    private CompletableFuture<BufferedImage> future;
+
+    Result(int index, Job job) {
+      this.index = index;
+      this.job = job;
+    }
+
+    /**
+     * Starts rendering, the result is added to the queue when it is finished
+     */
+    void submit(BlockingQueue<Result> done) {
+      future = new CompletableFuture<>();
+      try {
+        executor.execute(() -> {
+          try {
+            future.complete(renderJob(job));
+          } catch (Throwable t) {
+            future.completeExceptionally(t);
+          } finally {
+            if (done != null) {
+              done.add(this);
+            }
+          }
+        });
+      } catch (RuntimeException ex) { // e.g. rejected by the executor
+        future.completeExceptionally(ex);
+        if (done != null) {
+          done.add(this);
+        }
+      }
+    }
+
+    /**
+     * Waits for the result and passes it to the sink
+     *
+     * @return 1 if the job failed, 0 otherwise
+     */
+    int deliver(Sink sink) throws InterruptedException {
+      BufferedImage image;
+      try {
+        image = future.get();
+      } catch (ExecutionException ex) {
+        Throwable cause = ex.getCause();
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        sink.failed(index, job, cause instanceof Exception ? (Exception) cause : ex);
+        return 1;
+      }
+      sink.rendered(index, job, image);
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+/**
+ * The size of a rendered barcode in pixels, see BarcodeLayout.measure(). Like
+ * BarcodePoint, this class is used instead of java.awt.Dimension so the core
+ * JBarcode classes do not rely on AWT.
+ *
+ * @author Boris Klug
+ */
+public final class BarcodeDimension {
+
+  private final int width;
+  private final int height;
+  private final int barsum;
+  private final int moduleWidth;
+
+  public BarcodeDimension(int width, int height, int barsum, int moduleWidth) {
+    this.width = width;
+    this.height = height;
+    this.barsum = barsum;
+    this.moduleWidth = moduleWidth;
+  }
+
+  /**
+   * Returns the width of the image in pixels, including the quiet zone and the
+   * magnification
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the height of the image in pixels, including the text and the
+   * magnification
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Returns the sum of all bars, the width of the bars in modules
+   */
+  public int getBarsum() {
+    return barsum;
+  }
+
+  /**
+   * Returns the width of the smallest bar in pixels (bar width times
+   * magnification)
+   */
+  public int getModuleWidth() {
+    return moduleWidth;
+  }
+
+  /**
+   * Returns the width in millimetres if printed with the given resolution
+   */
+  public float getWidthMillimeters(int dpi) {
+    return width * 25.4f / dpi;
+  }
+
+  /**
+   * Returns the height in millimetres if printed with the given resolution
+   */
+  public float getHeightMillimeters(int dpi) {
+    return height * 25.4f / dpi;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof BarcodeDimension)) {
+      return false;
+    }
+    BarcodeDimension o = (BarcodeDimension) obj;
+    return width == o.width && height == o.height && barsum == o.barsum && moduleWidth == o.moduleWidth;
+  }
+
+  @Override
+  public int hashCode() {
+    return ((width * 31 + height) * 31 + barsum) * 31 + moduleWidth;
+  }
+
+  @Override
+  public String toString() {
+    return "BarcodeDimension [width=" + width + ", height=" + height + ", barsum=" + barsum + ", moduleWidth="
+        + moduleWidth + "]";
+  }
+}
@@ -101,6 +101,34 @@ public class BarcodeEAN extends Barcode {
       { EVEN, ODD, ODD, EVEN, ODD, EVEN } // 9
   };
 
+  /** The char positions for EAN13, see getCharPosArray(). */
+  static final BarcodePoint[] CHARPOS_EAN13 = createCharPos(BarcodeType.EAN13);
+  /** The char positions for EAN8, see getCharPosArray(). */
+  static final BarcodePoint[] CHARPOS_EAN8 = createCharPos(BarcodeType.EAN8);
+
+  /** The modules of the digits with odd parity (L code), 7 bits each. */
+  static final int[] MODULES_L = new int[10];
+  /** The modules of the digits with even parity (G code), 7 bits each. */
+  static final int[] MODULES_G = new int[10];
+  /** The modules of the digits on the right side (R code), 7 bits each. */
+  static final int[] MODULES_R = new int[10];
+
+  static {
+    for (int c = 0; c < 10; ++c) {
+      byte[] stripes = BARS[c];
+      int l = 0;
+      int g = 0;
+      for (int k = 0; k < 4; ++k) {
+        // L starts with a space, G is L with the stripes reversed
+        l = (l << stripes[k]) | ((k & 1) == 1 ? (1 << stripes[k]) - 1 : 0);
+        g = (g << stripes[3 - k]) | ((k & 1) == 1 ? (1 << stripes[3 - k]) - 1 : 0);
+      }
+      MODULES_L[c] = l;
+      MODULES_G[c] = g;
+      MODULES_R[c] = ~l & 0x7f;
+    }
+  }
+
   /** Creates new BarcodeEAN */
   public BarcodeEAN() {
     fontname = "SanSerif";
@@ -123,9 +151,17 @@ public class BarcodeEAN extends Barcode {
    * @return the parity character
    */
   public static int calculateEANParity(String code) {
+    return calculateEANParity(code, code.length());
+  }
+
+  /**
+   * Calculates the EAN parity character of the first length chars, without
+   * creating a substring
+   */
+  static int calculateEANParity(CharSequence code, int length) {
     int mul = 3;
     int total = 0;
-    for (int k = code.length() - 1; k >= 0; --k) {
+    for (int k = length - 1; k >= 0; --k) {
       int n = code.charAt(k) - '0';
       total += mul * n;
       mul ^= 2;
@@ -168,7 +204,16 @@ public class BarcodeEAN extends Barcode {
    * @return the barcode
    */
   public byte[] getBarsEAN13() {
-    String rawCode = toRawText(code);
+    return barsEAN13(toRawText(code));
+  }
+
+  /**
+   * Creates the bars for the barcode EAN13 and UPCA.
+   *
+   * @param rawCode the digits of the code
+   * @return the barcode
+   */
+  static byte[] barsEAN13(String rawCode) {
 
     int[] code = new int[rawCode.length()];
     for (int k = 0; k < code.length; ++k) {
@@ -221,7 +266,16 @@ public class BarcodeEAN extends Barcode {
    * @return the barcode
    */
   public byte[] getBarsEAN8() {
-    String rawCode = toRawText(code);
+    return barsEAN8(toRawText(code));
+  }
+
+  /**
+   * Creates the bars for the barcode EAN8.
+   *
+   * @param rawCode the digits of the code
+   * @return the barcode
+   */
+  static byte[] barsEAN8(String rawCode) {
     int[] code = new int[rawCode.length()];
     for (int k = 0; k < code.length; ++k) {
       code[k] = rawCode.charAt(k) - '0';
@@ -264,7 +318,16 @@ public class BarcodeEAN extends Barcode {
    * @return the barcode
    */
   public byte[] getBarsUPCE() {
-    String rawCode = toRawText(code);
+    return barsUPCE(toRawText(code));
+  }
+
+  /**
+   * Creates the bars for the barcode UPCE.
+   *
+   * @param rawCode the digits of the code
+   * @return the barcode
+   */
+  static byte[] barsUPCE(String rawCode) {
     int[] code = new int[rawCode.length()];
     for (int k = 0; k < code.length; ++k) {
       code[k] = rawCode.charAt(k) - '0';
@@ -389,31 +452,89 @@ public class BarcodeEAN extends Barcode {
    */
   @Override
   public byte[] getBars() {
-    if (codeType == BarcodeType.EAN13) {
+    return bars(codeType, code);
+  }
+
+  /**
+   * Return the bars of an EAN13 or EAN8 barcode for the given code
+   *
+   * @return a byte array this the widths of the bars or null when something when wrong
+   */
+  static byte[] bars(BarcodeType type, String code) {
+    if (type == BarcodeType.EAN13) {
       if (code.length() != 13) {
         return null;
       }
-      return getBarsEAN13();
+      return barsEAN13(code);
 
-    } else if (codeType == BarcodeType.EAN8) {
+    } else if (type == BarcodeType.EAN8) {
       if (code.length() != 8) {
         return null;
       }
-      return getBarsEAN8();
+      return barsEAN8(code);
     }
 
     return null; // cant generate this bars
   }
 
+  /**
+   * Return the modules of an EAN13 or EAN8 barcode, created directly from the
+   * digit patterns
+   *
+   * @return the modules or null when something when wrong
+   */
+  @Override
+  public BarcodeModules getModules() {
+    return modules(codeType, code);
+  }
+
+  /**
+   * Return the modules of an EAN13 or EAN8 barcode for the given code
+   *
+   * @return the modules or null when something when wrong
+   */
+  static BarcodeModules modules(BarcodeType type, String code) {
+    int left;
+    if (type == BarcodeType.EAN13 && code.length() == 13) {
+      left = 6;
+    } else if (type == BarcodeType.EAN8 && code.length() == 8) {
+      left = 4;
+    } else {
+      return null; // cant generate this modules
+    }
+    int first = code.length() - 2 * left; // 1 for the parity digit of EAN13
+    byte[] sequence = first == 1 ? PARITY13[code.charAt(0) - '0'] : PARITY13[0];
+
+    BarcodeModules.Builder b = new BarcodeModules.Builder(left * 14 + 11);
+    b.appendGuard(0x5, 3);
+    for (int k = 0; k < left; ++k) {
+      int c = code.charAt(first + k) - '0';
+      b.append(sequence[k] == ODD ? MODULES_L[c] : MODULES_G[c], 7);
+    }
+    b.appendGuard(0xa, 5);
+    for (int k = 0; k < left; ++k) {
+      b.append(MODULES_R[code.charAt(first + left + k) - '0'], 7);
+    }
+    b.appendGuard(0x5, 3);
+    return b.build();
+  }
+
   /**
    * Get the position of the guard bars (if any). The position is given as an int
    * array, first bar is 0.
    */
   @Override
   public int[] getGuardBarsArray() {
-    if (codeType == BarcodeType.EAN13) {
+    return guardBars(codeType);
+  }
+
+  /**
+   * Get the position of the guard bars for the given type
+   */
+  static int[] guardBars(BarcodeType type) {
+    if (type == BarcodeType.EAN13) {
       return GUARD_EAN13;
-    } else if (codeType == BarcodeType.EAN8) {
+    } else if (type == BarcodeType.EAN8) {
       return GUARD_EAN8;
     } else {
       return GUARD_EMPTY;
@@ -431,9 +552,34 @@ public class BarcodeEAN extends Barcode {
    */
   @Override
   public BarcodePoint[] getCharPosArray() {
+    return BarcodePoint.copyOf(charPos(codeType));
+  }
+
+  @Override
+  BarcodePoint[] charPosArray() {
+    return charPos(codeType);
+  }
 
+  /**
+   * Returns the positions of each character for the given type, see
+   * getCharPosArray(). The arrays are created once per type and shared, they
+   * must not be modified.
+   */
+  static BarcodePoint[] charPos(BarcodeType type) {
+    if (type == BarcodeType.EAN13) {
+      return CHARPOS_EAN13;
+    } else if (type == BarcodeType.EAN8) {
+      return CHARPOS_EAN8;
+    }
+    return Barcode.NO_CHARPOS;
+  }
+
+  /**
+   * Creates the positions of each character for the given type
+   */
+  private static BarcodePoint[] createCharPos(BarcodeType type) {
     BarcodePoint[] pos = new BarcodePoint[13];
-    if (codeType == BarcodeType.EAN13) {
+    if (type == BarcodeType.EAN13) {
       // 13 chars..
       int strech = 7;
       float x = 5;
@@ -453,7 +599,7 @@ public class BarcodeEAN extends Barcode {
       pos[11] = new BarcodePoint(x + (strech * 4), 0);
       pos[12] = new BarcodePoint(x + (strech * 5), 0);
 
-    } else if (codeType == BarcodeType.EAN8) {
+    } else if (type == BarcodeType.EAN8) {
       // 8 chars to go
       int strech = 7;
       float x = 4;
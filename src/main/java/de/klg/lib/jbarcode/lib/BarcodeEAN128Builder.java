@@ -0,0 +1,272 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Builds the text of an EAN128 barcode from AIs and their values. Example:
+ *
+ * {@code
+ *   BarcodeEAN128Builder b = new BarcodeEAN128Builder();
+ *   b.add("10", "ABC").add("01", "04012345333336").add("15", "031231");
+ *   b.toText(); // "01040123453333361503123110ABC"
+ * }
+ *
+ * Every value is validated against the table of BarcodeEAN128Textdecoder when
+ * it is added.
+ *
+ * The fields are ordered so that as few FNC1 as possible are needed: first the
+ * fields with a length predefined by GS1, which need no FNC1 after them, then
+ * the numeric fields and at last the alphanumeric fields, so long runs of
+ * digits can be encoded as digit pairs. A Barcode128.FNC1_CHAR is only added
+ * after fields without predefined length, and not after the last field.
+ *
+ * @author Boris Klug
+ */
+public class BarcodeEAN128Builder {
+
+  /**
+   * The first two digits of the AIs with a length predefined by GS1. A scanner
+   * knows their length, so they need no FNC1 after them.
+   */
+  private static final String PREDEFINED = "00010203041112131415161718192031323334353641";
+
+  /** The values by AI */
+  private final Map<String, String> fields = new TreeMap<>();
+
+  /** The text, null if it has to be built again */
+  private String text;
+
+  /**
+   * Creates an empty builder
+   */
+  public BarcodeEAN128Builder() {
+  }
+
+  /**
+   * Creates a builder with the given fields, see putAll()
+   */
+  public BarcodeEAN128Builder(Map<String, String> fields) {
+    putAll(fields);
+  }
+
+  /**
+   * Adds the field. If there is already a field with this AI, its value is
+   * replaced.
+   *
+   * @param ai    the application identifier, e.g. "01"
+   * @param value the content of the field
+   * @return this builder
+   * @throws IllegalArgumentException if the AI is unknown or the value is not
+   *                                  valid for it
+   */
+  public BarcodeEAN128Builder add(String ai, String value) {
+    if (BarcodeEAN128Textdecoder.getField(ai) == null) {
+      throw new IllegalArgumentException("Unknown AI '" + ai + "'");
+    }
+    if (value.indexOf(Barcode128.FNC1_CHAR) >= 0) {
+      throw new IllegalArgumentException("The value '" + value + "' of AI " + ai + " contains a FNC1");
+    }
+    int status = BarcodeEAN128Textdecoder.validateValue(ai, value);
+    if (status != BarcodeEAN128Textdecoder.VALID) {
+      throw new IllegalArgumentException("The value '" + value + "' is not valid for AI " + ai + ": "
+          + statusText(status));
+    }
+    fields.put(ai, value);
+    text = null;
+    return this;
+  }
+
+  /**
+   * Adds all fields of the map, the keys are the AIs
+   *
+   * @return this builder
+   * @throws IllegalArgumentException if an AI is unknown or a value is not
+   *                                  valid
+   */
+  public BarcodeEAN128Builder putAll(Map<String, String> fields) {
+    for (Map.Entry<String, String> e : fields.entrySet()) {
+      add(e.getKey(), e.getValue());
+    }
+    return this;
+  }
+
+  /**
+   * Removes the field with the AI
+   *
+   * @return this builder
+   */
+  public BarcodeEAN128Builder remove(String ai) {
+    if (fields.remove(ai) != null) {
+      text = null;
+    }
+    return this;
+  }
+
+  /**
+   * Removes all fields
+   */
+  public void clear() {
+    fields.clear();
+    text = null;
+  }
+
+  /**
+   * Returns the value of the field with the AI, null if there is none
+   */
+  public String get(String ai) {
+    return fields.get(ai);
+  }
+
+  /**
+   * Returns the number of fields
+   */
+  public int size() {
+    return fields.size();
+  }
+
+  /**
+   * Returns the text for a barcode of type EAN128: the fields in the order
+   * described above with a Barcode128.FNC1_CHAR after each field without
+   * predefined length but the last one. The leading FNC1 is not part of the
+   * text, it is added by Barcode128.
+   */
+  public String toText() {
+    if (text != null) {
+      return text;
+    }
+    List<String> predefined = new ArrayList<>();
+    List<String> numeric = new ArrayList<>();
+    List<String> alphanumeric = new ArrayList<>();
+    int length = 0;
+    for (Map.Entry<String, String> e : fields.entrySet()) {
+      String ai = e.getKey();
+      if (isPredefinedLength(ai)) {
+        predefined.add(ai);
+      } else if (BarcodeEAN128Textdecoder.getField(ai).getContentonlynr()) {
+        numeric.add(ai);
+      } else {
+        alphanumeric.add(ai);
+      }
+      length += ai.length() + e.getValue().length() + 1;
+    }
+
+    StringBuilder sb = new StringBuilder(length);
+    for (String ai : predefined) {
+      sb.append(ai).append(fields.get(ai));
+    }
+    int separated = numeric.size() + alphanumeric.size();
+    numeric.addAll(alphanumeric);
+    for (String ai : numeric) {
+      sb.append(ai).append(fields.get(ai));
+      if (--separated > 0) {
+        sb.append(Barcode128.FNC1_CHAR);
+      }
+    }
+    text = sb.toString();
+    return text;
+  }
+
+  /**
+   * Returns the text in human readable format, e.g.
+   * "(01)04012345333336(10)ABC"
+   */
+  public String toHumanText() {
+    return BarcodeEAN128Textdecoder.toHumanText(toText());
+  }
+
+  /**
+   * Returns the bars for the text, encoded with the subset optimization of
+   * Barcode128
+   *
+   * @throws IllegalArgumentException if there are no fields
+   */
+  public byte[] getBars() {
+    String t = checkedText();
+    byte[] bars = new byte[Barcode128.encode(BarcodeType.EAN128, true, t, null, null, 0)];
+    Barcode128.encode(BarcodeType.EAN128, true, t, bars, null, 0);
+    return bars;
+  }
+
+  /**
+   * Returns the modules for the text, encoded with the subset optimization of
+   * Barcode128
+   *
+   * @throws IllegalArgumentException if there are no fields
+   */
+  public BarcodeModules getModules() {
+    return Barcode128.modules(BarcodeType.EAN128, true, checkedText());
+  }
+
+  /**
+   * Creates a barcode with the properties of the spec and the text of this
+   * builder. The subsets are always optimized.
+   *
+   * @param spec the spec, its type must be EAN128
+   * @return the new barcode
+   * @throws IllegalArgumentException if the type of the spec is not EAN128 or
+   *                                  there are no fields
+   */
+  public Barcode newBarcode(BarcodeSpec spec) {
+    if (spec.getType() != BarcodeType.EAN128) {
+      throw new IllegalArgumentException("Spec of type " + spec.getType() + " used for an EAN128 text");
+    }
+    BarcodeSpec optimized = spec.isOptimizeSubsets() ? spec : spec.toBuilder().optimizeSubsets(true).build();
+    return optimized.newBarcode(checkedText());
+  }
+
+  /**
+   * Returns true if the length of the AI is predefined by GS1, so no FNC1 is
+   * needed after its field
+   */
+  public static boolean isPredefinedLength(String ai) {
+    BarcodeEAN128Field field = BarcodeEAN128Textdecoder.getField(ai);
+    if (field == null || !field.getFixcontentlen()) {
+      return false;
+    }
+    for (int k = 0; k < PREDEFINED.length(); k += 2) {
+      if (ai.regionMatches(0, PREDEFINED, k, 2)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return "BarcodeEAN128Builder [fields=" + fields + "]";
+  }
+
+  private String checkedText() {
+    if (fields.isEmpty()) {
+      throw new IllegalArgumentException("There are no EAN128 fields");
+    }
+    return toText();
+  }
+
+  /**
+   * Returns a text for the status code of BarcodeEAN128Textdecoder.validate()
+   */
+  private static String statusText(int status) {
+    switch (status) {
+    case BarcodeEAN128Textdecoder.WRONG_LENGTH:
+      return "wrong length";
+    case BarcodeEAN128Textdecoder.NOT_NUMERIC:
+      return "only digits are allowed";
+    case BarcodeEAN128Textdecoder.ILLEGAL_CHAR:
+      return "char not in the GS1 character set";
+    case BarcodeEAN128Textdecoder.WRONG_CHECK_DIGIT:
+      return "wrong check digit";
+    default:
+      return "status " + status;
+    }
+  }
+}
@@ -6,177 +6,242 @@
  * ---------------------------------------------------------------------------- */
 package de.klg.lib.jbarcode.lib;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * This class decodes the texts for EAN128 barcodes
  *
+ * The application identifiers (AI) are looked up in a table indexed by the
+ * first four digits of the text. An AI with two or three digits fills all
+ * entries starting with it, so every AI is found with one array access. The
+ * text is walked once and written to an Appendable, no substrings are created.
+ *
+ * The same walk validates the text, see validate(). The length, the flags and
+ * the check digits of the AIs are kept in primitive arrays over the same four
+ * digit index, so validating allocates nothing. The human readable text only
+ * needs the AIs and the lengths, so the content of the fields (digits, chars,
+ * check digits) is not checked for it and a label with a wrong check digit
+ * still shows its fields.
+ *
  * @author Boris Klug
  */
 public class BarcodeEAN128Textdecoder {
 
-  private static Map<String, BarcodeEAN128Field> numberToText = new HashMap<>();
+  /** The text is a valid EAN128 text */
+  public static final int VALID = 0;
+  /** The text is null or has no field */
+  public static final int EMPTY = 1;
+  /** A field starts with an unknown AI */
+  public static final int UNKNOWN_AI = 2;
+  /** A fixed length field is too short or a variable length field is empty or too long */
+  public static final int WRONG_LENGTH = 3;
+  /** A numeric field has a char which is not a digit */
+  public static final int NOT_NUMERIC = 4;
+  /** A field has a char which is not in the GS1 character set */
+  public static final int ILLEGAL_CHAR = 5;
+  /** The check digit of a field is wrong */
+  public static final int WRONG_CHECK_DIGIT = 6;
+
+  /** Flags of an AI */
+  private static final byte NUMERIC = 1;
+  private static final byte FIXED = 2;
+  private static final byte CHECK_DIGIT = 4;
+
+  /**
+   * The fields by the first four digits of the text
+   */
+  private static final BarcodeEAN128Field[] FIELDS = new BarcodeEAN128Field[10000];
+
+  /** The number of digits of the AI, 0 if there is no AI */
+  private static final byte[] AI_LENGTH = new byte[10000];
+  /** The fixed or maximal length of the content */
+  private static final byte[] CONTENT_LENGTH = new byte[10000];
+  /** NUMERIC, FIXED and CHECK_DIGIT */
+  private static final byte[] FLAGS = new byte[10000];
+
+  /** The chars allowed in alphanumeric fields (GS1 character set 82) */
+  private static final boolean[] GS1_CHARS = new boolean[128];
 
   static {
-    BarcodeEAN128Field field;
-    // fieldident -----vv vv--- infostr onlynumbers ---vv vv--- fixed content length
-    field = new BarcodeEAN128Field("00", "Nummer Versandeinheit (NVE)", 18, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("01", "EAN der Handelseinheit", 14, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("02", "EAN der enhaltenen Einheit", 14, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("10", "Losnummer/Chargennr", 20, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("11", "Herstellungsdatum (JJMMTT)", 6, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("12", "Flligkeitsdatum (JJMMTT)", 6, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("13", "Packdatum (JJMMTT)", 6, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("15", "Mindeshaltbarkeitsdatum (JJMMTT)", 6, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("17", "Verfallsdatum (JJMMTT)", 6, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("20", "Produktvariante", 2, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("21", "Seriennummer", 20, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("240", "zustzliche Produktinformation", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("241", "Kundenteilennummer", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("250", "Seriennummer integriertes Bauteil", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("251", "Quellenreferenz", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("252", "EAN-Identnummer Einzelfertigung", 27, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("30", "Menge in Stck (mengenvariable Handelseinheit)", 8, true, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("310", "Nettogewicht in Kilogramm (mengenvariable Handelseinheit)", 6, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("311", "Lnge/1. Dimension in Meter (mengenvariable Handelseinheit)", 6, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("312", "Breite/Durchmesser/2. Dimension in Meter (mengenvariable Handelseinheit)", 6,
-        true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("313", "Hhe/3. Dimension in Meter (mengenvariable Handelseinheit)", 6, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("314", "Flche in Quadratmeter (mengenvariable Handelseinheit)", 6, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("315", "(Netto)Volumen in Liter (mengenvariable Handelseinheit)", 6, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("316", "(Netto)Volumen in Kubikmeter (mengenvariable Handelseinheit)", 6, true,
-        true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("330", "Bruttogewicht in Kilogramm", 6, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("331", "Lnge/1. Dimension in Meter", 6, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("332", "Breite/Durchmesser/2. Dimension in Meter", 6, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("333", "Hhe/3.Dimension in Meter", 6, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("334", "Flche in Quadratmeter", 6, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("335", "(Brutto)Volumen in Liter", 6, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("336", "(Brutto)Volumen in Kubikmeter", 6, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("337", "Kilogramm je Quardatmeter", 6, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("37", "Anzahl enthaltene Einheiten", 8, true, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("390", "Zahlungsbetrag lokale Whrung", 15, true, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("391", "Zahlungsbetrag mit ISO-Whrungsschlssel", 15, true, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("392", "Verkaufsbetrag - einheitlicher Whrungsbereich", 15, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("393", "Verkaufsbetrag mit vorangestelltem 3stelligen ISO-Whrungscode", 18, true,
-        false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("400", "Bestellnummer des Warenempfngers", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("401", "Sendungsnummer (enthlt min. 7stellige Basisnummer)", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("402", "Lieferungsnummer", 17, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("403", "Leitcode", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("410", "ILN des Waremempfngers", 13, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("411", "ILN des Rechnungsempfngers", 13, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("412", "ILN des Lieferanten", 13, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("413", "ILN des Endempfngers bei gebrochenen Transporten", 13, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("414", "ILN auf der physischen Lokation", 13, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("415", "ILN des Rechnungsausstellers", 13, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("420", "PLZ des Empfngers in nationalem Format", 9, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("421",
-        "PLZ des Empfngers in internationem Format (vorangestellter 3stelliger ISO-Lndercode)", 12, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("422", "Ursprungsland des Produktes", 3, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("423", "Land/Lnder der ersten Verarbeitungsstufe", 15, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("424", "Land der Verarbeitung", 3, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("425", "Land der Zerlegung", 3, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("426", "Land aller Verarbeitungsstufen", 3, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("7001", "NATO-Lagerhaltungsnummer", 13, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("7002", "Klassifikation der UN/ECE fr Fleischzuschnitte", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("7030-7039", "Zulassungsnummer des Verarbeitungsbetriebs", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("8001", "Rollenprodukte (Breite, Lnge, Kerndurchmesser, ...)", 14, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("8003", "EAN-Idennummer fr Mehrwegtransportverpackungen", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("8004", "Serielle EAN-Objekt- bzw. Behlternummer", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("8005", "Abgabepreis pro Maeinheit der inliegenden Einheit", 6, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("8006", "Artikelkomponenten", 18, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("8007", "IBAN International Bank Account Number", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("8008", "Herstellungsdatum und -uhrzeit", 12, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("8018", "EAN-Servicebezugsnummer", 18, true, true);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("8020", "Referenznummer des Zahlungstrgers", 25, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("90", "Interne und/oder bilaterale bestimmte Anwendungen", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("91", "Intern - Rohmeterial, Verpackung, Komponenten", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("92", "Intern - Rohmeterial, Verpackung, Komponenten", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("93", "Intern - Hersteller", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("94", "Intern - Hersteller", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("95", "Intern - Transporteure (Fachbrief-Nr. etc.)", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("96", "Intern - Transporteure", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("97", "Intern - Gro- und Einzelhandel", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("98", "Intern - Gro- und Einzelhandel", 30, false, false);
-    numberToText.put(field.getField(), field);
-    field = new BarcodeEAN128Field("99", "Bilateral vereibarte Texte", 30, false, false);
-    numberToText.put(field.getField(), field);
+    // AI, info, content length, only numbers, fixed content length. The AIs
+    // added with addDecimal() have a fourth digit for the decimal point.
+    add(new BarcodeEAN128Field("00", "Nummer Versandeinheit (NVE)", 18, true, true));
+    add(new BarcodeEAN128Field("01", "EAN der Handelseinheit", 14, true, true));
+    add(new BarcodeEAN128Field("02", "EAN der enhaltenen Einheit", 14, true, true));
+    add(new BarcodeEAN128Field("10", "Losnummer/Chargennr", 20, false, false));
+    add(new BarcodeEAN128Field("11", "Herstellungsdatum (JJMMTT)", 6, true, true));
+    add(new BarcodeEAN128Field("12", "Flligkeitsdatum (JJMMTT)", 6, true, true));
+    add(new BarcodeEAN128Field("13", "Packdatum (JJMMTT)", 6, true, true));
+    add(new BarcodeEAN128Field("15", "Mindeshaltbarkeitsdatum (JJMMTT)", 6, true, true));
+    add(new BarcodeEAN128Field("17", "Verfallsdatum (JJMMTT)", 6, true, true));
+    add(new BarcodeEAN128Field("20", "Produktvariante", 2, true, true));
+    add(new BarcodeEAN128Field("21", "Seriennummer", 20, false, false));
+    add(new BarcodeEAN128Field("240", "zustzliche Produktinformation", 30, false, false));
+    add(new BarcodeEAN128Field("241", "Kundenteilennummer", 30, false, false));
+    add(new BarcodeEAN128Field("250", "Seriennummer integriertes Bauteil", 30, false, false));
+    add(new BarcodeEAN128Field("251", "Quellenreferenz", 30, false, false));
+    add(new BarcodeEAN128Field("252", "EAN-Identnummer Einzelfertigung", 27, true, true));
+    add(new BarcodeEAN128Field("30", "Menge in Stck (mengenvariable Handelseinheit)", 8, true, false));
+    addDecimal(new BarcodeEAN128Field("310", "Nettogewicht in Kilogramm (mengenvariable Handelseinheit)", 6, true,
+        true));
+    addDecimal(new BarcodeEAN128Field("311", "Lnge/1. Dimension in Meter (mengenvariable Handelseinheit)", 6, true,
+        true));
+    addDecimal(new BarcodeEAN128Field("312", "Breite/Durchmesser/2. Dimension in Meter (mengenvariable Handelseinheit)",
+        6, true, true));
+    addDecimal(new BarcodeEAN128Field("313", "Hhe/3. Dimension in Meter (mengenvariable Handelseinheit)", 6, true,
+        true));
+    addDecimal(new BarcodeEAN128Field("314", "Flche in Quadratmeter (mengenvariable Handelseinheit)", 6, true, true));
+    addDecimal(new BarcodeEAN128Field("315", "(Netto)Volumen in Liter (mengenvariable Handelseinheit)", 6, true, true));
+    addDecimal(new BarcodeEAN128Field("316", "(Netto)Volumen in Kubikmeter (mengenvariable Handelseinheit)", 6, true,
+        true));
+    addDecimal(new BarcodeEAN128Field("330", "Bruttogewicht in Kilogramm", 6, true, true));
+    addDecimal(new BarcodeEAN128Field("331", "Lnge/1. Dimension in Meter", 6, true, true));
+    addDecimal(new BarcodeEAN128Field("332", "Breite/Durchmesser/2. Dimension in Meter", 6, true, true));
+    addDecimal(new BarcodeEAN128Field("333", "Hhe/3.Dimension in Meter", 6, true, true));
+    addDecimal(new BarcodeEAN128Field("334", "Flche in Quadratmeter", 6, true, true));
+    addDecimal(new BarcodeEAN128Field("335", "(Brutto)Volumen in Liter", 6, true, true));
+    addDecimal(new BarcodeEAN128Field("336", "(Brutto)Volumen in Kubikmeter", 6, true, true));
+    addDecimal(new BarcodeEAN128Field("337", "Kilogramm je Quardatmeter", 6, true, true));
+    add(new BarcodeEAN128Field("37", "Anzahl enthaltene Einheiten", 8, true, false));
+    addDecimal(new BarcodeEAN128Field("390", "Zahlungsbetrag lokale Whrung", 15, true, false));
+    addDecimal(new BarcodeEAN128Field("391", "Zahlungsbetrag mit ISO-Whrungsschlssel", 15, true, false));
+    addDecimal(new BarcodeEAN128Field("392", "Verkaufsbetrag - einheitlicher Whrungsbereich", 15, true, false));
+    addDecimal(new BarcodeEAN128Field("393", "Verkaufsbetrag mit vorangestelltem 3stelligen ISO-Whrungscode", 18, true,
+        false));
+    add(new BarcodeEAN128Field("400", "Bestellnummer des Warenempfngers", 30, false, false));
+    add(new BarcodeEAN128Field("401", "Sendungsnummer (enthlt min. 7stellige Basisnummer)", 30, false, false));
+    add(new BarcodeEAN128Field("402", "Lieferungsnummer", 17, true, true));
+    add(new BarcodeEAN128Field("403", "Leitcode", 30, false, false));
+    add(new BarcodeEAN128Field("410", "ILN des Waremempfngers", 13, true, true));
+    add(new BarcodeEAN128Field("411", "ILN des Rechnungsempfngers", 13, true, true));
+    add(new BarcodeEAN128Field("412", "ILN des Lieferanten", 13, true, true));
+    add(new BarcodeEAN128Field("413", "ILN des Endempfngers bei gebrochenen Transporten", 13, true, true));
+    add(new BarcodeEAN128Field("414", "ILN auf der physischen Lokation", 13, true, true));
+    add(new BarcodeEAN128Field("415", "ILN des Rechnungsausstellers", 13, true, true));
+    add(new BarcodeEAN128Field("420", "PLZ des Empfngers in nationalem Format", 9, false, false));
+    add(new BarcodeEAN128Field("421",
+        "PLZ des Empfngers in internationem Format (vorangestellter 3stelliger ISO-Lndercode)", 12, false, false));
+    add(new BarcodeEAN128Field("422", "Ursprungsland des Produktes", 3, true, true));
+    add(new BarcodeEAN128Field("423", "Land/Lnder der ersten Verarbeitungsstufe", 15, false, false));
+    add(new BarcodeEAN128Field("424", "Land der Verarbeitung", 3, true, true));
+    add(new BarcodeEAN128Field("425", "Land der Zerlegung", 3, true, true));
+    add(new BarcodeEAN128Field("426", "Land aller Verarbeitungsstufen", 3, true, true));
+    add(new BarcodeEAN128Field("7001", "NATO-Lagerhaltungsnummer", 13, true, true));
+    add(new BarcodeEAN128Field("7002", "Klassifikation der UN/ECE fr Fleischzuschnitte", 30, false, false));
+    for (int k = 0; k <= 9; k++) { // 7030-7039, one AI for each processor
+      add(new BarcodeEAN128Field("703" + k, "Zulassungsnummer des Verarbeitungsbetriebs", 30, false, false));
+    }
+    add(new BarcodeEAN128Field("8001", "Rollenprodukte (Breite, Lnge, Kerndurchmesser, ...)", 14, true, true));
+    add(new BarcodeEAN128Field("8003", "EAN-Idennummer fr Mehrwegtransportverpackungen", 30, false, false));
+    add(new BarcodeEAN128Field("8004", "Serielle EAN-Objekt- bzw. Behlternummer", 30, false, false));
+    add(new BarcodeEAN128Field("8005", "Abgabepreis pro Maeinheit der inliegenden Einheit", 6, true, true));
+    add(new BarcodeEAN128Field("8006", "Artikelkomponenten", 18, true, true));
+    add(new BarcodeEAN128Field("8007", "IBAN International Bank Account Number", 30, false, false));
+    add(new BarcodeEAN128Field("8008", "Herstellungsdatum und -uhrzeit", 12, false, false));
+    add(new BarcodeEAN128Field("8018", "EAN-Servicebezugsnummer", 18, true, true));
+    add(new BarcodeEAN128Field("8020", "Referenznummer des Zahlungstrgers", 25, false, false));
+    add(new BarcodeEAN128Field("90", "Interne und/oder bilaterale bestimmte Anwendungen", 30, false, false));
+    add(new BarcodeEAN128Field("91", "Intern - Rohmeterial, Verpackung, Komponenten", 30, false, false));
+    add(new BarcodeEAN128Field("92", "Intern - Rohmeterial, Verpackung, Komponenten", 30, false, false));
+    add(new BarcodeEAN128Field("93", "Intern - Hersteller", 30, false, false));
+    add(new BarcodeEAN128Field("94", "Intern - Hersteller", 30, false, false));
+    add(new BarcodeEAN128Field("95", "Intern - Transporteure (Fachbrief-Nr. etc.)", 30, false, false));
+    add(new BarcodeEAN128Field("96", "Intern - Transporteure", 30, false, false));
+    add(new BarcodeEAN128Field("97", "Intern - Gro- und Einzelhandel", 30, false, false));
+    add(new BarcodeEAN128Field("98", "Intern - Gro- und Einzelhandel", 30, false, false));
+    add(new BarcodeEAN128Field("99", "Bilateral vereibarte Texte", 30, false, false));
+
+    // The last digit of these fields is a check digit
+    for (String ai : new String[] { "00", "01", "02", "410", "411", "412", "413", "414", "415" }) {
+      int from = prefix(ai);
+      Arrays.fill(FLAGS, from, from + range(ai), (byte) (FLAGS[from] | CHECK_DIGIT));
+    }
+
+    for (char c : "!\"%&'()*+,-./0123456789:;<=>?ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz"
+        .toCharArray()) {
+      GS1_CHARS[c] = true;
+    }
+  }
+
+  /**
+   * Adds the field to the table for all four digit prefixes starting with its AI
+   */
+  private static void add(BarcodeEAN128Field field) {
+    String ai = field.getField();
+    int from = prefix(ai);
+    int to = from + range(ai);
+    Arrays.fill(FIELDS, from, to, field);
+    Arrays.fill(AI_LENGTH, from, to, (byte) ai.length());
+    Arrays.fill(CONTENT_LENGTH, from, to, (byte) field.getContentlen());
+    Arrays.fill(FLAGS, from, to,
+        (byte) ((field.getContentonlynr() ? NUMERIC : 0) | (field.getFixcontentlen() ? FIXED : 0)));
+  }
+
+  /**
+   * Returns the first table index of the AI
+   */
+  private static int prefix(String ai) {
+    int from = Integer.parseInt(ai);
+    for (int k = ai.length(); k < 4; k++) {
+      from *= 10;
+    }
+    return from;
+  }
+
+  /**
+   * Returns the number of table entries of the AI
+   */
+  private static int range(String ai) {
+    return ai.length() == 2 ? 100 : ai.length() == 3 ? 10 : 1;
+  }
+
+  /**
+   * Adds the field with a fourth digit 0-9 for the position of the decimal
+   * point, e.g. "3102" for a weight in kilogramm with two decimals
+   */
+  private static void addDecimal(BarcodeEAN128Field field) {
+    for (int k = 0; k <= 9; k++) {
+      add(new BarcodeEAN128Field(field.getField() + k, field.getFieldinfo(), field.getContentlen(),
+          field.getContentonlynr(), field.getFixcontentlen()));
+    }
+  }
+
+  /**
+   * Returns the field for the AI
+   *
+   * @param ai the application identifier, e.g. "01"
+   * @return the field or null if the AI is unknown
+   */
+  public static BarcodeEAN128Field getField(String ai) {
+    int key = lookup(ai, 0);
+    return key >= 0 && AI_LENGTH[key] == ai.length() ? FIELDS[key] : null;
+  }
+
+  /**
+   * Returns the table index for the AI which starts at index in the text
+   *
+   * @return the index or -1 if there is no known AI
+   */
+  static int lookup(CharSequence text, int index) {
+    int key = 0;
+    int digits = 0;
+    int len = Math.min(4, text.length() - index);
+    for (; digits < len; digits++) {
+      int d = text.charAt(index + digits) - '0';
+      if (d < 0 || d > 9) {
+        break;
+      }
+      key = key * 10 + d;
+    }
+    if (digits < 2) {
+      return -1;
+    }
+    for (int k = digits; k < 4; k++) {
+      key *= 10;
+    }
+    int aiLength = AI_LENGTH[key];
+    return aiLength != 0 && aiLength <= digits ? key : -1;
   }
 
   /**
@@ -186,79 +251,232 @@ public class BarcodeEAN128Textdecoder {
    * "(01)04012345333336(15)031231(10)123456"
    *
    * Also fields with variable length in the middle of the barcode are are
-   * supported, just add a Barcode128.FNC1 after the field. Example:
+   * supported, just add a Barcode128.FNC1_CHAR after the field. Example:
    * 
    * {@code
-   *   "010401234533333610123456<FNC1>15031231" will be converted to
+   *   "010401234533333610123456<FNC1_CHAR>15031231" will be converted to
    *   "(01)04012345333336(10)123456(15)031231"
    * }
    *
    * @param text  the text to be converted
-   * @return the converted string or null if there is a problem
+   * @return the converted string or null if the AIs or the lengths of the
+   *         fields are not valid. The content of the fields is not checked,
+   *         see validate() for that.
    */
   public static String toHumanText(String text) {
-
-    // If text is not OK, return null
-    if (!isTextOK(text)) {
+    if (text == null) {
       return null;
     }
+    StringBuilder out = new StringBuilder(text.length() + 16);
+    return appendHumanText(text, out) ? out.toString() : null;
+  }
 
-    String out = "";
-    int count = 0;
-    int len = 0;
-    BarcodeEAN128Field field = null;
-    while (count < text.length()) {
-      // test the startstring with 2, 3 and 4 chars
-      field = numberToText.get(text.substring(count, count + 2));
-      if (field == null) {
-        field = numberToText.get(text.substring(count, count + 3));
-      }
-      if (field == null) {
-        field = numberToText.get(text.substring(count, count + 4));
-      }
+  /**
+   * Appends the text in human readable format to out, see toHumanText(String).
+   * Nothing is allocated, so one StringBuilder can be used for many texts.
+   *
+   * @param text the text to be converted
+   * @param out  the builder for the converted text
+   * @return false if the AIs or the lengths of the fields are not valid, out
+   *         contains the fields before the problem then
+   */
+  public static boolean appendHumanText(CharSequence text, StringBuilder out) {
+    try {
+      return decode(text, out, false) == VALID;
+    } catch (IOException e) {
+      throw new RuntimeException(e); // never thrown by a StringBuilder
+    }
+  }
+
+  /**
+   * Writes the text in human readable format to out, see toHumanText(String).
+   *
+   * @param text the text to be converted
+   * @param out  the output for the converted text
+   * @return false if the AIs or the lengths of the fields are not valid, out
+   *         contains the fields before the problem then
+   */
+  public static boolean toHumanText(CharSequence text, Appendable out) throws IOException {
+    return decode(text, out, false) == VALID;
+  }
 
-      if (field == null) { // something went wrong!
-        return "err";
+  /**
+   * Checks if the text is OK in terms of the EAN128 specification, see
+   * validate()
+   *
+   * @return true if the text is OK, false if not
+   */
+  public static boolean isTextOK(String text) {
+    return validate(text) == VALID;
+  }
+
+  /**
+   * Validates the text against the AI table.
+   *
+   * Every field has to start with a known AI. A field with fixed length has to
+   * have exactly this length, a field with variable length ends at the next
+   * Barcode128.FNC1_CHAR or at the end of the text and has at least one and at
+   * most the maximal number of chars. A FNC1_CHAR after a field with fixed
+   * length is allowed. Numeric fields may only contain digits, the others only
+   * chars of the GS1 character set. The check digits of the AIs 00, 01, 02 and
+   * 410-415 are checked.
+   *
+   * @param text the text
+   * @return VALID or the status code of the first problem
+   */
+  public static int validate(CharSequence text) {
+    if (text == null) {
+      return EMPTY;
+    }
+    try {
+      return decode(text, null, true);
+    } catch (IOException e) {
+      throw new RuntimeException(e); // there is no output
+    }
+  }
+
+  /**
+   * Validates the value of one field like validate() does for the fields of a
+   * text. A fixed length value must have exactly the length of the AI, a
+   * variable length value at least one and at most the maximal number of chars.
+   *
+   * @param ai    the application identifier, e.g. "01"
+   * @param value the content of the field without FNC1
+   * @return VALID or the status code of the problem
+   */
+  static int validateValue(String ai, CharSequence value) {
+    int key = lookup(ai, 0);
+    if (key < 0 || AI_LENGTH[key] != ai.length()) {
+      return UNKNOWN_AI;
+    }
+    int flags = FLAGS[key];
+    int len = value.length();
+    if ((flags & FIXED) != 0 ? len != CONTENT_LENGTH[key] : len == 0 || len > CONTENT_LENGTH[key]) {
+      return WRONG_LENGTH;
+    }
+    return checkContent(value, 0, len, flags);
+  }
+
+  /**
+   * Validates all texts, e.g. a column of an import file. No exception is
+   * thrown for invalid texts or null.
+   *
+   * @param texts  the texts
+   * @param status the status code for every text, see validate(CharSequence)
+   * @return the number of texts which are not valid
+   */
+  public static int validate(CharSequence[] texts, int[] status) {
+    if (status.length < texts.length) {
+      throw new IllegalArgumentException("status has " + status.length + " entries for " + texts.length + " texts");
+    }
+    int invalid = 0;
+    for (int k = 0; k < texts.length; k++) {
+      status[k] = validate(texts[k]);
+      if (status[k] != VALID) {
+        invalid++;
       }
-      out = out + "(" + field.getField() + ")";
+    }
+    return invalid;
+  }
 
-      // Fixed len of this field
-      if (field.getFixcontentlen()) {
-        len = field.getField().length() + field.getContentlen();
-        out = out + text.substring(count + 2, count + len);
-        count = count + len;
-      } else { // Variable len of the field
+  /**
+   * Validates all texts, see validate(CharSequence[], int[])
+   *
+   * @param texts the texts
+   * @return the status code for every text
+   */
+  public static int[] validate(CharSequence[] texts) {
+    int[] status = new int[texts.length];
+    validate(texts, status);
+    return status;
+  }
 
-        // search for FNC1 or end of barcode
-        int i = count + field.getField().length() + 1;
-        boolean found = false;
-        while (i < text.length()) {
-          if (text.charAt(i) == Barcode128.FNC1) { // found a FNC1
-            found = true;
-            break;
-          }
-          i++;
+  /**
+   * Parses the fields of the text and writes the human readable text to out if
+   * it is not null. The AIs and the lengths are always checked, the content of
+   * the fields only if strict is true.
+   *
+   * @return VALID or the status code of the first problem
+   */
+  private static int decode(CharSequence text, Appendable out, boolean strict) throws IOException {
+    int len = text.length();
+    int index = 0;
+    boolean empty = true;
+    while (index < len) {
+      if (text.charAt(index) == Barcode128.FNC1_CHAR) {
+        index++;
+        continue;
+      }
+      int key = lookup(text, index);
+      if (key < 0) {
+        return UNKNOWN_AI;
+      }
+      int flags = FLAGS[key];
+      int start = index + AI_LENGTH[key];
+      int end;
+      if ((flags & FIXED) != 0) {
+        end = start + CONTENT_LENGTH[key];
+        if (end > len) {
+          return WRONG_LENGTH;
+        }
+      } else { // up to the next FNC1 or the end of the text
+        end = start;
+        while (end < len && text.charAt(end) != Barcode128.FNC1_CHAR) {
+          end++;
         }
-        if (found) { // found a FNC1
-          out = out + text.substring(count + 2, i - 1);
-          count = i + 1; // +1 for the fnc1
-        } else { // not found we must be at the end
-          out = out + text.substring(count + 2, count + len);
-          count = count + len;
+        if (end == start || end - start > CONTENT_LENGTH[key]) {
+          return WRONG_LENGTH;
+        }
+      }
+
+      if (strict) {
+        int status = checkContent(text, start, end, flags);
+        if (status != VALID) {
+          return status;
         }
       }
-    }
 
-    return out;
+      if (out != null) {
+        out.append('(').append(FIELDS[key].getField()).append(')').append(text, start, end);
+      }
+      empty = false;
+      index = end;
+    }
+    return empty ? EMPTY : VALID;
   }
 
   /**
-   * Checks if the text is OK in terms of the EAN128 specification
+   * Checks the chars and the check digit of the content of a field
    *
-   * @return true if the text is OK, false if not
+   * @return VALID or the status code of the problem
    */
-  public static boolean isTextOK(String text) {
-    // always ok ;-)
-    return true;
+  private static int checkContent(CharSequence text, int start, int end, int flags) {
+    for (int k = start; k < end; k++) {
+      char c = text.charAt(k);
+      if ((flags & NUMERIC) != 0) {
+        if (c < '0' || c > '9') {
+          return NOT_NUMERIC;
+        }
+      } else if (c >= 128 || !GS1_CHARS[c]) {
+        return ILLEGAL_CHAR;
+      }
+    }
+    if ((flags & CHECK_DIGIT) != 0 && !isCheckDigitOK(text, start, end)) {
+      return WRONG_CHECK_DIGIT;
+    }
+    return VALID;
+  }
+
+  /**
+   * Checks the GS1 check digit, the last digit of the numeric content
+   */
+  private static boolean isCheckDigitOK(CharSequence text, int start, int end) {
+    int mul = 3;
+    int total = 0;
+    for (int k = end - 2; k >= start; --k) {
+      total += mul * (text.charAt(k) - '0');
+      mul ^= 2;
+    }
+    return (10 - (total % 10)) % 10 == text.charAt(end - 1) - '0';
   }
 }
@@ -0,0 +1,200 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Stateless encoder for one barcode type. Unlike the Barcode classes, an
+ * encoder keeps no code or properties: the code and the BarcodeSpec are passed
+ * to every call. There is one shared instance per type and it can be used by
+ * any number of threads at the same time.
+ *
+ * @author Boris Klug
+ */
+public final class BarcodeEncoder {
+
+  private static final Map<BarcodeType, BarcodeEncoder> ENCODERS = new EnumMap<>(BarcodeType.class);
+
+  static {
+    for (BarcodeType type : BarcodeType.values()) {
+      if (type != BarcodeType.CODE128_UCC) {
+        ENCODERS.put(type, new BarcodeEncoder(type));
+      }
+    }
+  }
+
+  private final BarcodeType type;
+
+  private BarcodeEncoder(BarcodeType type) {
+    this.type = type;
+  }
+
+  /**
+   * Returns the encoder for the given type
+   *
+   * @param type the barcode type
+   * @return the shared encoder
+   * @throws IllegalArgumentException if there is no encoder for this type
+   */
+  public static BarcodeEncoder forType(BarcodeType type) {
+    BarcodeEncoder encoder = ENCODERS.get(type);
+    if (encoder == null) {
+      throw new IllegalArgumentException("Barcode type " + type + " is not supported");
+    }
+    return encoder;
+  }
+
+  /**
+   * Returns the type of this encoder
+   */
+  public BarcodeType getType() {
+    return type;
+  }
+
+  /**
+   * Returns the bars for the code, see Barcode.getBars()
+   *
+   * @param spec the spec, its type must be the type of this encoder
+   * @param code the code
+   * @return the widths of the bars or null if the code cant be encoded
+   */
+  public byte[] getBars(BarcodeSpec spec, String code) {
+    checkType(spec);
+    switch (type) {
+    case EAN13:
+    case EAN8:
+      return BarcodeEAN.bars(type, code);
+    case CODE25INTER:
+      return BarcodeInter25.bars(code);
+    default:
+      byte[] bars = new byte[Barcode128.encode(type, spec.isOptimizeSubsets(), code, null, null, 0)];
+      Barcode128.encode(type, spec.isOptimizeSubsets(), code, bars, null, 0);
+      return bars;
+    }
+  }
+
+  /**
+   * Returns the modules for the code, see Barcode.getModules()
+   *
+   * @param spec the spec, its type must be the type of this encoder
+   * @param code the code
+   * @return the modules or null if the code cant be encoded
+   */
+  public BarcodeModules getModules(BarcodeSpec spec, String code) {
+    checkType(spec);
+    switch (type) {
+    case EAN13:
+    case EAN8:
+      return BarcodeEAN.modules(type, code);
+    case CODE25INTER:
+      return BarcodeInter25.modules(code);
+    default:
+      return Barcode128.modules(type, spec.isOptimizeSubsets(), code);
+    }
+  }
+
+  /**
+   * Converts the code to human readable text, see Barcode.toHumanText()
+   *
+   * @param spec the spec, its type must be the type of this encoder
+   * @param code the code
+   * @return the text
+   */
+  public String toHumanText(BarcodeSpec spec, String code) {
+    checkType(spec);
+    switch (type) {
+    case EAN13:
+    case EAN8:
+    case CODE25INTER:
+      return code;
+    default:
+      return Barcode128.humanText(type, code);
+    }
+  }
+
+  /**
+   * Get the position of the guard bars (if any). A copy is returned.
+   */
+  public int[] getGuardBarsArray() {
+    int[] guard = BarcodeEAN.guardBars(type);
+    return guard != null ? guard.clone() : null;
+  }
+
+  /**
+   * Get the position for special text drawing like in EAN13, see
+   * Barcode.getCharPosArray(). Each call returns a copy.
+   */
+  public BarcodePoint[] getCharPosArray() {
+    return BarcodePoint.copyOf(BarcodeEAN.charPos(type));
+  }
+
+  /**
+   * Returns the sum of all bars if it is the same for every code, -1 otherwise
+   */
+  public int getFixedBarsum() {
+    switch (type) {
+    case EAN13:
+      return 95;
+    case EAN8:
+      return 67;
+    default:
+      return -1;
+    }
+  }
+
+  /**
+   * Returns the sum of all bars for the code without generating the bars. For
+   * EAN13 and EAN8 this is the fixed sum, for code 128 only the chars are
+   * counted.
+   *
+   * @param spec the spec, its type must be the type of this encoder
+   * @param code the code
+   * @return the sum of all bars, the same as Barcode.getBarsum(getBars())
+   */
+  public int getBarsum(BarcodeSpec spec, String code) {
+    checkType(spec);
+    switch (type) {
+    case EAN13:
+    case EAN8:
+      return getFixedBarsum();
+    case CODE25INTER:
+      return BarcodeInter25.barsum(code);
+    default:
+      return Barcode128.barsum(type, spec.isOptimizeSubsets(), code);
+    }
+  }
+
+  /**
+   * Creates a new barcode object of this type with its default properties
+   */
+  Barcode newBarcode() {
+    Barcode bc;
+    switch (type) {
+    case EAN13:
+    case EAN8:
+      bc = new BarcodeEAN();
+      break;
+    case CODE25INTER:
+      bc = new BarcodeInter25();
+      break;
+    default:
+      bc = new Barcode128();
+      break;
+    }
+    bc.setCodeType(type);
+    return bc;
+  }
+
+  private void checkType(BarcodeSpec spec) {
+    if (spec.getType() != type) {
+      throw new IllegalArgumentException("Spec of type " + spec.getType() + " used with encoder for " + type);
+    }
+  }
+
+}
@@ -0,0 +1,225 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a barcode as Encapsulated PostScript. The bars are passed as one array
+ * of widths to a procedure which draws them, so the size of the EPS is about
+ * the number of bars. The text is placed with the alignment rules of
+ * BarcodeRenderer, its width is measured by the PostScript interpreter with
+ * stringwidth.
+ *
+ * The layout is the one of BarcodeRenderer, one pixel with magnification is
+ * one point. The EPS is written directly to the Writer.
+ *
+ * @author Boris Klug
+ */
+public class BarcodeEpsWriter {
+
+  /**
+   * Draws the bars: x y height [bar space bar ...] bars. The first width is a
+   * bar, the widths alternate between bar and space.
+   */
+  private static final String PROLOG = "/bars { 5 dict begin /w exch def /h exch def /y exch def /x exch def"
+      + " /b true def w { /d exch def b { x y d h rectfill } if /x x d add def /b b not def } forall end } bind def\n";
+
+  private BarcodeEpsWriter() {
+  }
+
+  /**
+   * Writes the barcode as EPS. The writer is not closed.
+   */
+  public static void write(Barcode bc, Writer out) throws BarcodeException, IOException {
+    write(bc, null, out);
+  }
+
+  /**
+   * Writes the barcode for the spec and the code as EPS. The writer is not
+   * closed.
+   */
+  public static void write(BarcodeSpec spec, String code, Writer out) throws BarcodeException, IOException {
+    write(spec.newBarcode(code), null, out);
+  }
+
+  /**
+   * Writes the barcode as EPS but with the replacementtext instead of the code
+   * below (or above) the bars. The writer is not closed.
+   */
+  public static void write(Barcode bc, String replacementtext, Writer out) throws BarcodeException, IOException {
+    if (bc == null) {
+      throw new BarcodeException("no barcode given to draw");
+    }
+    byte[] bars = bc.getCachedBars();
+    if (bars == null) {
+      throw new BarcodeException("cant generate bars for barcode");
+    }
+
+    int mag = Math.max(1, (int) bc.getMagnification());
+    int x = bc.getPreflightWidth();
+    int y = bc.getBarsTop();
+    int width = bc.getImageWidth(bars);
+    int height = bc.getImageHeight();
+    int barheight = bc.getBarHeight();
+    int barwidth = bc.getBarWidth();
+    int gd = bc.getGuardExtension();
+
+    out.write("%!PS-Adobe-3.0 EPSF-3.0\n");
+    out.write("%%BoundingBox: 0 0 " + width * mag + " " + height * mag + "\n");
+    out.write("%%Creator: JBarcode\n");
+    out.write("%%Pages: 0\n%%EndComments\n");
+    out.write("%%BeginProlog\n");
+    out.write(PROLOG);
+    out.write("%%EndProlog\n");
+    out.write("gsave\n" + mag + " " + mag + " scale\n0 setgray\n");
+
+    // PostScript counts y from the bottom
+    out.write(x + " " + (height - y - barheight) + " " + barheight + " [");
+    int bcx = 0;
+    for (int k = 0; k < bars.length; ++k) {
+      int w = bars[k] * barwidth;
+      out.write(k == 0 ? "" : " ");
+      out.write(Integer.toString(w));
+      bcx += w;
+    }
+    out.write("] bars\n");
+
+    // the guard bars reach below the other bars
+    int[] guard = bc.getGuardBarsArray();
+    if (gd > 0 && guard.length > 0) {
+      int px = x;
+      int g = 0;
+      for (int k = 0; k < bars.length && g < guard.length; ++k) {
+        int w = bars[k] * barwidth;
+        if (guard[g] == k) {
+          out.write(px + " " + (height - y - barheight - gd) + " " + w + " " + gd + " rectfill\n");
+          g++;
+        }
+        px += w;
+      }
+    }
+
+    if (bc.isDrawtext()) {
+      String text = replacementtext != null ? replacementtext : bc.toHumanText(bc.getCode());
+      writeText(out, bc, text, x, height - y, bcx);
+    }
+    out.write("grestore\n%%EOF\n");
+  }
+
+  /**
+   * Writes the text, see BarcodeRenderer.drawText()
+   *
+   * @param x   the left side of the bars
+   * @param top the top of the bars in PostScript coordinates
+   * @param bcx the width of the bars
+   */
+  private static void writeText(Writer out, Barcode bc, String text, int x, int top, int bcx) throws IOException {
+    int txty;
+    if (bc.getBaseline() < 0) { // above the barcode
+      txty = top - bc.getBaseline();
+    } else { // below the barcode
+      txty = top - bc.getBarHeight() - bc.getBaseline();
+    }
+    out.write("/" + fontName(bc.getFontname()) + " findfont " + bc.getFontsize() + " scalefont setfont\n");
+
+    if (bc.isUseCharPos()) {
+      // Special char positining, e.g. for EAN13: relative to the aligned text
+      // like in BarcodeRenderer, the start is kept in tx
+      switch (bc.getTextAlignment()) {
+      case Barcode.ALIGN_LEFT:
+        out.write("/tx " + x + " def\n");
+        break;
+      case Barcode.ALIGN_RIGHT:
+        writeString(out, text);
+        out.write(" stringwidth pop neg " + (x + bcx) + " add /tx exch def\n");
+        break;
+      default: // center
+        writeString(out, text);
+        out.write(" stringwidth pop 2 div neg " + (x + bcx / 2) + " add /tx exch def\n");
+        break;
+      }
+      BarcodePoint[] charpos = bc.charPosArray();
+      for (int i = 0; i < text.length() && i < charpos.length; i++) {
+        out.write("tx " + number(charpos[i].getX()) + " add " + number(txty - charpos[i].getY()) + " moveto ");
+        writeString(out, text.substring(i, i + 1));
+        out.write(" show\n");
+      }
+      return;
+    }
+
+    writeString(out, text);
+    switch (bc.getTextAlignment()) {
+    case Barcode.ALIGN_LEFT:
+      out.write(" " + x + " " + txty + " moveto show\n");
+      break;
+    case Barcode.ALIGN_RIGHT:
+      out.write(" dup stringwidth pop neg " + (x + bcx) + " add " + txty + " moveto show\n");
+      break;
+    default: // center
+      out.write(" dup stringwidth pop 2 div neg " + (x + bcx / 2) + " add " + txty + " moveto show\n");
+      break;
+    }
+  }
+
+  /**
+   * Maps the java font names to the standard PostScript fonts
+   */
+  static String fontName(String fontname) {
+    if (fontname == null || fontname.equalsIgnoreCase("SansSerif") || fontname.equalsIgnoreCase("SanSerif")
+        || fontname.equalsIgnoreCase("Dialog")) {
+      return "Helvetica";
+    } else if (fontname.equalsIgnoreCase("Serif")) {
+      return "Times-Roman";
+    } else if (fontname.equalsIgnoreCase("Monospaced") || fontname.equalsIgnoreCase("DialogInput")) {
+      return "Courier";
+    }
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < fontname.length(); i++) {
+      char c = fontname.charAt(i);
+      if (c > ' ' && c < 127 && "()<>[]{}/%".indexOf(c) < 0) {
+        sb.append(c);
+      }
+    }
+    return sb.length() > 0 ? sb.toString() : "Helvetica";
+  }
+
+  /**
+   * Writes the text as PostScript string, chars that are not printable ASCII
+   * are written as octal escapes, chars that are not in latin 1 as '?'. The
+   * standard fonts show latin 1 chars only if they are reencoded.
+   */
+  private static void writeString(Writer out, String text) throws IOException {
+    out.write('(');
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '(' || c == ')' || c == '\\') {
+        out.write('\\');
+        out.write(c);
+      } else if (c >= ' ' && c < 127) {
+        out.write(c);
+      } else if (c <= 0xff) {
+        out.write('\\');
+        out.write(Integer.toOctalString(0x200 | c).substring(1));
+      } else {
+        out.write('?');
+      }
+    }
+    out.write(')');
+  }
+
+  /**
+   * Formats the number without a fraction if it has none
+   */
+  private static String number(float f) {
+    if (f == (int) f) {
+      return Integer.toString((int) f);
+    }
+    return Float.toString(f);
+  }
+}
@@ -0,0 +1,238 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache for the fonts used by BarcodeRenderer. For each font name and size
+ * (font size * magnification) the Font, its FontMetrics and an atlas of the
+ * rasterized ASCII chars are created once and shared by all threads.
+ *
+ * The metrics are taken from the graphics of a gray image, so they are the
+ * same as the ones of the images rendered by BarcodeRenderer.
+ *
+ * @author Boris Klug
+ */
+final class BarcodeFontCache {
+
+  /** The first and the last char in the glyph atlas */
+  static final char FIRST = ' ';
+  static final char LAST = '~';
+
+  private static final Map<Key, Entry> CACHE = new ConcurrentHashMap<>();
+
+  private BarcodeFontCache() {
+  }
+
+  /**
+   * Returns the cached font with its metrics
+   */
+  static Entry get(String fontname, int size) {
+    return CACHE.computeIfAbsent(new Key(fontname, size), Entry::new);
+  }
+
+  /**
+   * Removes all fonts
+   */
+  static void clear() {
+    CACHE.clear();
+  }
+
+  /**
+   * Returns the number of cached fonts
+   */
+  static int size() {
+    return CACHE.size();
+  }
+
+  private static final class Key {
+    private final String fontname;
+    private final int size;
+
+    Key(String fontname, int size) {
+      this.fontname = fontname;
+      this.size = size;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(fontname) * 31 + size;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key o = (Key) obj;
+      return size == o.size && Objects.equals(fontname, o.fontname);
+    }
+  }
+
+  /**
+   * A font with its metrics and its glyph atlas
+   */
+  static final class Entry {
+    final Font font;
+    final FontMetrics metrics;
+    private volatile Glyphs glyphs;
+
+    private Entry(Key key) {
+      font = new Font(key.fontname, Font.PLAIN, key.size);
+      BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+      Graphics2D g = scratch.createGraphics();
+      metrics = g.getFontMetrics(font);
+      g.dispose();
+    }
+
+    /**
+     * Returns the glyph atlas, it is created on the first call
+     */
+    Glyphs glyphs() {
+      Glyphs result = glyphs;
+      if (result == null) {
+        result = new Glyphs(font, metrics);
+        glyphs = result;
+      }
+      return result;
+    }
+  }
+
+  /**
+   * The chars FIRST..LAST rasterized like Graphics2D.drawString() draws them
+   * into a gray image. Each glyph keeps the bounding box of its black pixels
+   * relative to the origin on the baseline and a mask with one byte per pixel.
+   */
+  static final class Glyphs {
+    private final int[] advance = new int[LAST - FIRST + 1];
+    private final int[] left = new int[advance.length];
+    private final int[] top = new int[advance.length];
+    private final int[] width = new int[advance.length];
+    private final int[] height = new int[advance.length];
+    private final byte[][] mask = new byte[advance.length][];
+
+    private Glyphs(Font font, FontMetrics metrics) {
+      int pad = font.getSize() + 2;
+      int w = metrics.getMaxAdvance() > 0 ? metrics.getMaxAdvance() + 2 * pad : 4 * pad;
+      int h = metrics.getMaxAscent() + metrics.getMaxDescent() + 2 * pad;
+      BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+      byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+      Graphics2D g = image.createGraphics();
+      g.setFont(font);
+      int ox = pad;
+      int oy = pad + metrics.getMaxAscent();
+      for (char c = FIRST; c <= LAST; c++) {
+        int i = c - FIRST;
+        advance[i] = metrics.charWidth(c);
+        g.setColor(java.awt.Color.white);
+        g.fillRect(0, 0, w, h);
+        g.setColor(java.awt.Color.black);
+        g.drawString(String.valueOf(c), ox, oy);
+
+        // bounding box of the black pixels
+        int x0 = w;
+        int y0 = h;
+        int x1 = -1;
+        int y1 = -1;
+        for (int y = 0; y < h; y++) {
+          for (int x = 0; x < w; x++) {
+            if (data[y * w + x] != (byte) 0xff) {
+              x0 = Math.min(x0, x);
+              x1 = Math.max(x1, x);
+              y0 = Math.min(y0, y);
+              y1 = Math.max(y1, y);
+            }
+          }
+        }
+        if (x1 < 0) { // e.g. space
+          mask[i] = new byte[0];
+          continue;
+        }
+        left[i] = x0 - ox;
+        top[i] = y0 - oy;
+        width[i] = x1 - x0 + 1;
+        height[i] = y1 - y0 + 1;
+        byte[] m = new byte[width[i] * height[i]];
+        for (int y = 0; y < height[i]; y++) {
+          System.arraycopy(data, (y0 + y) * w + x0, m, y * width[i], width[i]);
+        }
+        mask[i] = m;
+      }
+      g.dispose();
+    }
+
+    /**
+     * Returns true if all chars of the text are in the atlas
+     */
+    boolean canDraw(CharSequence text) {
+      for (int i = 0; i < text.length(); i++) {
+        char c = text.charAt(i);
+        if (c < FIRST || c > LAST) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Returns the advance of the char
+     */
+    int advance(char c) {
+      return advance[c - FIRST];
+    }
+
+    /**
+     * Copies the glyph of the char to the raster with its origin at x/y. For
+     * gray images, each pixel gets the darker value of the raster and the glyph.
+     * For binary images, pixels darker than middle gray are set to black.
+     *
+     * @param data   the data of the raster
+     * @param stride the bytes per row
+     * @param binary true for a 1 bit image
+     * @param w      the width of the raster
+     * @param h      the height of the raster
+     */
+    void draw(char c, int x, int y, byte[] data, int stride, boolean binary, int w, int h) {
+      int i = c - FIRST;
+      byte[] m = mask[i];
+      int gw = width[i];
+      int gx = x + left[i];
+      int gy = y + top[i];
+      for (int row = 0; row < height[i]; row++) {
+        int py = gy + row;
+        if (py < 0 || py >= h) {
+          continue;
+        }
+        for (int col = 0; col < gw; col++) {
+          int px = gx + col;
+          int v = m[row * gw + col] & 0xff;
+          if (px < 0 || px >= w || v == 0xff) {
+            continue;
+          }
+          if (binary) {
+            if (v < 0x80) {
+              data[py * stride + (px >> 3)] &= ~(0x80 >> (px & 7));
+            }
+          } else {
+            int d = py * stride + px;
+            if (v < (data[d] & 0xff)) {
+              data[d] = (byte) v;
+            }
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,632 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Grades the print quality of a barcode image in the style of ISO/IEC 15416.
+ *
+ * The barcode is located with BarcodeScanlineDecoder, then the bar area is
+ * found as the rows that look like the decoded row. Scanlines evenly spread
+ * from 10% to 90% of the bar area are analysed. For each scanline the gray
+ * values are taken as reflectance profile (0 = black, 100 = white) and these
+ * parameters are measured and graded 4 (A) to 0 (F):
+ *
+ * <ul>
+ * <li>Decode: the scanline decodes to the same text as the barcode</li>
+ * <li>Rmin: the darkest bar is at most half as light as the lightest
+ * space</li>
+ * <li>Symbol contrast: Rmax - Rmin</li>
+ * <li>Edge contrast ECmin: the smallest difference between a space and a
+ * neighbouring bar</li>
+ * <li>Modulation: ECmin / symbol contrast</li>
+ * <li>Defects: the largest dip within a space or bump within a bar (element
+ * reflectance nonuniformity) / symbol contrast</li>
+ * <li>Decodability: how far the element widths are from the widths where they
+ * would be read as another number of modules, 1 is perfect</li>
+ * </ul>
+ *
+ * The grade of a scanline is the lowest grade of its parameters, the grade of
+ * the barcode is the average of the scanline grades. The quiet zones are only
+ * used to measure the reflectance, their width is not graded. The reflectance
+ * is not calibrated, for scanned images the grades are relative to the white
+ * and black of the scanner. Decodability is measured on the widths in pixels
+ * with one unit per char instead of the reference decode algorithms of each
+ * symbology.
+ *
+ * The scanlines can be analysed in parallel on a ForkJoinPool. Each thread
+ * keeps its decoder and buffers, a scanline only allocates the result of its
+ * decode.
+ *
+ * @author Boris Klug
+ */
+public class BarcodeGrader {
+
+  /** The number of scanlines ISO/IEC 15416 asks for */
+  public static final int DEFAULT_SCANLINES = 10;
+
+  /** The letters of the grades 0 to 4 */
+  private static final String LETTERS = "FDCBA";
+
+  /** The decoder and buffers of each thread */
+  private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+    @Override
+    protected Scratch initialValue() {
+      return new Scratch();
+    }
+  };
+
+  /** The group lengths of an EAN13 symbol: guard, 6 digits, guard, 6 digits, guard */
+  private static final byte[] GROUPS_EAN13 = { 3, 4, 4, 4, 4, 4, 4, 5, 4, 4, 4, 4, 4, 4, 3 };
+  /** The group lengths of an EAN8 symbol */
+  private static final byte[] GROUPS_EAN8 = { 3, 4, 4, 4, 4, 5, 4, 4, 4, 4, 3 };
+
+  private final ForkJoinPool pool;
+
+  /**
+   * Creates a grader that analyses the scanlines on the calling thread
+   */
+  public BarcodeGrader() {
+    this(null);
+  }
+
+  /**
+   * Creates a grader that analyses the scanlines of an image in parallel
+   *
+   * @param pool the pool, null to use the calling thread
+   */
+  public BarcodeGrader(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * The parameters of all scanlines and the overall grade
+   */
+  public static final class Report {
+    // the values of one scanline in this order, the graded ones for getParameterGrade()
+    /** Decoded or not */
+    public static final int DECODE = 0;
+    /** The minimal reflectance */
+    public static final int RMIN = 1;
+    static final int RMAX = 2;
+    /** The symbol contrast */
+    public static final int SYMBOL_CONTRAST = 3;
+    /** The minimal edge contrast */
+    public static final int EDGE_CONTRAST = 4;
+    /** The modulation */
+    public static final int MODULATION = 5;
+    /** The defects */
+    public static final int DEFECTS = 6;
+    /** The decodability */
+    public static final int DECODABILITY = 7;
+    static final int GRADE = 8;
+    static final int VALUES = 9;
+
+    private final BarcodeType type;
+    private final String text;
+    private final int[] rows;
+    private final float[] values;
+    private float grade;
+
+    Report(BarcodeType type, String text, int[] rows) {
+      this.type = type;
+      this.text = text;
+      this.rows = rows;
+      this.values = new float[rows.length * VALUES];
+    }
+
+    /**
+     * Returns the type of the barcode, null if no barcode was found
+     */
+    public BarcodeType getType() {
+      return type;
+    }
+
+    /**
+     * Returns the decoded text, null if no barcode was found
+     */
+    public String getText() {
+      return text;
+    }
+
+    /**
+     * Returns the overall grade from 0 (F) to 4 (A)
+     */
+    public float getGrade() {
+      return grade;
+    }
+
+    /**
+     * Returns the letter of the overall grade
+     */
+    public char getGradeLetter() {
+      return letter(grade);
+    }
+
+    /**
+     * Returns the number of analysed scanlines
+     */
+    public int getScanCount() {
+      return rows.length;
+    }
+
+    /**
+     * Returns the row of the scanline
+     */
+    public int getRow(int scan) {
+      return rows[scan];
+    }
+
+    /**
+     * Returns true if the scanline decodes to the text of the barcode
+     */
+    public boolean isDecoded(int scan) {
+      return get(scan, DECODE) != 0;
+    }
+
+    /**
+     * Returns the reflectance of the darkest bar in percent
+     */
+    public float getRmin(int scan) {
+      return get(scan, RMIN);
+    }
+
+    /**
+     * Returns the reflectance of the lightest space in percent
+     */
+    public float getRmax(int scan) {
+      return get(scan, RMAX);
+    }
+
+    /**
+     * Returns the symbol contrast Rmax - Rmin in percent
+     */
+    public float getSymbolContrast(int scan) {
+      return get(scan, SYMBOL_CONTRAST);
+    }
+
+    /**
+     * Returns the minimal edge contrast ECmin in percent
+     */
+    public float getEdgeContrast(int scan) {
+      return get(scan, EDGE_CONTRAST);
+    }
+
+    /**
+     * Returns the modulation ECmin / symbol contrast
+     */
+    public float getModulation(int scan) {
+      return get(scan, MODULATION);
+    }
+
+    /**
+     * Returns the defects, the largest element reflectance nonuniformity /
+     * symbol contrast
+     */
+    public float getDefects(int scan) {
+      return get(scan, DEFECTS);
+    }
+
+    /**
+     * Returns the decodability from 0 to 1
+     */
+    public float getDecodability(int scan) {
+      return get(scan, DECODABILITY);
+    }
+
+    /**
+     * Returns the grade of the scanline from 0 (F) to 4 (A), the lowest grade of
+     * its parameters
+     */
+    public int getScanGrade(int scan) {
+      return (int) get(scan, GRADE);
+    }
+
+    /**
+     * Returns the lowest grade of the parameter over all scanlines, e.g. to find
+     * the reason for a bad grade
+     *
+     * @param parameter one of DECODE, RMIN, SYMBOL_CONTRAST, EDGE_CONTRAST,
+     *                  MODULATION, DEFECTS or DECODABILITY
+     * @throws IllegalArgumentException for another parameter
+     */
+    public int getParameterGrade(int parameter) {
+      int min = 4;
+      for (int scan = 0; scan < rows.length; ++scan) {
+        int g;
+        switch (parameter) {
+        case DECODE:
+          g = isDecoded(scan) ? 4 : 0;
+          break;
+        case RMIN:
+          g = gradeRmin(getRmin(scan), getRmax(scan));
+          break;
+        case SYMBOL_CONTRAST:
+          g = gradeSymbolContrast(getSymbolContrast(scan));
+          break;
+        case EDGE_CONTRAST:
+          g = gradeEdgeContrast(getEdgeContrast(scan));
+          break;
+        case MODULATION:
+          g = gradeModulation(getModulation(scan));
+          break;
+        case DEFECTS:
+          g = gradeDefects(getDefects(scan));
+          break;
+        case DECODABILITY:
+          g = gradeDecodability(getDecodability(scan));
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown parameter " + parameter);
+        }
+        min = Math.min(min, g);
+      }
+      return min;
+    }
+
+    float get(int scan, int value) {
+      return values[scan * VALUES + value];
+    }
+
+    @Override
+    public String toString() {
+      return "Report [type=" + type + ", text=" + text + ", grade=" + String.format("%.1f", grade) + " "
+          + getGradeLetter() + ", scans=" + rows.length + "]";
+    }
+  }
+
+  /**
+   * Grades the barcode in the image with DEFAULT_SCANLINES scanlines
+   */
+  public Report grade(BufferedImage image) {
+    return grade(image, DEFAULT_SCANLINES);
+  }
+
+  /**
+   * Grades the barcode in the image
+   *
+   * @param image     the image, e.g. from BarcodeRenderer or a scanner
+   * @param scanlines the number of scanlines to analyse
+   * @return the report, with grade 0 and type null if no barcode was found
+   */
+  public Report grade(BufferedImage image, int scanlines) {
+    if (scanlines < 1) {
+      throw new IllegalArgumentException("scanlines must be positive");
+    }
+    Scratch scratch = SCRATCH.get();
+    BarcodeScanlineDecoder.Result found = scratch.decoder.decode(image);
+    if (found == null) {
+      return new Report(null, null, new int[0]);
+    }
+    int modules = 0;
+    for (int k = 0; k < scratch.decoder.getSymbolCount(); ++k) {
+      modules += scratch.decoder.getSymbolModules()[k];
+    }
+    Symbol symbol = new Symbol(found, modules, image.getWidth());
+
+    // the bar area are the rows that look like the decoded one
+    int[] reference = scratch.binarise(scratch.decoder.getGray(), symbol, null);
+    int top = found.getRow();
+    while (top > 0 && scratch.matches(image, top - 1, symbol, reference)) {
+      --top;
+    }
+    int bottom = found.getRow() + 1;
+    while (bottom < image.getHeight() && scratch.matches(image, bottom, symbol, reference)) {
+      ++bottom;
+    }
+
+    int[] rows = new int[scanlines];
+    for (int k = 0; k < scanlines; ++k) {
+      float f = scanlines == 1 ? 0.5f : 0.1f + 0.8f * k / (scanlines - 1);
+      rows[k] = Math.min(bottom - 1, top + (int) (f * (bottom - top)));
+    }
+    Report report = new Report(found.getType(), found.getText(), rows);
+
+    if (pool == null) {
+      for (int k = 0; k < scanlines; ++k) {
+        scratch.analyse(image, symbol, report, k);
+      }
+    } else {
+      try {
+        pool.submit(() -> IntStream.range(0, scanlines).parallel()
+            .forEach(k -> SCRATCH.get().analyse(image, symbol, report, k))).get();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while grading", ex);
+      } catch (ExecutionException ex) {
+        Throwable cause = ex.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new IllegalStateException(cause);
+      }
+    }
+
+    float sum = 0;
+    for (int k = 0; k < scanlines; ++k) {
+      sum += report.get(k, Report.GRADE);
+    }
+    report.grade = sum / scanlines;
+    return report;
+  }
+
+  /**
+   * Returns the letter A to F for a grade from 4 to 0
+   */
+  public static char letter(float grade) {
+    return LETTERS.charAt(Math.max(0, Math.min(4, Math.round(grade))));
+  }
+
+  static int gradeRmin(float rmin, float rmax) {
+    return rmin <= 0.5f * rmax ? 4 : 0;
+  }
+
+  static int gradeSymbolContrast(float sc) {
+    return sc >= 70 ? 4 : sc >= 55 ? 3 : sc >= 40 ? 2 : sc >= 20 ? 1 : 0;
+  }
+
+  static int gradeEdgeContrast(float ecmin) {
+    return ecmin >= 15 ? 4 : 0;
+  }
+
+  static int gradeModulation(float mod) {
+    return mod >= 0.70f ? 4 : mod >= 0.60f ? 3 : mod >= 0.50f ? 2 : mod >= 0.40f ? 1 : 0;
+  }
+
+  static int gradeDefects(float defects) {
+    return defects <= 0.15f ? 4 : defects <= 0.20f ? 3 : defects <= 0.25f ? 2 : defects <= 0.30f ? 1 : 0;
+  }
+
+  static int gradeDecodability(float v) {
+    return v >= 0.62f ? 4 : v >= 0.50f ? 3 : v >= 0.37f ? 2 : v >= 0.25f ? 1 : 0;
+  }
+
+  /**
+   * Returns the decodability of the runs of a decoded symbol: for each element
+   * the distance of its width to the nearest width that is read as another
+   * number of modules, relative to the distance of a perfect element. The
+   * smallest value of all elements is returned.
+   *
+   * @param type    the type of the symbol
+   * @param runs    the widths of the elements in pixels
+   * @param modules the widths of the elements in modules
+   * @param count   the number of elements
+   */
+  static float decodability(BarcodeType type, int[] runs, byte[] modules, int count) {
+    float v = 1;
+    if (type == BarcodeType.CODE25INTER) {
+      // two widths: the threshold is halfway between narrow and wide
+      long narrow = 0;
+      long wide = 0;
+      int wides = 0;
+      for (int k = 0; k < count; ++k) {
+        if (modules[k] == 1) {
+          narrow += runs[k];
+        } else {
+          wide += runs[k];
+          ++wides;
+        }
+      }
+      float n = (float) narrow / (count - wides);
+      float w = (float) wide / wides;
+      float threshold = (n + w) / 2;
+      for (int k = 0; k < count; ++k) {
+        float margin = modules[k] == 1 ? threshold - runs[k] : runs[k] - threshold;
+        v = Math.min(v, margin / (threshold - n));
+      }
+    } else {
+      // modules: each char has its own module width
+      byte[] groups = type == BarcodeType.EAN13 ? GROUPS_EAN13 : type == BarcodeType.EAN8 ? GROUPS_EAN8 : null;
+      int from = 0;
+      for (int g = 0; from < count; ++g) {
+        int length = groups != null ? groups[g] : from + 7 == count ? 7 : 6;
+        int pixels = 0;
+        int sum = 0;
+        for (int k = from; k < from + length; ++k) {
+          pixels += runs[k];
+          sum += modules[k];
+        }
+        float unit = (float) pixels / sum;
+        for (int k = from; k < from + length; ++k) {
+          v = Math.min(v, 1 - 2 * Math.abs(runs[k] / unit - modules[k]));
+        }
+        from += length;
+      }
+    }
+    return Math.max(0, v);
+  }
+
+  /**
+   * The position of the barcode found in the image
+   */
+  private static final class Symbol {
+    private final BarcodeScanlineDecoder.Result found;
+    /** The first and last pixel of the profile, with up to 10 modules quiet zone */
+    private final int from;
+    private final int to;
+
+    Symbol(BarcodeScanlineDecoder.Result found, int modules, int width) {
+      this.found = found;
+      int quiet = 10 * found.getWidth() / modules;
+      from = Math.max(0, found.getX() - quiet);
+      to = Math.min(width, found.getX() + found.getWidth() + quiet);
+    }
+  }
+
+  /**
+   * The decoder and the buffers of one thread
+   */
+  private static final class Scratch {
+    private final BarcodeScanlineDecoder decoder = new BarcodeScanlineDecoder();
+    private int[] reference = new int[0];
+    private int[] row = new int[0];
+    private int[] extremes = new int[0];
+
+    /**
+     * Returns the gray values of the symbol binarised to 0 and 1 at the
+     * threshold halfway between their darkest and lightest value
+     */
+    int[] binarise(int[] gray, Symbol symbol, int[] out) {
+      int x = symbol.found.getX();
+      int n = symbol.found.getWidth();
+      if (out == null) {
+        if (reference.length < n) {
+          reference = new int[n];
+        }
+        out = reference;
+      }
+      int min = 255;
+      int max = 0;
+      for (int k = x; k < x + n; ++k) {
+        min = Math.min(min, gray[k]);
+        max = Math.max(max, gray[k]);
+      }
+      int threshold = (min + max + 1) / 2;
+      for (int k = 0; k < n; ++k) {
+        out[k] = gray[x + k] < threshold ? 0 : 1;
+      }
+      return out;
+    }
+
+    /**
+     * Returns true if the row differs in at most 5% of the pixels from the
+     * reference
+     */
+    boolean matches(BufferedImage image, int y, Symbol symbol, int[] reference) {
+      int n = symbol.found.getWidth();
+      if (row.length < n) {
+        row = new int[n];
+      }
+      decoder.readRow(image, y);
+      binarise(decoder.getGray(), symbol, row);
+      int differences = 0;
+      for (int k = 0; k < n; ++k) {
+        differences += row[k] ^ reference[k];
+      }
+      return differences * 20 <= n;
+    }
+
+    /**
+     * Measures the parameters of one scanline and writes them to the report
+     */
+    void analyse(BufferedImage image, Symbol symbol, Report report, int scan) {
+      BarcodeScanlineDecoder.Result result = decoder.decodeRow(image, report.getRow(scan));
+      boolean decoded = result != null && result.getType() == report.getType()
+          && result.getText().equals(report.getText());
+      float decodability = decoded
+          ? decodability(result.getType(), decoder.getSymbolRuns(), decoder.getSymbolModules(),
+              decoder.getSymbolCount())
+          : 0;
+      int[] gray = decoder.getGray();
+
+      int rmin = 255;
+      int rmax = 0;
+      for (int x = symbol.from; x < symbol.to; ++x) {
+        rmin = Math.min(rmin, gray[x]);
+        rmax = Math.max(rmax, gray[x]);
+      }
+      int sc = rmax - rmin;
+      int threshold = rmin + sc / 2;
+
+      // walk the elements, the first and the last are the quiet zones
+      int ecmin = sc;
+      int ernmax = 0;
+      int previous = -1;
+      int start = symbol.from;
+      for (int x = symbol.from + 1; x <= symbol.to; ++x) {
+        boolean dark = gray[x - 1] < threshold;
+        if (x < symbol.to && (gray[x] < threshold) == dark) {
+          continue;
+        }
+        int extreme = dark ? min(gray, start, x) : max(gray, start, x);
+        ernmax = Math.max(ernmax, ern(gray, start, x, dark));
+        if (previous >= 0) {
+          ecmin = Math.min(ecmin, Math.abs(extreme - previous));
+        }
+        previous = extreme;
+        start = x;
+      }
+      if (sc == 0) {
+        ecmin = 0;
+      }
+
+      float[] v = report.values;
+      int i = scan * Report.VALUES;
+      v[i + Report.DECODE] = decoded ? 1 : 0;
+      v[i + Report.RMIN] = percent(rmin);
+      v[i + Report.RMAX] = percent(rmax);
+      v[i + Report.SYMBOL_CONTRAST] = percent(sc);
+      v[i + Report.EDGE_CONTRAST] = percent(ecmin);
+      v[i + Report.MODULATION] = sc == 0 ? 0 : (float) ecmin / sc;
+      v[i + Report.DEFECTS] = sc == 0 ? 1 : (float) ernmax / sc;
+      v[i + Report.DECODABILITY] = decodability;
+      int grade = decoded ? 4 : 0;
+      grade = Math.min(grade, gradeRmin(v[i + Report.RMIN], v[i + Report.RMAX]));
+      grade = Math.min(grade, gradeSymbolContrast(v[i + Report.SYMBOL_CONTRAST]));
+      grade = Math.min(grade, gradeEdgeContrast(v[i + Report.EDGE_CONTRAST]));
+      grade = Math.min(grade, gradeModulation(v[i + Report.MODULATION]));
+      grade = Math.min(grade, gradeDefects(v[i + Report.DEFECTS]));
+      grade = Math.min(grade, gradeDecodability(decodability));
+      v[i + Report.GRADE] = grade;
+    }
+
+    /**
+     * Returns the element reflectance nonuniformity of the element from start
+     * to end: for a space the deepest valley between two peaks, for a bar the
+     * highest peak between two valleys. The edges of an element are no valleys
+     * or peaks.
+     */
+    private int ern(int[] gray, int start, int end, boolean dark) {
+      int n = end - start;
+      if (n < 3) {
+        return 0;
+      }
+      if (extremes.length < n) {
+        extremes = new int[n];
+      }
+      // extremes[k]: the max (space) or min (bar) right of k
+      int sign = dark ? -1 : 1;
+      int best = Integer.MIN_VALUE;
+      for (int k = n - 1; k >= 0; --k) {
+        best = Math.max(best, sign * gray[start + k]);
+        extremes[k] = best;
+      }
+      int left = sign * gray[start];
+      int ern = 0;
+      for (int k = 1; k < n - 1; ++k) {
+        int g = sign * gray[start + k];
+        ern = Math.max(ern, Math.min(left, extremes[k + 1]) - g);
+        left = Math.max(left, g);
+      }
+      return ern;
+    }
+
+    private static int min(int[] gray, int from, int to) {
+      int min = 255;
+      for (int k = from; k < to; ++k) {
+        min = Math.min(min, gray[k]);
+      }
+      return min;
+    }
+
+    private static int max(int[] gray, int from, int to) {
+      int max = 0;
+      for (int k = from; k < to; ++k) {
+        max = Math.max(max, gray[k]);
+      }
+      return max;
+    }
+
+    private static float percent(int gray) {
+      return gray * 100f / 255;
+    }
+  }
+}
@@ -0,0 +1,336 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache for rendered barcode images. The key is the BarcodeSpec with all render
+ * properties, the code and the replacement text, so an image is only reused if
+ * BarcodeRenderer would produce exactly the same image.
+ *
+ * The size of the cache is limited by the memory of the rasters (in bytes), not
+ * by the number of images. The cache is split into segments with a lock each,
+ * all segments share the memory budget. When the cache is over budget, the
+ * segments evict their least recently used image in turn. Images bigger than
+ * the whole budget are not cached.
+ *
+ * Every call returns a copy of the cached image, so callers can draw on it
+ * without changing the cache.
+ *
+ * @author Boris Klug
+ */
+public class BarcodeImageCache {
+
+  /** The default number of segments */
+  public static final int DEFAULT_SEGMENTS = 16;
+
+  private final Segment[] segments;
+  private final int mask;
+  private final long maxBytes;
+
+  private final AtomicLong residentBytes = new AtomicLong();
+  /** The segment to evict from next */
+  private final AtomicInteger evictCursor = new AtomicInteger();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Creates a cache with the default number of segments
+   *
+   * @param maxBytes the memory budget for the rasters of all cached images
+   */
+  public BarcodeImageCache(long maxBytes) {
+    this(maxBytes, DEFAULT_SEGMENTS);
+  }
+
+  /**
+   * Creates a cache
+   *
+   * @param maxBytes the memory budget for the rasters of all cached images
+   * @param segments the number of segments, rounded up to a power of two
+   */
+  public BarcodeImageCache(long maxBytes, int segments) {
+    if (maxBytes < 1 || segments < 1) {
+      throw new IllegalArgumentException("maxBytes and segments must be positive");
+    }
+    int n = Integer.highestOneBit(segments - 1) << 1;
+    n = Math.max(1, n);
+    this.segments = new Segment[n];
+    for (int i = 0; i < n; i++) {
+      this.segments[i] = new Segment();
+    }
+    this.mask = n - 1;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Returns the image for the barcode, rendered by BarcodeRenderer or taken
+   * from the cache
+   */
+  public BufferedImage getBarcodeBufimage(Barcode bc) throws BarcodeException {
+    return getBarcodeBufimage(bc, null);
+  }
+
+  /**
+   * Returns the image for the barcode with the replacement text, rendered by
+   * BarcodeRenderer or taken from the cache
+   */
+  public BufferedImage getBarcodeBufimage(Barcode bc, String replacementtext) throws BarcodeException {
+    if (bc == null) {
+      throw new BarcodeException("no barcode given to draw");
+    }
+    Key key = key(BarcodeSpec.of(bc), bc.getCode(), replacementtext);
+    BufferedImage image = lookup(key);
+    if (image == null) {
+      image = store(key, BarcodeRenderer.getBarcodeBufimage(bc, replacementtext));
+    }
+    return copy(image);
+  }
+
+  /**
+   * Returns the image for the spec and the code, rendered by BarcodeRenderer or
+   * taken from the cache
+   */
+  public BufferedImage getBarcodeBufimage(BarcodeSpec spec, String code) throws BarcodeException {
+    return getBarcodeBufimage(spec, code, null);
+  }
+
+  /**
+   * Returns the image for the spec, the code and the replacement text, rendered
+   * by BarcodeRenderer or taken from the cache
+   */
+  public BufferedImage getBarcodeBufimage(BarcodeSpec spec, String code, String replacementtext)
+      throws BarcodeException {
+    Key key = key(spec, code, replacementtext);
+    BufferedImage image = lookup(key);
+    if (image == null) {
+      image = store(key, BarcodeRenderer.getBarcodeBufimage(spec.newBarcode(code), replacementtext));
+    }
+    return copy(image);
+  }
+
+  /**
+   * Returns the number of lookups that found the image in the cache
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns the number of lookups that had to render the image
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * Returns the part of the lookups that found the image in the cache, 0 if
+   * there were no lookups yet
+   */
+  public double getHitRatio() {
+    long h = hits.sum();
+    long total = h + misses.sum();
+    return total == 0 ? 0 : (double) h / total;
+  }
+
+  /**
+   * Returns the number of images removed because the cache was over budget
+   */
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  /**
+   * Returns the bytes of all rasters in the cache
+   */
+  public long getResidentBytes() {
+    return residentBytes.get();
+  }
+
+  /**
+   * Returns the memory budget in bytes
+   */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * Returns the number of cached images
+   */
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  /**
+   * Removes all images. The counters are not reset.
+   */
+  public void clear() {
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "BarcodeImageCache [size=" + size() + ", residentBytes=" + getResidentBytes() + ", maxBytes=" + maxBytes
+        + ", hitRatio=" + getHitRatio() + ", evictions=" + getEvictionCount() + "]";
+  }
+
+  /**
+   * Returns the number of bytes of the raster of the image
+   */
+  static long rasterBytes(BufferedImage image) {
+    DataBuffer db = image.getRaster().getDataBuffer();
+    return (long) db.getSize() * db.getNumBanks() * DataBuffer.getDataTypeSize(db.getDataType()) / 8;
+  }
+
+  /**
+   * Returns a copy of the image with its own raster
+   */
+  static BufferedImage copy(BufferedImage image) {
+    ColorModel cm = image.getColorModel();
+    return new BufferedImage(cm, image.copyData(null), cm.isAlphaPremultiplied(), null);
+  }
+
+  private BufferedImage lookup(Key key) {
+    BufferedImage image = segmentFor(key).get(key);
+    if (image != null) {
+      hits.increment();
+    } else {
+      misses.increment();
+    }
+    return image;
+  }
+
+  private BufferedImage store(Key key, BufferedImage image) {
+    long size = rasterBytes(image);
+    if (size > maxBytes) {
+      return image; // would evict everything and still not fit
+    }
+    segmentFor(key).put(key, image, size);
+
+    // one segment lock at a time, so there is no lock order to care about
+    int failed = 0;
+    while (residentBytes.get() > maxBytes && failed < segments.length) {
+      Segment segment = segments[evictCursor.getAndIncrement() & mask];
+      failed = segment.evictEldest(key) ? 0 : failed + 1;
+    }
+    return image;
+  }
+
+  private static Key key(BarcodeSpec spec, String code, String replacementtext) throws BarcodeException {
+    if (code == null) {
+      throw new BarcodeException("no code given to draw");
+    }
+    return new Key(spec, code, replacementtext);
+  }
+
+  private Segment segmentFor(Key key) {
+    int h = key.hashCode();
+    return segments[(h ^ (h >>> 16)) & mask];
+  }
+
+  /**
+   * The cache key: spec, code and replacement text
+   */
+  private static final class Key {
+    private final BarcodeSpec spec;
+    private final String code;
+    private final String replacementtext;
+    private final int hash;
+
+    Key(BarcodeSpec spec, String code, String replacementtext) {
+      this.spec = spec;
+      this.code = code;
+      this.replacementtext = replacementtext;
+      this.hash = Objects.hash(spec, code, replacementtext);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key o = (Key) obj;
+      return hash == o.hash && code.equals(o.code) && Objects.equals(replacementtext, o.replacementtext)
+          && spec.equals(o.spec);
+    }
+  }
+
+  /**
+   * One segment of the cache: a LRU map guarded by its own lock
+   */
+  private final class Segment {
+    private final Map<Key, BufferedImage> map = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    synchronized BufferedImage get(Key key) {
+      return map.get(key);
+    }
+
+    synchronized void put(Key key, BufferedImage image, long size) {
+      BufferedImage old = map.put(key, image);
+      if (old != null) {
+        add(-rasterBytes(old));
+      }
+      add(size);
+    }
+
+    /**
+     * Removes the least recently used image, except the one of keep
+     *
+     * @return false if there was no image to remove
+     */
+    synchronized boolean evictEldest(Key keep) {
+      Iterator<Map.Entry<Key, BufferedImage>> it = map.entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<Key, BufferedImage> eldest = it.next();
+        if (!eldest.getKey().equals(keep)) {
+          it.remove();
+          add(-rasterBytes(eldest.getValue()));
+          evictions.increment();
+          return true;
+        }
+      }
+      return false;
+    }
+
+    synchronized int size() {
+      return map.size();
+    }
+
+    synchronized void clear() {
+      add(-bytes);
+      map.clear();
+    }
+
+    private void add(long delta) {
+      bytes += delta;
+      residentBytes.addAndGet(delta);
+    }
+  }
+}
@@ -83,7 +83,62 @@ public class BarcodeInter25 extends Barcode {
    */
   @Override
   public byte[] getBars() {
-    String text = toRawText(code);
+    return bars(toRawText(code));
+  }
+
+  /**
+   * Creates the modules for the barcode directly, a wide bar is two modules.
+   */
+  @Override
+  public BarcodeModules getModules() {
+    return modules(toRawText(code));
+  }
+
+  /**
+   * Creates the modules for the given text.
+   *
+   * @param text the text, all non numeric chars are ignored
+   */
+  static BarcodeModules modules(String text) {
+    text = keepNumbers(text);
+    int len = text.length() / 2;
+    BarcodeModules.Builder b = new BarcodeModules.Builder(len * 14 + 8);
+    b.append(0xa, 4);
+    for (int k = 0; k < len; ++k) {
+      byte[] b1 = BARS[text.charAt(k * 2) - '0'];
+      byte[] b2 = BARS[text.charAt(k * 2 + 1) - '0'];
+      for (int j = 0; j < 5; ++j) {
+        b.appendRun(true, b1[j]);
+        b.appendRun(false, b2[j]);
+      }
+    }
+    b.append(0xd, 4);
+    return b.build();
+  }
+
+  /**
+   * Returns the sum of all bars for the given text without generating them.
+   * Start and stop are 4 modules each, a pair of digits is 14 modules.
+   *
+   * @param text the text, all non numeric chars are ignored
+   */
+  static int barsum(String text) {
+    int digits = 0;
+    for (int k = 0; k < text.length(); ++k) {
+      char c = text.charAt(k);
+      if (c >= '0' && c <= '9') {
+        digits++;
+      }
+    }
+    return 8 + digits / 2 * 14;
+  }
+
+  /**
+   * Creates the bars for the given text.
+   *
+   * @param text the text, all non numeric chars are ignored
+   */
+  static byte[] bars(String text) {
     text = keepNumbers(text);
     byte[] bars = new byte[text.length() * 5 + 7];
     int pb = 0;
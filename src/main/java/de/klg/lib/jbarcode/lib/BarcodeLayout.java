@@ -0,0 +1,118 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+/**
+ * Calculates the size of barcodes without rendering them. The size is the size
+ * of the image of BarcodeRenderer: quiet zone, bars, text and magnification.
+ *
+ * For EAN13 and EAN8 the width does not depend on the code, so nothing is
+ * encoded. For code 128 only the chars are counted, for 2/5 interleave only
+ * the digits.
+ *
+ * fit() finds the biggest barcode for a box, e.g. a label, also without
+ * rendering.
+ *
+ * @author Boris Klug
+ */
+public class BarcodeLayout {
+
+  private BarcodeLayout() {
+  }
+
+  /**
+   * Returns the size of the image BarcodeRenderer would create for the barcode
+   */
+  public static BarcodeDimension measure(Barcode bc) {
+    return measure(BarcodeSpec.of(bc), bc.getCode());
+  }
+
+  /**
+   * Returns the size of the image BarcodeRenderer would create for the spec and
+   * the code
+   *
+   * @throws IllegalArgumentException if the code cant be encoded
+   */
+  public static BarcodeDimension measure(BarcodeSpec spec, String code) {
+    int barsum = BarcodeEncoder.forType(spec.getType()).getBarsum(spec, code);
+    int mag = (int) spec.getMagnification();
+    return new BarcodeDimension(spec.getTotalWidth(barsum) * mag, spec.getTotalHeight() * mag, barsum,
+        spec.getBarWidth() * mag);
+  }
+
+  /**
+   * Returns the spec with the biggest bar width and magnification that fits into
+   * the box.
+   *
+   * The width of the smallest bar (bar width times magnification) is as big as
+   * possible. Of the solutions with the same width of the smallest bar, the one
+   * with the biggest magnification is used, so the text and the bar height grow
+   * as well. If the quiet zone of the spec is 10 times the bar width, it is
+   * scaled with the bar width, otherwise it is kept.
+   *
+   * @param spec      the spec, all other properties are kept
+   * @param code      the code
+   * @param maxWidth  the width of the box in pixels
+   * @param maxHeight the height of the box in pixels
+   * @return the spec or null if the barcode does not fit even with bar width and
+   *         magnification 1
+   * @throws IllegalArgumentException if the code cant be encoded
+   */
+  public static BarcodeSpec fit(BarcodeSpec spec, String code, int maxWidth, int maxHeight) {
+    int barsum = BarcodeEncoder.forType(spec.getType()).getBarsum(spec, code);
+    boolean scaleQuietZone = spec.getPreflightWidth() == 10 * spec.getBarWidth();
+    int preflight = spec.getPreflightWidth();
+
+    int bestWidth = 0;
+    int bestMag = 0;
+    for (int mag = maxHeight / spec.getTotalHeight(); mag >= 1; --mag) {
+      int barWidth;
+      if (scaleQuietZone) {
+        barWidth = maxWidth / mag / (barsum + 20);
+      } else {
+        barWidth = (maxWidth / mag - 2 * preflight) / barsum;
+      }
+      if (barWidth >= 1 && barWidth * mag > bestWidth * bestMag) {
+        bestWidth = barWidth;
+        bestMag = mag;
+      }
+    }
+    if (bestMag == 0) {
+      return null;
+    }
+
+    BarcodeSpec.Builder b = spec.toBuilder().barWidth(bestWidth).magnification(bestMag);
+    if (!scaleQuietZone) {
+      b.preflightWidth(preflight);
+    }
+    return b.build();
+  }
+
+  /**
+   * Returns the spec with the biggest bar width and magnification that fits into
+   * a box given in millimetres, see fit(BarcodeSpec, String, int, int)
+   *
+   * @param spec     the spec, all other properties are kept
+   * @param code     the code
+   * @param widthMm  the width of the box in millimetres
+   * @param heightMm the height of the box in millimetres
+   * @param dpi      the resolution of the printer
+   * @return the spec or null if the barcode does not fit
+   */
+  public static BarcodeSpec fitMillimeters(BarcodeSpec spec, String code, float widthMm, float heightMm, int dpi) {
+    return fit(spec, code, toPixels(widthMm, dpi), toPixels(heightMm, dpi));
+  }
+
+  /**
+   * Returns the number of whole pixels in the given length at the given
+   * resolution
+   */
+  public static int toPixels(float mm, int dpi) {
+    // a little tolerance, so 25.4mm at 300dpi are 300 pixels and not 299
+    return (int) (mm * dpi / 25.4f + 1e-3f);
+  }
+}
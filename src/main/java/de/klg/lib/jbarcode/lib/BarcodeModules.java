@@ -0,0 +1,270 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.util.Arrays;
+
+/**
+ * The modules of a barcode as a packed bit vector. A module is the smallest bar
+ * or space, a bar of width 3 in getBars() is three black modules here.
+ *
+ * Module i is bit (63 - i % 64) of word i / 64, so the first module is the
+ * highest bit of the first word like the first pixel in a 1 bit image. A set
+ * bit is a black module. The guard mask has the same layout and marks the black
+ * modules of the guard bars.
+ *
+ * Unlike the bars, the width of the barcode is known without a loop and whole
+ * words of modules can be copied to rasters or checked at once.
+ *
+ * The arrays returned by getWords() and getGuardWords() are shared and must not
+ * be modified.
+ *
+ * @author Boris Klug
+ */
+public final class BarcodeModules {
+
+  private final long[] words;
+  private final long[] guard;
+  private final int width;
+
+  private BarcodeModules(long[] words, long[] guard, int width) {
+    this.words = words;
+    this.guard = guard;
+    this.width = width;
+  }
+
+  /**
+   * Creates the modules from the bars, see Barcode.getBars(). The first bar is
+   * black.
+   *
+   * @param bars      the widths of the bars
+   * @param guardBars the sorted positions of the guard bars, see
+   *                  Barcode.getGuardBarsArray()
+   * @return the modules
+   */
+  public static BarcodeModules fromBars(byte[] bars, int[] guardBars) {
+    int sum = 0;
+    for (int k = 0; k < bars.length; ++k) {
+      sum += bars[k];
+    }
+    Builder b = new Builder(sum);
+    int g = 0;
+    for (int k = 0; k < bars.length; ++k) {
+      while (g < guardBars.length && guardBars[g] < k) {
+        g++;
+      }
+      boolean black = (k & 1) == 0;
+      if (black && g < guardBars.length && guardBars[g] == k) {
+        b.appendGuardRun(bars[k]);
+      } else {
+        b.appendRun(black, bars[k]);
+      }
+    }
+    return b.build();
+  }
+
+  /**
+   * Converts the modules back to bars like Barcode.getBars(): the widths of the
+   * bars and spaces, starting with a bar.
+   */
+  public byte[] toBars() {
+    int n = 0;
+    for (int i = 0; i < width; i = nextChange(i)) {
+      n++;
+    }
+    boolean leadingSpace = width > 0 && !isBar(0);
+    byte[] bars = new byte[leadingSpace ? n + 1 : n];
+    int pb = leadingSpace ? 1 : 0;
+    for (int i = 0; i < width;) {
+      int next = nextChange(i);
+      bars[pb++] = (byte) (next - i);
+      i = next;
+    }
+    return bars;
+  }
+
+  /**
+   * Returns the number of modules, that is the sum of all bars
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns true if the module is black
+   */
+  public boolean isBar(int module) {
+    return (words[module >>> 6] << module) < 0;
+  }
+
+  /**
+   * Returns true if the module belongs to a guard bar
+   */
+  public boolean isGuard(int module) {
+    return (guard[module >>> 6] << module) < 0;
+  }
+
+  /**
+   * Returns true if the barcode has guard bars
+   */
+  public boolean hasGuard() {
+    for (long w : guard) {
+      if (w != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the index of the first module after from with another color than
+   * module from, or the width if all remaining modules have the same color. Use
+   * it to walk over the bars and spaces.
+   */
+  public int nextChange(int from) {
+    boolean black = isBar(from);
+    int i = from >>> 6;
+    long w = (black ? ~words[i] : words[i]) & (-1L >>> from);
+    while (w == 0) {
+      if (++i >= words.length) {
+        return width;
+      }
+      w = black ? ~words[i] : words[i];
+    }
+    return Math.min(width, (i << 6) + Long.numberOfLeadingZeros(w));
+  }
+
+  /**
+   * Returns the modules, 64 per word. The array is shared and must not be
+   * modified.
+   */
+  public long[] getWords() {
+    return words;
+  }
+
+  /**
+   * Returns the guard mask, 64 modules per word. The array is shared and must not
+   * be modified.
+   */
+  public long[] getGuardWords() {
+    return guard;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof BarcodeModules)) {
+      return false;
+    }
+    BarcodeModules o = (BarcodeModules) obj;
+    return width == o.width && Arrays.equals(words, o.words) && Arrays.equals(guard, o.guard);
+  }
+
+  @Override
+  public int hashCode() {
+    return (width * 31 + Arrays.hashCode(words)) * 31 + Arrays.hashCode(guard);
+  }
+
+  /**
+   * Returns the modules as text, 1 for black and 0 for white modules
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder(width + 32);
+    sb.append("BarcodeModules [width=").append(width).append(", modules=");
+    for (int i = 0; i < width; i++) {
+      sb.append(isBar(i) ? '1' : '0');
+    }
+    return sb.append(']').toString();
+  }
+
+  /**
+   * Appends modules to a growing bit vector. Used by the barcode classes to write
+   * their patterns.
+   */
+  static final class Builder {
+    private long[] words;
+    private long[] guard;
+    private int width;
+
+    /**
+     * @param capacity the expected number of modules
+     */
+    Builder(int capacity) {
+      words = new long[(capacity >>> 6) + 2];
+      guard = new long[words.length];
+    }
+
+    /**
+     * Appends the lowest n bits of the pattern, highest bit first
+     *
+     * @param pattern the modules, 1 is black
+     * @param n       the number of modules, at most 32
+     */
+    Builder append(int pattern, int n) {
+      put(false, pattern, n);
+      width += n;
+      return this;
+    }
+
+    /**
+     * Appends the pattern like append(), the black modules are guard bars
+     */
+    Builder appendGuard(int pattern, int n) {
+      put(true, pattern, n);
+      return append(pattern, n);
+    }
+
+    /**
+     * Appends n modules of the same color
+     */
+    Builder appendRun(boolean black, int n) {
+      while (n > 0) {
+        int k = Math.min(n, 32);
+        append(black ? (int) ((1L << k) - 1) : 0, k);
+        n -= k;
+      }
+      return this;
+    }
+
+    /**
+     * Appends n black modules of a guard bar
+     */
+    Builder appendGuardRun(int n) {
+      while (n > 0) {
+        int k = Math.min(n, 32);
+        appendGuard((int) ((1L << k) - 1), k);
+        n -= k;
+      }
+      return this;
+    }
+
+    BarcodeModules build() {
+      int n = (width + 63) >>> 6;
+      return new BarcodeModules(Arrays.copyOf(words, n), Arrays.copyOf(guard, n), width);
+    }
+
+    private void put(boolean toGuard, int pattern, int n) {
+      int i = width >>> 6;
+      if (i + 1 >= words.length) {
+        words = Arrays.copyOf(words, words.length * 2);
+        guard = Arrays.copyOf(guard, words.length);
+      }
+      long[] a = toGuard ? guard : words;
+      long bits = pattern & ((1L << n) - 1);
+      int shift = 64 - (width & 63) - n;
+      if (shift >= 0) {
+        a[i] |= bits << shift;
+      } else {
+        a[i] |= bits >>> -shift;
+        a[i + 1] |= bits << (64 + shift);
+      }
+    }
+  }
+}
@@ -0,0 +1,397 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Writes label sheets as PDF: a grid of labels on each page, one barcode per
+ * label. The bars are filled rectangles and the text uses the standard font
+ * Helvetica, so the PDF contains no images and no embedded font.
+ *
+ * The PDF is written while the labels are added. A page is written and flushed
+ * as soon as it is full, only the positions of the objects are kept until the
+ * end. So the memory does not grow with the number of pages. The cross
+ * reference table is written by close().
+ *
+ * The barcode is drawn with the layout of BarcodeRenderer. One pixel of the
+ * barcode (with magnification) is "scale" points, the barcode is centered in
+ * its label.
+ *
+ * Example, A4 with 3 x 8 labels:
+ *
+ * {@code
+ *   try (BarcodePdfWriter pdf = new BarcodePdfWriter(out)) {
+ *     for (String code : codes) {
+ *       pdf.addLabel(spec, code);
+ *     }
+ *   }
+ * }
+ *
+ * @author Boris Klug
+ */
+public class BarcodePdfWriter implements Closeable {
+
+  /** Width of an A4 page in points */
+  public static final float A4_WIDTH = 595.28f;
+  /** Height of an A4 page in points */
+  public static final float A4_HEIGHT = 841.89f;
+
+  /** Widths of the Helvetica chars 32..126 in 1/1000 of the font size */
+  private static final short[] HELVETICA_WIDTHS = { 278, 278, 355, 556, 556, 889, 667, 191, 333, 333, 389, 584, 278,
+      333, 278, 278, 556, 556, 556, 556, 556, 556, 556, 556, 556, 556, 278, 278, 584, 584, 584, 556, 1015, 667, 667,
+      722, 722, 667, 611, 778, 722, 278, 500, 667, 556, 833, 722, 778, 667, 778, 722, 667, 611, 722, 667, 944, 667,
+      667, 611, 278, 278, 278, 469, 556, 333, 556, 556, 500, 556, 556, 278, 556, 556, 222, 222, 500, 222, 833, 556,
+      556, 556, 556, 333, 500, 278, 556, 500, 722, 500, 500, 500, 334, 260, 334, 584 };
+
+  /** Object numbers of the fixed objects */
+  private static final int CATALOG = 1;
+  private static final int PAGES = 2;
+  private static final int FONT = 3;
+
+  private final OutputStream out;
+  private final float pageWidth;
+  private final float pageHeight;
+  private final int columns;
+  private final int rows;
+  private float scale = 1;
+
+  private long position;
+  private long[] offsets = new long[64];
+  private int objects = FONT;
+  private int[] pages = new int[16];
+  private int pageCount;
+
+  private final StringBuilder content = new StringBuilder(4096);
+  private int label;
+  private final Deflater deflater = new Deflater();
+  private final ByteArrayOutputStream deflated = new ByteArrayOutputStream(4096);
+  private final byte[] buffer = new byte[4096];
+  private boolean closed;
+
+  /**
+   * Creates a writer for A4 pages with 3 x 8 labels
+   */
+  public BarcodePdfWriter(OutputStream out) throws IOException {
+    this(out, A4_WIDTH, A4_HEIGHT, 3, 8);
+  }
+
+  /**
+   * Creates a writer and writes the header of the PDF
+   *
+   * @param out        the stream, closed by close()
+   * @param pageWidth  the width of a page in points
+   * @param pageHeight the height of a page in points
+   * @param columns    the number of labels side by side
+   * @param rows       the number of labels one below the other
+   */
+  public BarcodePdfWriter(OutputStream out, float pageWidth, float pageHeight, int columns, int rows)
+      throws IOException {
+    if (columns < 1 || rows < 1) {
+      throw new IllegalArgumentException("columns and rows must be positive");
+    }
+    this.out = out;
+    this.pageWidth = pageWidth;
+    this.pageHeight = pageHeight;
+    this.columns = columns;
+    this.rows = rows;
+
+    write("%PDF-1.4\n%\u00e2\u00e3\u00cf\u00d3\n");
+    beginObject(FONT);
+    write("<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>\nendobj\n");
+  }
+
+  public float getScale() {
+    return scale;
+  }
+
+  /**
+   * Sets the size of one pixel of the barcode in points, default is 1
+   */
+  public void setScale(float scale) {
+    this.scale = scale;
+  }
+
+  /**
+   * Adds the barcode for the spec and the code to the next label
+   */
+  public void addLabel(BarcodeSpec spec, String code) throws BarcodeException, IOException {
+    addLabel(spec.newBarcode(code), null);
+  }
+
+  /**
+   * Adds the barcode to the next label
+   */
+  public void addLabel(Barcode bc) throws BarcodeException, IOException {
+    addLabel(bc, null);
+  }
+
+  /**
+   * Adds the barcode with the replacementtext instead of the code to the next
+   * label. The page is written when it is full.
+   */
+  public void addLabel(Barcode bc, String replacementtext) throws BarcodeException, IOException {
+    if (bc == null) {
+      throw new BarcodeException("no barcode given to draw");
+    }
+    byte[] bars = bc.getCachedBars();
+    if (bars == null) {
+      throw new BarcodeException("cant generate bars for barcode");
+    }
+    float s = scale * Math.max(1, (int) bc.getMagnification());
+    float cellWidth = pageWidth / columns;
+    float cellHeight = pageHeight / rows;
+    int col = label % columns;
+    int row = label / columns;
+
+    // top left corner of the barcode image in pdf coordinates
+    float left = col * cellWidth + (cellWidth - bc.getImageWidth(bars) * s) / 2;
+    float top = pageHeight - row * cellHeight - (cellHeight - bc.getImageHeight() * s) / 2;
+
+    int x = bc.getPreflightWidth();
+    int y = bc.getBarsTop();
+    int barheight = bc.getBarHeight();
+    int gd = bc.getGuardExtension();
+    int barwidth = bc.getBarWidth();
+    int[] guard = bc.getGuardBarsArray();
+    int bcx = x;
+    int g = 0;
+    for (int k = 0; k < bars.length; ++k) {
+      int w = bars[k] * barwidth;
+      if ((k & 1) == 0 && w > 0) {
+        while (g < guard.length && guard[g] < k) {
+          g++;
+        }
+        int h = g < guard.length && guard[g] == k ? barheight + gd : barheight;
+        num(left + bcx * s).append(' ');
+        num(top - (y + h) * s).append(' ');
+        num(w * s).append(' ');
+        num(h * s).append(" re\n");
+      }
+      bcx += w;
+    }
+    content.append("f\n");
+
+    if (bc.isDrawtext()) {
+      String text = replacementtext != null ? replacementtext : bc.toHumanText(bc.getCode());
+      appendText(bc, text, left, top, s, x, y, bcx - x);
+    }
+
+    if (++label == columns * rows) {
+      writePage();
+    }
+  }
+
+  /**
+   * Writes the current page, the next label starts on a new page. Does nothing
+   * if the page is empty.
+   */
+  public void newPage() throws IOException {
+    if (label > 0) {
+      writePage();
+    }
+  }
+
+  /**
+   * Returns the number of pages written so far
+   */
+  public int getPageCount() {
+    return pageCount;
+  }
+
+  /**
+   * Writes the last page, the page tree and the cross reference table and closes
+   * the stream
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      newPage();
+      beginObject(PAGES);
+      StringBuilder sb = new StringBuilder(32 + pageCount * 8);
+      sb.append("<< /Type /Pages /Count ").append(pageCount).append(" /Kids [");
+      for (int i = 0; i < pageCount; i++) {
+        sb.append(i == 0 ? "" : " ").append(pages[i]).append(" 0 R");
+      }
+      sb.append("] >>\nendobj\n");
+      write(sb);
+      beginObject(CATALOG);
+      write("<< /Type /Catalog /Pages 2 0 R >>\nendobj\n");
+
+      long xref = position;
+      sb.setLength(0);
+      sb.append("xref\n0 ").append(objects + 1).append("\n0000000000 65535 f \n");
+      write(sb);
+      for (int i = 1; i <= objects; i++) {
+        String offset = Long.toString(offsets[i]);
+        sb.setLength(0);
+        for (int k = offset.length(); k < 10; k++) {
+          sb.append('0');
+        }
+        sb.append(offset).append(" 00000 n \n");
+        write(sb);
+      }
+      write("trailer\n<< /Size " + (objects + 1) + " /Root 1 0 R >>\nstartxref\n" + xref + "\n%%EOF\n");
+    } finally {
+      deflater.end();
+      out.close();
+    }
+  }
+
+  private void appendText(Barcode bc, String text, float left, float top, float s, int x, int y, int bcx) {
+    float size = bc.getFontsize() * s;
+    int txty;
+    if (bc.getBaseline() < 0) { // above the barcode
+      txty = y + bc.getBaseline();
+    } else { // below the barcode
+      txty = y + bc.getBarHeight() + bc.getBaseline();
+    }
+    content.append("BT /F1 ");
+    num(size).append(" Tf\n");
+
+    if (bc.isUseCharPos()) {
+      // Special char positining, e.g. for EAN13
+      BarcodePoint[] charpos = bc.charPosArray();
+      for (int i = 0; i < text.length() && i < charpos.length; i++) {
+        content.append("1 0 0 1 ");
+        num(left + (x + charpos[i].getX()) * s).append(' ');
+        num(top - (txty + charpos[i].getY()) * s).append(" Tm ");
+        string(text.substring(i, i + 1)).append(" Tj\n");
+      }
+    } else {
+      float txtwidth = textWidth(text, size);
+      float txtx;
+      switch (bc.getTextAlignment()) {
+      case Barcode.ALIGN_LEFT:
+        txtx = left + x * s;
+        break;
+      case Barcode.ALIGN_RIGHT:
+        txtx = left + (x + bcx) * s - txtwidth;
+        break;
+      default: // center
+        txtx = left + (x + bcx / 2f) * s - txtwidth / 2;
+        break;
+      }
+      content.append("1 0 0 1 ");
+      num(txtx).append(' ');
+      num(top - txty * s).append(" Tm ");
+      string(text).append(" Tj\n");
+    }
+    content.append("ET\n");
+  }
+
+  /**
+   * Returns the width of the text in Helvetica
+   */
+  static float textWidth(String text, float size) {
+    int w = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      w += c >= 32 && c <= 126 ? HELVETICA_WIDTHS[c - 32] : 556;
+    }
+    return w * size / 1000;
+  }
+
+  private void writePage() throws IOException {
+    byte[] data = content.toString().getBytes(StandardCharsets.ISO_8859_1);
+    content.setLength(0);
+    label = 0;
+
+    deflater.reset();
+    deflater.setInput(data);
+    deflater.finish();
+    deflated.reset();
+    while (!deflater.finished()) {
+      deflated.write(buffer, 0, deflater.deflate(buffer));
+    }
+
+    int contentObject = ++objects;
+    beginObject(contentObject);
+    write("<< /Length " + deflated.size() + " /Filter /FlateDecode >>\nstream\n");
+    deflated.writeTo(out);
+    position += deflated.size();
+    write("\nendstream\nendobj\n");
+
+    int pageObject = ++objects;
+    beginObject(pageObject);
+    write("<< /Type /Page /Parent 2 0 R /MediaBox [0 0 " + fmt(pageWidth) + " " + fmt(pageHeight)
+        + "] /Resources << /Font << /F1 3 0 R >> >> /Contents " + contentObject + " 0 R >>\nendobj\n");
+    if (pageCount == pages.length) {
+      pages = Arrays.copyOf(pages, pageCount * 2);
+    }
+    pages[pageCount++] = pageObject;
+    out.flush();
+  }
+
+  private void beginObject(int number) throws IOException {
+    if (number >= offsets.length) {
+      offsets = Arrays.copyOf(offsets, Math.max(number + 1, offsets.length * 2));
+    }
+    offsets[number] = position;
+    write(number + " 0 obj\n");
+  }
+
+  private void write(CharSequence s) throws IOException {
+    byte[] b = s.toString().getBytes(StandardCharsets.ISO_8859_1);
+    out.write(b);
+    position += b.length;
+  }
+
+  /**
+   * Appends the text as pdf string, chars that are not in latin 1 are replaced
+   * by '?'
+   */
+  private StringBuilder string(String text) {
+    content.append('(');
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '(' || c == ')' || c == '\\') {
+        content.append('\\').append(c);
+      } else if (c < ' ' || c > 0xff) {
+        content.append('?');
+      } else {
+        content.append(c);
+      }
+    }
+    return content.append(')');
+  }
+
+  private StringBuilder num(float f) {
+    return content.append(fmt(f));
+  }
+
+  /**
+   * Formats the number with at most two decimals
+   */
+  static String fmt(float f) {
+    long v = Math.round(f * 100.0);
+    StringBuilder sb = new StringBuilder(12);
+    if (v < 0) {
+      sb.append('-');
+      v = -v;
+    }
+    sb.append(v / 100);
+    long frac = v % 100;
+    if (frac != 0) {
+      sb.append('.').append(frac / 10);
+      if (frac % 10 != 0) {
+        sb.append(frac % 10);
+      }
+    }
+    return sb.toString();
+  }
+}
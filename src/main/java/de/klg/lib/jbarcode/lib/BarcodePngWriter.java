@@ -0,0 +1,233 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.SampleModel;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes barcode images as grayscale PNG, 1 bit per pixel for TYPE_BYTE_BINARY
+ * and 8 bit per pixel for TYPE_BYTE_GRAY images.
+ *
+ * The rows are read directly from the raster. All rows of the bars are the
+ * same, so a row that equals the row above is written with the PNG filter "Up",
+ * which makes it all zeros and compresses to almost nothing. Other rows are
+ * written unfiltered. The compressed data is written in IDAT chunks as soon as
+ * the buffer is full, the image is never held twice in memory.
+ *
+ * The Deflater, the CRC and the buffers are reused for all images, so a writer
+ * must not be used by more than one thread at the same time.
+ *
+ * @author Boris Klug
+ */
+public class BarcodePngWriter {
+
+  private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+  private static final byte[] IHDR = { 'I', 'H', 'D', 'R' };
+  private static final byte[] IDAT = { 'I', 'D', 'A', 'T' };
+  private static final byte[] IEND = { 'I', 'E', 'N', 'D' };
+
+  private static final int FILTER_NONE = 0;
+  private static final int FILTER_UP = 2;
+
+  /** Size of the data of an IDAT chunk */
+  private static final int CHUNK_SIZE = 32 * 1024;
+
+  /** Where the bytes go */
+  private interface Output {
+    void write(byte[] b, int off, int len) throws IOException;
+  }
+
+  private final Deflater deflater;
+  private final CRC32 crc = new CRC32();
+  private final byte[] chunk = new byte[12 + CHUNK_SIZE];
+  private byte[] row = new byte[0];
+  private byte[] upRow = new byte[0];
+
+  /**
+   * Creates a writer with the default compression level
+   */
+  public BarcodePngWriter() {
+    this(Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Creates a writer
+   *
+   * @param level the compression level of the Deflater, 0-9 or -1 for the
+   *              default
+   */
+  public BarcodePngWriter(int level) {
+    deflater = new Deflater(level);
+  }
+
+  /**
+   * Writes the image as PNG to the stream. The stream is not closed.
+   *
+   * @param image a TYPE_BYTE_BINARY or TYPE_BYTE_GRAY image
+   * @param out   the stream
+   * @throws IllegalArgumentException if the image has another type
+   */
+  public void write(BufferedImage image, OutputStream out) throws IOException {
+    write(image, out::write);
+  }
+
+  /**
+   * Writes the image as PNG to the channel. The channel is not closed.
+   *
+   * @param image a TYPE_BYTE_BINARY or TYPE_BYTE_GRAY image
+   * @param out   the channel
+   * @throws IllegalArgumentException if the image has another type
+   */
+  public void write(BufferedImage image, WritableByteChannel out) throws IOException {
+    write(image, (b, off, len) -> {
+      ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+      while (buf.hasRemaining()) {
+        out.write(buf);
+      }
+    });
+  }
+
+  /**
+   * Frees the Deflater. The writer cant be used afterwards.
+   */
+  public void end() {
+    deflater.end();
+  }
+
+  private void write(BufferedImage image, Output out) throws IOException {
+    int bitDepth;
+    int rowBytes;
+    int stride;
+    int offset;
+    SampleModel sm = image.getRaster().getSampleModel();
+    int tx = image.getRaster().getSampleModelTranslateX();
+    int ty = image.getRaster().getSampleModelTranslateY();
+    int width = image.getWidth();
+    int height = image.getHeight();
+    if (image.getType() == BufferedImage.TYPE_BYTE_BINARY && sm instanceof MultiPixelPackedSampleModel
+        && ((MultiPixelPackedSampleModel) sm).getPixelBitStride() == 1 && tx % 8 == 0) {
+      MultiPixelPackedSampleModel mpp = (MultiPixelPackedSampleModel) sm;
+      bitDepth = 1;
+      rowBytes = (width + 7) >> 3;
+      stride = mpp.getScanlineStride();
+      offset = mpp.getOffset(-tx, -ty);
+    } else if (image.getType() == BufferedImage.TYPE_BYTE_GRAY && sm instanceof ComponentSampleModel) {
+      ComponentSampleModel csm = (ComponentSampleModel) sm;
+      bitDepth = 8;
+      rowBytes = width;
+      stride = csm.getScanlineStride();
+      offset = csm.getOffset(-tx, -ty);
+    } else {
+      throw new IllegalArgumentException("Image type " + image.getType() + " is not supported");
+    }
+    DataBufferByte db = (DataBufferByte) image.getRaster().getDataBuffer();
+    byte[] data = db.getData();
+    offset += db.getOffset();
+
+    out.write(SIGNATURE, 0, SIGNATURE.length);
+
+    // IHDR: gray scale, deflate, no interlace. In 1 bit images 0 is black like in
+    // the binary BufferedImage.
+    putInt(chunk, 8, width);
+    putInt(chunk, 12, height);
+    chunk[16] = (byte) bitDepth;
+    chunk[17] = 0; // color type gray
+    chunk[18] = 0; // compression
+    chunk[19] = 0; // filter method
+    chunk[20] = 0; // no interlace
+    writeChunk(out, IHDR, 13);
+
+    if (row.length < rowBytes + 1) {
+      row = new byte[rowBytes + 1];
+      upRow = new byte[rowBytes + 1];
+    }
+    row[0] = FILTER_NONE;
+    upRow[0] = FILTER_UP;
+
+    // The last byte of a 1 bit row may have unused bits, PNG wants them but
+    // does not care about their value
+    deflater.reset();
+    int pos = 8;
+    int prev = -1;
+    for (int y = 0; y < height; y++) {
+      int start = offset + y * stride;
+      byte[] filtered;
+      if (prev >= 0 && sameRow(data, prev, start, rowBytes)) {
+        filtered = upRow;
+      } else {
+        System.arraycopy(data, start, row, 1, rowBytes);
+        filtered = row;
+      }
+      prev = start;
+      deflater.setInput(filtered, 0, rowBytes + 1);
+      while (!deflater.needsInput()) {
+        pos = deflate(out, pos);
+      }
+    }
+    deflater.finish();
+    while (!deflater.finished()) {
+      pos = deflate(out, pos);
+    }
+    if (pos > 8) {
+      writeChunk(out, IDAT, pos - 8);
+    }
+    writeChunk(out, IEND, 0);
+  }
+
+  /**
+   * Deflates into the chunk buffer starting at pos and writes the IDAT chunk if
+   * it is full
+   *
+   * @return the new position in the chunk buffer
+   */
+  private int deflate(Output out, int pos) throws IOException {
+    pos += deflater.deflate(chunk, pos, 8 + CHUNK_SIZE - pos);
+    if (pos == 8 + CHUNK_SIZE) {
+      writeChunk(out, IDAT, CHUNK_SIZE);
+      pos = 8;
+    }
+    return pos;
+  }
+
+  /**
+   * Writes the chunk with the data in the chunk buffer starting at index 8
+   */
+  private void writeChunk(Output out, byte[] type, int length) throws IOException {
+    putInt(chunk, 0, length);
+    System.arraycopy(type, 0, chunk, 4, 4);
+    crc.reset();
+    crc.update(chunk, 4, length + 4);
+    putInt(chunk, 8 + length, (int) crc.getValue());
+    out.write(chunk, 0, length + 12);
+  }
+
+  private static boolean sameRow(byte[] data, int a, int b, int len) {
+    for (int i = 0; i < len; i++) {
+      if (data[a + i] != data[b + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void putInt(byte[] b, int off, int v) {
+    b[off] = (byte) (v >>> 24);
+    b[off + 1] = (byte) (v >>> 16);
+    b[off + 2] = (byte) (v >>> 8);
+    b[off + 3] = (byte) v;
+  }
+}
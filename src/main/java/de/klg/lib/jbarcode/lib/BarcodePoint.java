@@ -38,4 +38,18 @@ public class BarcodePoint {
     this.y = y;
   }
 
+  /**
+   * Returns a copy of the array with copies of the points, null entries stay
+   * null
+   */
+  static BarcodePoint[] copyOf(BarcodePoint[] points) {
+    BarcodePoint[] copy = new BarcodePoint[points.length];
+    for (int i = 0; i < points.length; i++) {
+      if (points[i] != null) {
+        copy[i] = new BarcodePoint(points[i].x, points[i].y);
+      }
+    }
+    return copy;
+  }
+
 }
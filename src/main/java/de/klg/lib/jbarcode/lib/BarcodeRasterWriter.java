@@ -0,0 +1,139 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the bars of a barcode as 1 bit raster graphic for printers without
+ * barcode commands: ESC/POS "GS v 0" for receipt printers and EPL "GW" for label
+ * printers.
+ *
+ * The raster is built from the modules (see Barcode.getModules()) without an
+ * image. All rows of the bars are the same, so the row is built once and written
+ * as often as needed. The same is done for the rows of the guard bar
+ * extensions. The memory needed does not depend on the height or the
+ * magnification.
+ *
+ * The raster contains the quiet zone and the bars, but no text. Use the text
+ * commands of the printer for the human readable text.
+ *
+ * @author Boris Klug
+ */
+public class BarcodeRasterWriter {
+
+  private final byte[] barRow;
+  private final byte[] guardRow;
+  private final int barRows;
+  private final int guardRows;
+
+  private BarcodeRasterWriter(Barcode bc) throws BarcodeException {
+    BarcodeModules modules = bc.getModules();
+    if (modules == null) {
+      throw new BarcodeException("cant generate bars for barcode");
+    }
+    int mag = Math.max(1, (int) bc.getMagnification());
+    int scale = bc.getBarWidth() * mag;
+    int x0 = bc.getPreflightWidth() * mag;
+    int width = modules.getWidth() * scale + 2 * x0;
+
+    barRow = new byte[(width + 7) >> 3];
+    for (int i = 0; i < modules.getWidth(); i = modules.nextChange(i)) {
+      if (modules.isBar(i)) {
+        setBits(barRow, x0 + i * scale, x0 + modules.nextChange(i) * scale);
+      }
+    }
+    barRows = bc.getBarHeight() * mag;
+
+    guardRow = new byte[barRow.length];
+    int gd = bc.getGuardExtension() * mag;
+    if (gd > 0 && modules.hasGuard()) {
+      for (int i = 0; i < modules.getWidth(); i++) {
+        if (modules.isGuard(i)) {
+          setBits(guardRow, x0 + i * scale, x0 + (i + 1) * scale);
+        }
+      }
+      guardRows = gd;
+    } else {
+      guardRows = 0;
+    }
+  }
+
+  /**
+   * Writes the bars as ESC/POS raster bit image (GS v 0, normal density). A set
+   * bit is printed.
+   */
+  public static void writeEscPos(Barcode bc, OutputStream out) throws BarcodeException, IOException {
+    BarcodeRasterWriter raster = new BarcodeRasterWriter(bc);
+    int x = raster.barRow.length;
+    int y = raster.barRows + raster.guardRows;
+    out.write(new byte[] { 0x1d, 'v', '0', 0, (byte) x, (byte) (x >> 8), (byte) y, (byte) (y >> 8) });
+    raster.writeRows(out);
+  }
+
+  /**
+   * Writes the bars as EPL graphic (GW) at the given position in dots, followed
+   * by a line feed. A cleared bit is printed.
+   */
+  public static void writeEpl(Barcode bc, int x, int y, OutputStream out) throws BarcodeException, IOException {
+    BarcodeRasterWriter raster = new BarcodeRasterWriter(bc);
+    invert(raster.barRow);
+    invert(raster.guardRow);
+    int rows = raster.barRows + raster.guardRows;
+    String head = "GW" + x + "," + y + "," + raster.barRow.length + "," + rows + ",";
+    out.write(head.getBytes(StandardCharsets.US_ASCII));
+    raster.writeRows(out);
+    out.write('\n');
+  }
+
+  /**
+   * Returns the number of bytes of each row
+   */
+  int getRowBytes() {
+    return barRow.length;
+  }
+
+  private void writeRows(OutputStream out) throws IOException {
+    for (int k = 0; k < barRows; k++) {
+      out.write(barRow);
+    }
+    for (int k = 0; k < guardRows; k++) {
+      out.write(guardRow);
+    }
+  }
+
+  /**
+   * Sets the bits from (inclusive) to (exclusive), the highest bit of a byte is
+   * the leftmost pixel
+   */
+  static void setBits(byte[] row, int from, int to) {
+    if (from >= to) {
+      return;
+    }
+    int first = from >> 3;
+    int last = (to - 1) >> 3;
+    int firstMask = 0xff >> (from & 7);
+    int lastMask = 0xff << (7 - ((to - 1) & 7));
+    if (first == last) {
+      row[first] |= firstMask & lastMask;
+      return;
+    }
+    row[first] |= firstMask;
+    for (int i = first + 1; i < last; i++) {
+      row[i] = (byte) 0xff;
+    }
+    row[last] |= lastMask;
+  }
+
+  private static void invert(byte[] row) {
+    for (int i = 0; i < row.length; i++) {
+      row[i] = (byte) ~row[i];
+    }
+  }
+}
@@ -6,18 +6,21 @@
  * ---------------------------------------------------------------------------- */
 package de.klg.lib.jbarcode.lib;
 
-import java.awt.Font;
-import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Arrays;
 
 import javax.imageio.ImageIO;
 
 /**
- * This class renders a barcode in a buffered image. It also provides a method
- * for writing this generated image to a jpg file.
+ * This class renders a barcode in a buffered image. It also provides methods
+ * for writing this generated image to a png (or jpg) file.
  *
  * @author Boris Klug
  */
@@ -30,6 +33,13 @@ public class BarcodeRenderer {
     return getBarcodeBufimage(bc, null);
   }
 
+  /**
+   * Returns the buffered image with the barcode for the given spec and code
+   */
+  public static BufferedImage getBarcodeBufimage(BarcodeSpec spec, String code) throws BarcodeException {
+    return getBarcodeBufimage(spec.newBarcode(code), null);
+  }
+
   /**
    * Returns the buffered image with the rendered barcode but replace the text
    * below (or above) the barcode with the given replacementtext
@@ -43,31 +53,19 @@ public class BarcodeRenderer {
     // The maginication factor
     int mag = (int) bc.getMagnification();
 
-    int fontbaseline = bc.getBaseline();
-    String fontname = bc.getFontname();
     int x = bc.getPreflightWidth();
-    int y = 1;
-
-    // text has to be placed below the barcode, move barcode to south
-    if (bc.isDrawtext() && fontbaseline <= 0) {
-      y = 1 + fontbaseline + bc.getFontsize();
-    }
+    int y = bc.getBarsTop();
 
     // Get the barcode bars
-    byte[] bars = bc.getBars();
+    byte[] bars = bc.getCachedBars();
     if (bars == null) {
       throw new BarcodeException("cant generate bars for barcode");
     }
 
     // Here we have to calculate the size of the barcode and
     // get the bufimage according to this
-    int imgwidth = (bc.getBarsum(bars) * bc.getBarWidth()) + (2 * bc.getPreflightWidth());
-    int imgheight;
-    if (bc.isDrawtext()) { // draw text
-      imgheight = bc.getBarHeight() + 2 + bc.getBaseline();
-    } else { // do not draw text
-      imgheight = bc.getBarHeight() + 2;
-    }
+    int imgwidth = bc.getImageWidth(bars);
+    int imgheight = bc.getImageHeight();
 
     // Create buffered image and the graphics2D
     BufferedImage bufimage = new BufferedImage(imgwidth * mag, imgheight * mag, BufferedImage.TYPE_BYTE_GRAY);
@@ -81,10 +79,7 @@ public class BarcodeRenderer {
     // Draw the barcode
     boolean print = true;
     int[] guard = bc.getGuardBarsArray(); // guard bars if any
-    int gd = 0;
-    if (bc.isGuardBars() && bc.isDrawtext() && fontbaseline > 0) {
-      gd = fontbaseline / 2;
-    }
+    int gd = bc.getGuardExtension();
 
     int bcx = 0;
     int barwidth = bc.getBarWidth();
@@ -98,71 +93,280 @@ public class BarcodeRenderer {
           g.fillRect((x + bcx) * mag, y, (barvalue * barwidth) * mag, (y + barheight) * mag);
         }
       }
-      bcx = bcx + bars[k];
+      bcx = bcx + barvalue * barwidth;
       print = !print;
     }
 
+    drawText(g, bc, replacementtext, x, y, bcx, mag);
+    g.dispose();
+    return bufimage;
+  }
+
+  /**
+   * Returns the buffered image with the rendered barcode as 8 bit grayscale
+   * image, see getBarcodeBufimageDirect(Barcode, String, int)
+   */
+  public static BufferedImage getBarcodeBufimageDirect(Barcode bc) throws BarcodeException {
+    return getBarcodeBufimageDirect(bc, null, BufferedImage.TYPE_BYTE_GRAY);
+  }
+
+  /**
+   * Returns the buffered image with the rendered barcode like
+   * getBarcodeBufimage(), but the bars are written directly into the raster
+   * instead of being drawn with Graphics2D.
+   *
+   * Bars are one dimensional, so one row of pixels is composed and then copied
+   * to all rows of the bars. The extension of the guard bars is composed and
+   * copied the same way. Only the text is drawn with Graphics2D.
+   *
+   * For TYPE_BYTE_GRAY the image is the same as the one of getBarcodeBufimage().
+   * TYPE_BYTE_BINARY creates a black and white image with one bit per pixel
+   * which needs an eighth of the memory.
+   *
+   * @param bc              the barcode
+   * @param replacementtext the text to draw instead of the code, may be null
+   * @param imageType       BufferedImage.TYPE_BYTE_GRAY or
+   *                        BufferedImage.TYPE_BYTE_BINARY
+   * @return the image
+   */
+  public static BufferedImage getBarcodeBufimageDirect(Barcode bc, String replacementtext, int imageType)
+      throws BarcodeException {
+    if (bc == null) {
+      throw new BarcodeException("no barcode given to draw");
+    }
+    if (imageType != BufferedImage.TYPE_BYTE_GRAY && imageType != BufferedImage.TYPE_BYTE_BINARY) {
+      throw new BarcodeException("image type " + imageType + " is not supported");
+    }
+    boolean binary = imageType == BufferedImage.TYPE_BYTE_BINARY;
+
+    int mag = (int) bc.getMagnification();
+    int x = bc.getPreflightWidth();
+    int y = bc.getBarsTop();
+
+    byte[] bars = bc.getCachedBars();
+    if (bars == null) {
+      throw new BarcodeException("cant generate bars for barcode");
+    }
+
+    int width = bc.getImageWidth(bars) * mag;
+    int height = bc.getImageHeight() * mag;
+    BufferedImage bufimage = new BufferedImage(width, height, imageType);
+    byte[] data = ((DataBufferByte) bufimage.getRaster().getDataBuffer()).getData();
+    int stride = binary ? (width + 7) >> 3 : width;
+
+    // white background, for binary images 1 is white
+    Arrays.fill(data, (byte) 0xff);
+
+    int[] guard = bc.getGuardBarsArray();
+    int gd = bc.getGuardExtension();
+
+    // The rows of the bars and of the guard bar extensions, same as the
+    // rectangles drawn by getBarcodeBufimage()
+    int barheight = bc.getBarHeight();
+    int barsEnd = Math.min(height, y + (y + barheight) * mag);
+    int guardEnd = Math.min(height, y + (y + barheight + gd) * mag);
+
+    // Compose the first row of the bars and, if needed, the first row of the
+    // guard bar extensions. The guard array is sorted, so it is walked along
+    // with the bars.
+    int barwidth = bc.getBarWidth() * mag;
+    int px = x * mag;
+    int g = 0;
+    for (int k = 0; k < bars.length; ++k) {
+      int w = bars[k] * barwidth;
+      if ((k & 1) == 0) {
+        fillRow(data, y * stride, px, px + w, binary);
+        while (g < guard.length && guard[g] < k) {
+          g++;
+        }
+        if (guardEnd > barsEnd && g < guard.length && guard[g] == k) {
+          fillRow(data, barsEnd * stride, px, px + w, binary);
+        }
+      }
+      px += w;
+    }
+
+    // Copy the rows
+    for (int row = y + 1; row < barsEnd; row++) {
+      System.arraycopy(data, y * stride, data, row * stride, stride);
+    }
+    for (int row = barsEnd + 1; row < guardEnd; row++) {
+      System.arraycopy(data, barsEnd * stride, data, row * stride, stride);
+    }
+
+    // The text is copied from the glyph atlas, only chars which are not in the
+    // atlas need Graphics2D
+    if (bc.isDrawtext()
+        && !drawTextDirect(data, stride, binary, width, height, bc, replacementtext, x, y, px / mag - x, mag)) {
+      Graphics2D g2 = bufimage.createGraphics();
+      g2.setColor(java.awt.Color.black);
+      drawText(g2, bc, replacementtext, x, y, px / mag - x, mag);
+      g2.dispose();
+    }
+    return bufimage;
+  }
+
+  /**
+   * Sets the pixels from x1 (inclusive) to x2 (exclusive) of the row starting at
+   * index offset to black
+   */
+  private static void fillRow(byte[] data, int offset, int x1, int x2, boolean binary) {
+    if (!binary) {
+      Arrays.fill(data, offset + x1, offset + x2, (byte) 0);
+      return;
+    }
+    // black is 0 in binary images, the leftmost pixel is the highest bit
+    for (int px = x1; px < x2;) {
+      int i = offset + (px >> 3);
+      int bit = px & 7;
+      if (bit == 0 && px + 8 <= x2) {
+        data[i] = 0;
+        px += 8;
+      } else {
+        data[i] &= ~(0x80 >> bit);
+        px++;
+      }
+    }
+  }
+
+  /**
+   * Draws the human readable text of the barcode, if wanted.
+   *
+   * @param x   the left side of the bars
+   * @param y   the top of the bars
+   * @param bcx the width of the bars
+   */
+  private static void drawText(Graphics2D g, Barcode bc, String replacementtext, int x, int y, int bcx, int mag) {
     // When text is not wanted -> thats all
     if (!bc.isDrawtext()) {
-      return bufimage;
+      return;
     }
 
-    // Check the font (if text daring is desired)
-    Font font = new Font(fontname, Font.PLAIN, bc.getFontsize() * mag);
-    FontMetrics fontmetric = g.getFontMetrics(font);
+    // Get the font from the cache (if text daring is desired)
+    BarcodeFontCache.Entry font = BarcodeFontCache.get(bc.getFontname(), bc.getFontsize() * mag);
 
     // Draw the text below the barcode
-    g.setFont(font);
-    String texttodraw;
+    g.setFont(font.font);
+    String texttodraw = getText(bc, replacementtext);
+    int txtx = getTextX(bc, x, bcx, mag, font.metrics.stringWidth(texttodraw));
+    int txty = getTextY(bc, y, mag);
+
+    // No special char positioning, just draw the string
+    if (!bc.isUseCharPos()) {
+      g.drawString(texttodraw, txtx, txty);
+      return;
+    }
+
+    // Special char positining, e.g. for EAN13
+    BarcodePoint[] charpos = bc.charPosArray();
+
+    for (int i = 0; i < texttodraw.length(); i++) {
+      g.drawString(String.valueOf(texttodraw.charAt(i)), (txtx + mag * (int) charpos[i].getX()),
+          (txty + mag * (int) charpos[i].getY()));
+    }
+  }
+
+  /**
+   * Draws the human readable text with the glyph atlas of the font cache
+   * directly into the raster, like drawText() would draw it.
+   *
+   * @return false if a char is not in the atlas, nothing is drawn then
+   */
+  private static boolean drawTextDirect(byte[] data, int stride, boolean binary, int width, int height, Barcode bc,
+      String replacementtext, int x, int y, int bcx, int mag) {
+    BarcodeFontCache.Entry font = BarcodeFontCache.get(bc.getFontname(), bc.getFontsize() * mag);
+    String texttodraw = getText(bc, replacementtext);
+    BarcodeFontCache.Glyphs glyphs = font.glyphs();
+    if (!glyphs.canDraw(texttodraw)) {
+      return false;
+    }
+    int txtx = getTextX(bc, x, bcx, mag, font.metrics.stringWidth(texttodraw));
+    int txty = getTextY(bc, y, mag);
+
+    if (!bc.isUseCharPos()) {
+      for (int i = 0; i < texttodraw.length(); i++) {
+        char c = texttodraw.charAt(i);
+        glyphs.draw(c, txtx, txty, data, stride, binary, width, height);
+        txtx += glyphs.advance(c);
+      }
+      return true;
+    }
+
+    BarcodePoint[] charpos = bc.charPosArray();
+    for (int i = 0; i < texttodraw.length(); i++) {
+      glyphs.draw(texttodraw.charAt(i), txtx + mag * (int) charpos[i].getX(), txty + mag * (int) charpos[i].getY(),
+          data, stride, binary, width, height);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the text to draw
+   */
+  private static String getText(Barcode bc, String replacementtext) {
     if (replacementtext != null) {
-      texttodraw = replacementtext;
-    } else {
-      texttodraw = bc.toHumanText(bc.getCode());
+      return replacementtext;
     }
-    int txtwidth = fontmetric.stringWidth(texttodraw);
-    int txtx = 0;
+    return bc.toHumanText(bc.getCode());
+  }
 
+  /**
+   * Returns the x position of the text (with magnification)
+   */
+  static int getTextX(Barcode bc, int x, int bcx, int mag, int txtwidth) {
     // find the right x position for the text
     switch (bc.getTextAlignment()) {
     case Barcode.ALIGN_LEFT:
-      txtx = x * mag;
-      break;
+      return x * mag;
     case Barcode.ALIGN_RIGHT:
-      txtx = ((x + bcx) * mag) - txtwidth;
-      break;
+      return ((x + bcx) * mag) - txtwidth;
     default: // center
-      txtx = ((x + (bcx / 2)) * mag) - (txtwidth / 2);
-      break;
+      return ((x + (bcx / 2)) * mag) - (txtwidth / 2);
     }
+  }
 
-    // find the y position
-    int txty;
+  /**
+   * Returns the y position of the baseline of the text (with magnification)
+   */
+  private static int getTextY(Barcode bc, int y, int mag) {
     if (bc.getBaseline() < 0) { // above the barcode
-      txty = (y + bc.getBaseline()) * mag; // bc.getBaseline() < 0 !
+      return (y + bc.getBaseline()) * mag; // bc.getBaseline() < 0 !
     } else { // below the barcode
-      txty = (y + bc.getBarHeight() + bc.getBaseline()) * mag;
+      return (y + bc.getBarHeight() + bc.getBaseline()) * mag;
     }
+  }
 
-    // No special char positioning, just draw the string
-    if (!bc.isUseCharPos()) {
-      g.drawString(texttodraw, txtx, txty);
-      return bufimage;
+  /**
+   * Export the barcode to a png file with 1 bit per pixel, see BarcodePngWriter
+   */
+  public static void exportPng(Barcode bc, String filename) throws BarcodeException {
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(filename))) {
+      exportPng(bc, out);
+    } catch (IOException ex) {
+      throw new BarcodeException("Cant export to file '" + filename + "'");
     }
+  }
 
-    // Special char positining, e.g. for EAN13
-    BarcodePoint[] charpos = bc.getCharPosArray();
-
-    for (int i = 0; i < texttodraw.length(); i++) {
-      g.drawString(texttodraw.substring(i + 0, i + 1), (txtx + mag * (int) charpos[i].getX()),
-          (txty + mag * (int) charpos[i].getY()));
-
+  /**
+   * Writes the barcode as png with 1 bit per pixel to the stream. The stream is
+   * not closed.
+   */
+  public static void exportPng(Barcode bc, OutputStream out) throws BarcodeException, IOException {
+    BufferedImage image = getBarcodeBufimageDirect(bc, null, BufferedImage.TYPE_BYTE_BINARY);
+    BarcodePngWriter writer = new BarcodePngWriter();
+    try {
+      writer.write(image, out);
+    } finally {
+      writer.end();
     }
-    return bufimage;
   }
 
   /**
-   * Export the barcode to a jpg file. png would be better
+   * Export the barcode to a jpg file.
+   *
+   * @deprecated JPEG is lossy and blurs the edges of the bars, use exportPng()
    */
+  @Deprecated
   public static void exportJpg(Barcode bc, String filename) throws BarcodeException {
     File out = new File(filename);
     BufferedImage image = getBarcodeBufimage(bc);
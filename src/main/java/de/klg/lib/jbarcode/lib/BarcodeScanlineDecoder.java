@@ -0,0 +1,551 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Arrays;
+
+/**
+ * Reads barcodes from images along horizontal scanlines, e.g. to check the
+ * images of BarcodeRenderer or scanned labels. EAN13, EAN8, code 128 (and EAN
+ * 128) and 2/5 interleave are decoded.
+ *
+ * For each scanline the pixels are read directly from the DataBuffer of the
+ * image and converted to gray. The row is binarised with the threshold halfway
+ * between the darkest and the lightest pixel and converted to the widths of
+ * the dark and light runs. Light runs much wider than the average run are
+ * quiet zones, they split the row into symbols.
+ *
+ * The widths of a symbol are normalised to modules char by char, so a slowly
+ * changing scale (e.g. from a camera) does not matter. Each symbol is decoded
+ * left to right and, if that fails, right to left.
+ *
+ * An instance keeps its buffers between calls and is not thread safe, use one
+ * decoder per thread.
+ *
+ * @author Boris Klug
+ */
+public class BarcodeScanlineDecoder {
+
+  /** The minimal difference between dark and light pixels in a row */
+  private static final int MIN_CONTRAST = 32;
+
+  /** EAN digit by the key of its 4 widths, -1 if none. G codes are 10 + digit */
+  private static final byte[] EAN_DIGITS = new byte[256];
+
+  /** 2/5 interleave digit by the mask of its wide elements, -1 if none */
+  private static final byte[] ITF_DIGITS = new byte[32];
+
+  static {
+    Arrays.fill(EAN_DIGITS, (byte) -1);
+    for (int d = 0; d < 10; ++d) {
+      byte[] w = BarcodeEAN.BARS[d];
+      EAN_DIGITS[(w[0] - 1) << 6 | (w[1] - 1) << 4 | (w[2] - 1) << 2 | (w[3] - 1)] = (byte) d;
+      EAN_DIGITS[(w[3] - 1) << 6 | (w[2] - 1) << 4 | (w[1] - 1) << 2 | (w[0] - 1)] = (byte) (10 + d);
+    }
+    Arrays.fill(ITF_DIGITS, (byte) -1);
+    for (int d = 0; d < 10; ++d) {
+      int mask = 0;
+      for (int k = 0; k < 5; ++k) {
+        mask = mask << 1 | (BarcodeInter25.BARS[d][k] > 1 ? 1 : 0);
+      }
+      ITF_DIGITS[mask] = (byte) d;
+    }
+  }
+
+  /** The gray values of the current row */
+  private int[] gray = new int[0];
+  /** The raw samples of the current row, for rasters read with getSamples() */
+  private int[] samples = new int[0];
+  /** The run widths of the current row, the first run is dark */
+  private int[] runs = new int[0];
+  /** The x position of the first pixel of each run */
+  private int[] starts = new int[0];
+  /** The runs of the current symbol, maybe reversed */
+  private int[] symbol = new int[0];
+  /** The widths of the current symbol in modules */
+  private byte[] modules = new byte[0];
+  /** The number of runs of the last decoded symbol */
+  private int symbolCount;
+  private final StringBuilder text = new StringBuilder(64);
+
+  /**
+   * The result of a successful decode
+   */
+  public static final class Result {
+    private final BarcodeType type;
+    private final String text;
+    private final int row;
+    private final int x;
+    private final int width;
+
+    Result(BarcodeType type, String text, int row, int x, int width) {
+      this.type = type;
+      this.text = text;
+      this.row = row;
+      this.x = x;
+      this.width = width;
+    }
+
+    /**
+     * Returns the type: EAN13, EAN8, CODE128, EAN128 or CODE25INTER
+     */
+    public BarcodeType getType() {
+      return type;
+    }
+
+    /**
+     * Returns the decoded text, for EAN128 without the leading FNC1
+     */
+    public String getText() {
+      return text;
+    }
+
+    /**
+     * Returns the row of the scanline
+     */
+    public int getRow() {
+      return row;
+    }
+
+    /**
+     * Returns the x position of the first bar
+     */
+    public int getX() {
+      return x;
+    }
+
+    /**
+     * Returns the width from the first to the end of the last bar in pixels
+     */
+    public int getWidth() {
+      return width;
+    }
+
+    @Override
+    public String toString() {
+      return "Result [type=" + type + ", text=" + text + ", row=" + row + ", x=" + x + ", width=" + width + "]";
+    }
+  }
+
+  /**
+   * Decodes the first barcode found in the image. The scanlines are tried from
+   * the middle of the image to the top and the bottom.
+   *
+   * @param image the image
+   * @return the result or null if no barcode was found
+   */
+  public Result decode(BufferedImage image) {
+    return decode(image, 15);
+  }
+
+  /**
+   * Decodes the first barcode found on one of the scanlines. The scanlines are
+   * spread evenly over the image and tried from the middle to the top and the
+   * bottom.
+   *
+   * @param image     the image
+   * @param scanlines the maximal number of scanlines
+   * @return the result or null if no barcode was found
+   */
+  public Result decode(BufferedImage image, int scanlines) {
+    int height = image.getHeight();
+    int n = Math.max(1, Math.min(scanlines, height));
+    int middle = n / 2;
+    // middle, middle + 1, middle - 1, middle + 2, ...
+    for (int k = 0; k < 2 * n; ++k) {
+      int line = middle + ((k & 1) == 1 ? (k + 1) / 2 : -k / 2);
+      if (line < 0 || line >= n) {
+        continue;
+      }
+      Result result = decodeRow(image, (int) ((line + 0.5) * height / n));
+      if (result != null) {
+        return result;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Decodes the first barcode found in the row of the image
+   *
+   * @param image the image
+   * @param y     the row
+   * @return the result or null if no barcode was found
+   */
+  public Result decodeRow(BufferedImage image, int y) {
+    int width = readRow(image, y);
+    int count = toRuns(width);
+    if (count == 0) {
+      return null;
+    }
+
+    // split into symbols at the quiet zones
+    long sum = 0;
+    for (int k = 0; k < count; ++k) {
+      sum += runs[k];
+    }
+    int quiet = Math.max(3, (int) (5 * sum / count));
+    int from = 0;
+    for (int k = 1; k <= count; k += 2) {
+      if (k == count || runs[k] >= quiet) {
+        Result result = decodeSymbol(from, k - from, y);
+        if (result != null) {
+          return result;
+        }
+        from = k + 1;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the gray values of the row read last, see readRow()
+   */
+  int[] getGray() {
+    return gray;
+  }
+
+  /**
+   * Returns the run widths in pixels of the symbol decoded last, in the
+   * direction it was decoded
+   */
+  int[] getSymbolRuns() {
+    return symbol;
+  }
+
+  /**
+   * Returns the widths in modules of the symbol decoded last, ITF wide
+   * elements are 2 modules
+   */
+  byte[] getSymbolModules() {
+    return modules;
+  }
+
+  /**
+   * Returns the number of runs of the symbol decoded last
+   */
+  int getSymbolCount() {
+    return symbolCount;
+  }
+
+  /**
+   * Reads the gray values of the row from the DataBuffer into gray[]
+   *
+   * @return the width of the row
+   */
+  int readRow(BufferedImage image, int y) {
+    Raster raster = image.getRaster();
+    int width = raster.getWidth();
+    if (gray.length < width) {
+      gray = new int[width];
+    }
+    SampleModel sm = raster.getSampleModel();
+    DataBuffer db = raster.getDataBuffer();
+    int ty = y - raster.getSampleModelTranslateY();
+    int tx = -raster.getSampleModelTranslateX();
+
+    if (db instanceof DataBufferByte && sm instanceof ComponentSampleModel && sm.getNumBands() != 2) {
+      ComponentSampleModel csm = (ComponentSampleModel) sm;
+      byte[] data = ((DataBufferByte) db).getData(csm.getBankIndices()[0]);
+      int[] offsets = csm.getBandOffsets();
+      int ps = csm.getPixelStride();
+      int index = db.getOffset() + ty * csm.getScanlineStride() + tx * ps;
+      if (sm.getNumBands() == 1) {
+        for (int x = 0; x < width; ++x, index += ps) {
+          gray[x] = data[index + offsets[0]] & 0xff;
+        }
+      } else { // the first three bands are red, green and blue
+        for (int x = 0; x < width; ++x, index += ps) {
+          gray[x] = luminance(data[index + offsets[0]] & 0xff, data[index + offsets[1]] & 0xff,
+              data[index + offsets[2]] & 0xff);
+        }
+      }
+    } else if (db instanceof DataBufferByte && sm instanceof MultiPixelPackedSampleModel
+        && sm.getSampleSize(0) == 1) {
+      MultiPixelPackedSampleModel mpp = (MultiPixelPackedSampleModel) sm;
+      byte[] data = ((DataBufferByte) db).getData();
+      int index = db.getOffset() + ty * mpp.getScanlineStride();
+      int bit = mpp.getDataBitOffset() + tx;
+      int black = image.getColorModel().getRGB(0) == 0xff000000 ? 0 : 255;
+      for (int x = 0; x < width; ++x, ++bit) {
+        gray[x] = ((data[index + (bit >> 3)] >> (7 - (bit & 7))) & 1) == 0 ? black : 255 - black;
+      }
+    } else if (db instanceof DataBufferInt && sm instanceof SinglePixelPackedSampleModel
+        && sm.getNumBands() >= 3) {
+      SinglePixelPackedSampleModel spp = (SinglePixelPackedSampleModel) sm;
+      int[] data = ((DataBufferInt) db).getData();
+      int[] masks = spp.getBitMasks();
+      int[] shifts = spp.getBitOffsets();
+      int index = db.getOffset() + ty * spp.getScanlineStride() + tx;
+      for (int x = 0; x < width; ++x) {
+        int p = data[index + x];
+        gray[x] = luminance((p & masks[0]) >>> shifts[0], (p & masks[1]) >>> shifts[1],
+            (p & masks[2]) >>> shifts[2]);
+      }
+    } else { // any other raster, still without converting each pixel to RGB
+      if (samples.length < width) {
+        samples = new int[width];
+      }
+      int max = (1 << sm.getSampleSize(0)) - 1;
+      raster.getSamples(raster.getMinX(), raster.getMinY() + y, width, 1, 0, samples);
+      for (int x = 0; x < width; ++x) {
+        gray[x] = samples[x] * 255 / max;
+      }
+    }
+    return width;
+  }
+
+  /**
+   * Binarises gray[] and writes the run widths to runs[], starting with the
+   * first dark run and ending with the last dark run
+   *
+   * @return the number of runs, 0 if the row has too little contrast
+   */
+  private int toRuns(int width) {
+    int min = 255;
+    int max = 0;
+    for (int x = 0; x < width; ++x) {
+      min = Math.min(min, gray[x]);
+      max = Math.max(max, gray[x]);
+    }
+    if (max - min < MIN_CONTRAST) {
+      return 0;
+    }
+    int threshold = (min + max + 1) / 2;
+
+    if (runs.length < width + 1) {
+      runs = new int[width + 1];
+      starts = new int[width + 1];
+    }
+    int count = 0;
+    int lastDark = -1;
+    boolean dark = false;
+    for (int x = 0; x < width; ++x) {
+      boolean d = gray[x] < threshold;
+      if (count == 0 && !d) {
+        continue; // before the first dark pixel
+      }
+      if (count == 0 || d != dark) {
+        starts[count] = x;
+        runs[count++] = 0;
+        dark = d;
+      }
+      runs[count - 1]++;
+      if (d) {
+        lastDark = count - 1;
+      }
+    }
+    return lastDark + 1;
+  }
+
+  /**
+   * Tries to decode the runs from index from, forwards and backwards
+   */
+  private Result decodeSymbol(int from, int count, int y) {
+    if (count < 17) {
+      return null;
+    }
+    if (symbol.length < count) {
+      symbol = new int[count];
+      modules = new byte[count];
+    }
+    int x = starts[from];
+    int width = starts[from + count - 1] + runs[from + count - 1] - x;
+    for (int dir = 0; dir < 2; ++dir) {
+      for (int k = 0; k < count; ++k) {
+        symbol[k] = runs[dir == 0 ? from + k : from + count - 1 - k];
+      }
+      text.setLength(0);
+      BarcodeType type = decodeCode128(count);
+      if (type == null) {
+        type = decodeEAN(count);
+      }
+      if (type == null) {
+        type = decodeInter25(count);
+      }
+      if (type != null) {
+        symbolCount = count;
+        return new Result(type, text.toString(), y, x, width);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Decodes symbol[] as code 128
+   */
+  private BarcodeType decodeCode128(int count) {
+    if (count < 19 || (count - 7) % 6 != 0) {
+      return null;
+    }
+    for (int k = 0; k < count - 7; k += 6) {
+      if (!normalize(k, 6, 11, 4)) {
+        return null;
+      }
+    }
+    if (!normalize(count - 7, 7, 13, 4)) {
+      return null;
+    }
+    try {
+      return Barcode128Decoder.decode(modules, 0, count, text);
+    } catch (BarcodeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Decodes symbol[] as EAN13 or EAN8
+   */
+  private BarcodeType decodeEAN(int count) {
+    int digits;
+    if (count == 59) {
+      digits = 12;
+    } else if (count == 43) {
+      digits = 8;
+    } else {
+      return null;
+    }
+    int half = digits / 2;
+    int middle = 3 + half * 4;
+
+    // the guards are single modules
+    if (!normalize(0, 3, 3, 1) || !normalize(middle, 5, 5, 1) || !normalize(count - 3, 3, 3, 1)) {
+      return null;
+    }
+    int parity = 0;
+    for (int d = 0; d < digits; ++d) {
+      int k = d < half ? 3 + d * 4 : middle + 5 + (d - half) * 4;
+      if (!normalize(k, 4, 7, 4)) {
+        return null;
+      }
+      int digit = EAN_DIGITS[(modules[k] - 1) << 6 | (modules[k + 1] - 1) << 4 | (modules[k + 2] - 1) << 2
+          | (modules[k + 3] - 1)];
+      if (digit < 0 || (digit >= 10 && (d >= half || digits == 8))) {
+        return null; // only the left half of EAN13 has G codes
+      }
+      if (d < half) {
+        parity = parity << 1 | (digit >= 10 ? 1 : 0);
+      }
+      text.append((char) ('0' + digit % 10));
+    }
+
+    if (digits == 12) { // the first digit is coded in the parities
+      int first = -1;
+      for (int d = 0; d < 10; ++d) {
+        byte[] p = BarcodeEAN.PARITY13[d];
+        int mask = 0;
+        for (int k = 0; k < 6; ++k) {
+          mask = mask << 1 | (p[k] == BarcodeEAN.EVEN ? 1 : 0);
+        }
+        if (mask == parity) {
+          first = d;
+        }
+      }
+      if (first < 0) {
+        return null;
+      }
+      text.insert(0, (char) ('0' + first));
+    }
+
+    int len = text.length();
+    if (BarcodeEAN.calculateEANParity(text, len - 1) != text.charAt(len - 1) - '0') {
+      return null;
+    }
+    return len == 13 ? BarcodeType.EAN13 : BarcodeType.EAN8;
+  }
+
+  /**
+   * Decodes symbol[] as 2/5 interleave
+   */
+  private BarcodeType decodeInter25(int count) {
+    if ((count - 7) % 10 != 0) {
+      return null;
+    }
+    // start: 4 narrow elements, stop: wide bar, narrow space, narrow bar
+    // an element is wide if it is more than 1.5 narrow elements
+    int wide = 3 * (symbol[0] + symbol[1] + symbol[2] + symbol[3]);
+    int end = count - 3;
+    if (8 * symbol[end] <= wide || 8 * symbol[end + 1] > wide || 8 * symbol[end + 2] > wide) {
+      return null;
+    }
+    for (int k = 4; k < end; k += 10) {
+      int bars = wideMask(k);
+      int spaces = wideMask(k + 1);
+      if (bars < 0 || spaces < 0 || ITF_DIGITS[bars] < 0 || ITF_DIGITS[spaces] < 0) {
+        return null;
+      }
+      text.append((char) ('0' + ITF_DIGITS[bars])).append((char) ('0' + ITF_DIGITS[spaces]));
+      for (int j = 0; j < 5; ++j) {
+        modules[k + j * 2] = (byte) ((bars >> (4 - j) & 1) + 1);
+        modules[k + j * 2 + 1] = (byte) ((spaces >> (4 - j) & 1) + 1);
+      }
+    }
+    modules[0] = modules[1] = modules[2] = modules[3] = 1;
+    modules[end] = 2;
+    modules[end + 1] = modules[end + 2] = 1;
+    return BarcodeType.CODE25INTER;
+  }
+
+  /**
+   * Returns the mask of the two wide elements of the 5 elements at k, k + 2,
+   * ... k + 8, -1 if they are not clearly wider than the others
+   */
+  private int wideMask(int k) {
+    int first = -1;
+    int second = -1;
+    for (int j = 0; j < 5; ++j) {
+      int w = symbol[k + j * 2];
+      if (first < 0 || w > symbol[k + first * 2]) {
+        second = first;
+        first = j;
+      } else if (second < 0 || w > symbol[k + second * 2]) {
+        second = j;
+      }
+    }
+    int widest = symbol[k + second * 2];
+    for (int j = 0; j < 5; ++j) {
+      if (j != first && j != second && symbol[k + j * 2] * 3 > widest * 2) {
+        return -1; // a narrow element is more than 2/3 of a wide one
+      }
+    }
+    return 1 << (4 - first) | 1 << (4 - second);
+  }
+
+  /**
+   * Converts the n runs at k in symbol[] to modules[], the runs have the given
+   * total number of modules
+   *
+   * @return false if a run is not 1 to max modules wide
+   */
+  private boolean normalize(int k, int n, int total, int max) {
+    int sum = 0;
+    for (int j = k; j < k + n; ++j) {
+      sum += symbol[j];
+    }
+    for (int j = k; j < k + n; ++j) {
+      int m = (2 * symbol[j] * total + sum) / (2 * sum); // rounded
+      if (m < 1 || m > max) {
+        return false;
+      }
+      modules[j] = (byte) m;
+    }
+    return true;
+  }
+
+  private static int luminance(int r, int g, int b) {
+    return (r * 77 + g * 150 + b * 29) >> 8;
+  }
+}
@@ -0,0 +1,397 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.util.Objects;
+
+/**
+ * Immutable description of how a barcode looks like: the type and all
+ * properties of Barcode except the code itself. A spec is created with a
+ * Builder and can be shared between threads. Together with the stateless
+ * BarcodeEncoder for its type, the same spec can be used for any number of
+ * codes.
+ *
+ * Example:
+ *
+ * {@code
+ *   BarcodeSpec spec = BarcodeSpec.builder(BarcodeType.EAN13).barHeight(40).build();
+ *   byte[] bars = BarcodeEncoder.forType(spec.getType()).getBars(spec, "4001513000620");
+ * }
+ *
+ * Values derived from the properties (quiet zone, guard bars, width of fixed
+ * length barcodes) are calculated once when the spec is built.
+ *
+ * @author Boris Klug
+ */
+public final class BarcodeSpec {
+
+  private final BarcodeType type;
+  private final String fontname;
+  private final boolean drawtext;
+  private final int fontsize;
+  private final int baseline;
+  private final int barHeight;
+  private final int barWidth;
+  private final int preflightWidth;
+  private final float magnification;
+  private final int textAlignment;
+  private final boolean guardBars;
+  private final boolean useCharPos;
+  private final boolean optimizeSubsets;
+
+  /** The guard bars of the type, see Barcode.getGuardBarsArray() */
+  private final int[] guardBarsArray;
+
+  /** The sum of all bars for fixed length types, -1 otherwise */
+  private final int fixedBarsum;
+
+  private BarcodeSpec(Builder b) {
+    type = b.type;
+    fontname = b.fontname;
+    drawtext = b.drawtext;
+    fontsize = b.fontsize;
+    baseline = b.baseline;
+    barHeight = b.barHeight;
+    barWidth = b.barWidth;
+    preflightWidth = b.preflightWidth >= 0 ? b.preflightWidth : 10 * b.barWidth;
+    magnification = b.magnification;
+    textAlignment = b.textAlignment;
+    guardBars = b.guardBars;
+    useCharPos = b.useCharPos;
+    optimizeSubsets = b.optimizeSubsets;
+
+    guardBarsArray = BarcodeEncoder.forType(type).getGuardBarsArray();
+    fixedBarsum = BarcodeEncoder.forType(type).getFixedBarsum();
+  }
+
+  /**
+   * Returns a builder with the default properties of the given type, the same
+   * ones a new Barcode object of this type has.
+   *
+   * @param type the barcode type
+   * @return the builder
+   * @throws IllegalArgumentException if the type is not supported
+   */
+  public static Builder builder(BarcodeType type) {
+    return new Builder(BarcodeEncoder.forType(type).newBarcode());
+  }
+
+  /**
+   * Returns a builder with the properties of this spec
+   */
+  public Builder toBuilder() {
+    Builder b = new Builder(type);
+    b.fontname = fontname;
+    b.drawtext = drawtext;
+    b.fontsize = fontsize;
+    b.baseline = baseline;
+    b.barHeight = barHeight;
+    b.barWidth = barWidth;
+    b.preflightWidth = preflightWidth;
+    b.magnification = magnification;
+    b.textAlignment = textAlignment;
+    b.guardBars = guardBars;
+    b.useCharPos = useCharPos;
+    b.optimizeSubsets = optimizeSubsets;
+    return b;
+  }
+
+  /**
+   * Returns the spec with the current properties of the barcode
+   *
+   * @param bc the barcode
+   * @return the spec
+   */
+  public static BarcodeSpec of(Barcode bc) {
+    return new Builder(bc).build();
+  }
+
+  /**
+   * Creates a new barcode object with the properties of this spec and the given
+   * code, e.g. for use with BarcodeRenderer
+   *
+   * @param code the code
+   * @return the new barcode
+   */
+  public Barcode newBarcode(String code) {
+    Barcode bc = BarcodeEncoder.forType(type).newBarcode();
+    applyTo(bc);
+    bc.setCode(code);
+    return bc;
+  }
+
+  /**
+   * Sets all properties of this spec on the barcode, which must be of the class
+   * for the type of this spec. Used to reuse barcode objects.
+   */
+  void applyTo(Barcode bc) {
+    bc.setCodeType(type);
+    bc.setFontname(fontname);
+    bc.setDrawtext(drawtext);
+    bc.setFontsize(fontsize);
+    bc.setBaseline(baseline);
+    bc.setBarHeight(barHeight);
+    bc.setBarWidth(barWidth);
+    bc.setPreflightWidth(preflightWidth);
+    bc.setMagnification(magnification);
+    bc.setTextAlignment(textAlignment);
+    bc.setGuardBars(guardBars);
+    bc.setUseCharPos(useCharPos);
+    if (bc instanceof Barcode128) {
+      ((Barcode128) bc).setOptimizeSubsets(optimizeSubsets);
+    }
+  }
+
+  public BarcodeType getType() {
+    return type;
+  }
+
+  public String getFontname() {
+    return fontname;
+  }
+
+  public boolean isDrawtext() {
+    return drawtext;
+  }
+
+  public int getFontsize() {
+    return fontsize;
+  }
+
+  public int getBaseline() {
+    return baseline;
+  }
+
+  public int getBarHeight() {
+    return barHeight;
+  }
+
+  public int getBarWidth() {
+    return barWidth;
+  }
+
+  /**
+   * Returns the width of the quiet zone left and right of the bars
+   */
+  public int getPreflightWidth() {
+    return preflightWidth;
+  }
+
+  public float getMagnification() {
+    return magnification;
+  }
+
+  public int getTextAlignment() {
+    return textAlignment;
+  }
+
+  public boolean isGuardBars() {
+    return guardBars;
+  }
+
+  public boolean isUseCharPos() {
+    return useCharPos;
+  }
+
+  public boolean isOptimizeSubsets() {
+    return optimizeSubsets;
+  }
+
+  /**
+   * Get the position of the guard bars of the type (if any) as a copy of the
+   * shared array.
+   */
+  public int[] getGuardBarsArray() {
+    return guardBarsArray != null ? guardBarsArray.clone() : null;
+  }
+
+  /**
+   * Returns the sum of all bars if it does not depend on the code (EAN13, EAN8),
+   * -1 otherwise
+   */
+  public int getFixedBarsum() {
+    return fixedBarsum;
+  }
+
+  /**
+   * Returns the width of the barcode including the quiet zone but without
+   * magnification if it does not depend on the code, -1 otherwise
+   */
+  public int getTotalWidth() {
+    return fixedBarsum < 0 ? -1 : getTotalWidth(fixedBarsum);
+  }
+
+  /**
+   * Returns the width of the barcode with the given sum of all bars, including
+   * the quiet zone but without magnification
+   */
+  public int getTotalWidth(int barsum) {
+    return barsum * barWidth + 2 * preflightWidth;
+  }
+
+  /**
+   * Returns the height of the barcode including the text but without
+   * magnification, the same for every code
+   */
+  public int getTotalHeight() {
+    return drawtext ? barHeight + 2 + baseline : barHeight + 2;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof BarcodeSpec)) {
+      return false;
+    }
+    BarcodeSpec o = (BarcodeSpec) obj;
+    return type == o.type && Objects.equals(fontname, o.fontname) && drawtext == o.drawtext
+        && fontsize == o.fontsize && baseline == o.baseline && barHeight == o.barHeight && barWidth == o.barWidth
+        && preflightWidth == o.preflightWidth && Float.compare(magnification, o.magnification) == 0
+        && textAlignment == o.textAlignment && guardBars == o.guardBars && useCharPos == o.useCharPos
+        && optimizeSubsets == o.optimizeSubsets;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(type, fontname, drawtext, fontsize, baseline, barHeight, barWidth, preflightWidth,
+        magnification, textAlignment, guardBars, useCharPos, optimizeSubsets);
+  }
+
+  @Override
+  public String toString() {
+    return "BarcodeSpec [type=" + type + ", fontname=" + fontname + ", drawtext=" + drawtext + ", fontsize="
+        + fontsize + ", baseline=" + baseline + ", barHeight=" + barHeight + ", barWidth=" + barWidth
+        + ", preflightWidth=" + preflightWidth + ", magnification=" + magnification + ", textAlignment="
+        + textAlignment + ", guardBars=" + guardBars + ", useCharPos=" + useCharPos + ", optimizeSubsets="
+        + optimizeSubsets + "]";
+  }
+
+  /**
+   * Builder for BarcodeSpec. The setters have the same meaning as the ones in
+   * Barcode.
+   */
+  public static final class Builder {
+
+    private final BarcodeType type;
+    private String fontname;
+    private boolean drawtext;
+    private int fontsize;
+    private int baseline;
+    private int barHeight;
+    private int barWidth;
+    /** If negative, the quiet zone is 10 * barWidth */
+    private int preflightWidth = -1;
+    private float magnification;
+    private int textAlignment;
+    private boolean guardBars;
+    private boolean useCharPos;
+    private boolean optimizeSubsets;
+
+    private Builder(BarcodeType type) {
+      this.type = type;
+    }
+
+    private Builder(Barcode bc) {
+      this(bc.getCodeType());
+      fontname = bc.getFontname();
+      drawtext = bc.isDrawtext();
+      fontsize = bc.getFontsize();
+      baseline = bc.getBaseline();
+      barHeight = bc.getBarHeight();
+      barWidth = bc.getBarWidth();
+      preflightWidth = bc.getPreflightWidth();
+      magnification = bc.getMagnification();
+      textAlignment = bc.getTextAlignment();
+      guardBars = bc.isGuardBars();
+      useCharPos = bc.isUseCharPos();
+      if (bc instanceof Barcode128) {
+        optimizeSubsets = ((Barcode128) bc).isOptimizeSubsets();
+      }
+    }
+
+    public Builder fontname(String fontname) {
+      this.fontname = fontname;
+      return this;
+    }
+
+    public Builder drawtext(boolean drawtext) {
+      this.drawtext = drawtext;
+      return this;
+    }
+
+    public Builder fontsize(int fontsize) {
+      this.fontsize = fontsize;
+      return this;
+    }
+
+    public Builder baseline(int baseline) {
+      this.baseline = baseline;
+      return this;
+    }
+
+    public Builder barHeight(int barHeight) {
+      this.barHeight = barHeight;
+      return this;
+    }
+
+    /**
+     * Sets the width of the smallest bar. The quiet zone is set to 10 times this
+     * width, call preflightWidth() afterwards for a different quiet zone.
+     */
+    public Builder barWidth(int barWidth) {
+      this.barWidth = barWidth;
+      this.preflightWidth = -1;
+      return this;
+    }
+
+    public Builder preflightWidth(int preflightWidth) {
+      this.preflightWidth = preflightWidth;
+      return this;
+    }
+
+    public Builder magnification(float magnification) {
+      this.magnification = magnification;
+      return this;
+    }
+
+    public Builder textAlignment(int textAlignment) {
+      this.textAlignment = textAlignment;
+      return this;
+    }
+
+    public Builder guardBars(boolean guardBars) {
+      this.guardBars = guardBars;
+      return this;
+    }
+
+    public Builder useCharPos(boolean useCharPos) {
+      this.useCharPos = useCharPos;
+      return this;
+    }
+
+    public Builder optimizeSubsets(boolean optimizeSubsets) {
+      this.optimizeSubsets = optimizeSubsets;
+      return this;
+    }
+
+    /**
+     * Creates the spec
+     *
+     * @throws IllegalArgumentException if bar width, bar height or magnification
+     *                                  are not positive
+     */
+    public BarcodeSpec build() {
+      if (barWidth <= 0 || barHeight <= 0 || !(magnification > 0)) {
+        throw new IllegalArgumentException("Bar width, bar height and magnification must be positive, not " + barWidth
+            + ", " + barHeight + " and " + magnification);
+      }
+      return new BarcodeSpec(this);
+    }
+  }
+}
@@ -0,0 +1,215 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a barcode as SVG. All bars are one path element, the text is one text
+ * element. The SVG is written directly to the Writer.
+ *
+ * The layout is the one of BarcodeRenderer in units of the bar width without
+ * magnification: the quiet zone, the bar height, the guard bars and the
+ * baseline of the text. The magnification only sets the width and height
+ * attributes, so the SVG scales without loss.
+ *
+ * The text is placed with text-anchor, so no font metrics are needed. With
+ * "useCharPos", each char is placed on its own x position like in
+ * BarcodeRenderer. For center or right alignment these positions are relative
+ * to the aligned text, its width is then measured with the AWT font metrics of
+ * BarcodeFontCache like BarcodeRenderer does.
+ *
+ * @author Boris Klug
+ */
+public class BarcodeSvgWriter {
+
+  private BarcodeSvgWriter() {
+  }
+
+  /**
+   * Writes the barcode as SVG document. The writer is not closed.
+   */
+  public static void write(Barcode bc, Writer out) throws BarcodeException, IOException {
+    write(bc, null, out);
+  }
+
+  /**
+   * Writes the barcode for the spec and the code as SVG document. The writer is
+   * not closed.
+   */
+  public static void write(BarcodeSpec spec, String code, Writer out) throws BarcodeException, IOException {
+    write(spec.newBarcode(code), null, out);
+  }
+
+  /**
+   * Writes the barcode as SVG document but with the replacementtext instead of
+   * the code below (or above) the bars. The writer is not closed.
+   */
+  public static void write(Barcode bc, String replacementtext, Writer out) throws BarcodeException, IOException {
+    if (bc == null) {
+      throw new BarcodeException("no barcode given to draw");
+    }
+    byte[] bars = bc.getCachedBars();
+    if (bars == null) {
+      throw new BarcodeException("cant generate bars for barcode");
+    }
+
+    int x = bc.getPreflightWidth();
+    int y = bc.getBarsTop();
+    int width = bc.getImageWidth(bars);
+    int height = bc.getImageHeight();
+    float mag = bc.getMagnification();
+    int barheight = bc.getBarHeight();
+    int barwidth = bc.getBarWidth();
+    int[] guard = bc.getGuardBarsArray();
+    int gd = bc.getGuardExtension();
+
+    out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"");
+    out.write(number(width * mag));
+    out.write("\" height=\"");
+    out.write(number(height * mag));
+    out.write("\" viewBox=\"0 0 " + width + " " + height + "\">\n");
+    out.write("<rect width=\"100%\" height=\"100%\" fill=\"#fff\"/>\n");
+
+    // One sub path per bar: move to the top left, then right, down and left
+    out.write("<path fill=\"#000\" d=\"");
+    int bcx = x;
+    int g = 0;
+    for (int k = 0; k < bars.length; ++k) {
+      int w = bars[k] * barwidth;
+      if ((k & 1) == 0 && w > 0) {
+        while (g < guard.length && guard[g] < k) {
+          g++;
+        }
+        int h = g < guard.length && guard[g] == k ? barheight + gd : barheight;
+        out.write("M" + bcx + " " + y + "h" + w + "v" + h + "h-" + w + "z");
+      }
+      bcx += w;
+    }
+    out.write("\"/>\n");
+
+    if (bc.isDrawtext()) {
+      String text = replacementtext != null ? replacementtext : bc.toHumanText(bc.getCode());
+      writeText(out, bc, text, x, y, bcx - x);
+    }
+    out.write("</svg>\n");
+  }
+
+  /**
+   * Writes the text element, see BarcodeRenderer.drawText()
+   */
+  private static void writeText(Writer out, Barcode bc, String text, int x, int y, int bcx) throws IOException {
+    int txty;
+    if (bc.getBaseline() < 0) { // above the barcode
+      txty = y + bc.getBaseline();
+    } else { // below the barcode
+      txty = y + bc.getBarHeight() + bc.getBaseline();
+    }
+
+    out.write("<text font-family=\"");
+    out.write(fontFamily(bc.getFontname()));
+    out.write("\" font-size=\"" + bc.getFontsize() + "\"");
+
+    if (bc.isUseCharPos()) {
+      int txtx = x;
+      if (bc.getTextAlignment() != Barcode.ALIGN_LEFT) {
+        int width = BarcodeFontCache.get(bc.getFontname(), bc.getFontsize()).metrics.stringWidth(text);
+        txtx = BarcodeRenderer.getTextX(bc, x, bcx, 1, width);
+      }
+      BarcodePoint[] charpos = bc.charPosArray();
+      StringBuilder xs = new StringBuilder();
+      StringBuilder ys = new StringBuilder();
+      for (int i = 0; i < text.length() && i < charpos.length; i++) {
+        if (i > 0) {
+          xs.append(' ');
+          ys.append(' ');
+        }
+        xs.append(number(txtx + charpos[i].getX()));
+        ys.append(number(txty + charpos[i].getY()));
+      }
+      out.write(" x=\"" + xs + "\" y=\"" + ys + "\">");
+    } else {
+      int txtx;
+      String anchor;
+      switch (bc.getTextAlignment()) {
+      case Barcode.ALIGN_LEFT:
+        txtx = x;
+        anchor = "start";
+        break;
+      case Barcode.ALIGN_RIGHT:
+        txtx = x + bcx;
+        anchor = "end";
+        break;
+      default: // center
+        txtx = x + (bcx / 2);
+        anchor = "middle";
+        break;
+      }
+      out.write(" text-anchor=\"" + anchor + "\" x=\"" + txtx + "\" y=\"" + txty + "\">");
+    }
+    escape(out, text);
+    out.write("</text>\n");
+  }
+
+  /**
+   * Maps the java font names to generic css font families
+   */
+  static String fontFamily(String fontname) {
+    if (fontname == null || fontname.equalsIgnoreCase("SansSerif") || fontname.equalsIgnoreCase("SanSerif")
+        || fontname.equalsIgnoreCase("Dialog")) {
+      return "sans-serif";
+    } else if (fontname.equalsIgnoreCase("Serif")) {
+      return "serif";
+    } else if (fontname.equalsIgnoreCase("Monospaced") || fontname.equalsIgnoreCase("DialogInput")) {
+      return "monospace";
+    }
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < fontname.length(); i++) {
+      char c = fontname.charAt(i);
+      if (c != '"' && c != '\'' && c != '<' && c != '&') {
+        sb.append(c);
+      }
+    }
+    return "'" + sb + "', sans-serif";
+  }
+
+  /**
+   * Writes the text with xml escapes. Chars not allowed in xml are replaced by a
+   * space.
+   */
+  private static void escape(Writer out, String text) throws IOException {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      switch (c) {
+      case '&':
+        out.write("&amp;");
+        break;
+      case '<':
+        out.write("&lt;");
+        break;
+      case '>':
+        out.write("&gt;");
+        break;
+      default:
+        out.write(c < 0x20 || c == 0xfffe || c == 0xffff ? ' ' : c);
+        break;
+      }
+    }
+  }
+
+  /**
+   * Formats the number without a fraction if it has none
+   */
+  private static String number(float f) {
+    if (f == (int) f) {
+      return Integer.toString((int) f);
+    }
+    return Float.toString(f);
+  }
+}
@@ -0,0 +1,315 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a barcode as ZPL commands for Zebra compatible label printers, so the
+ * printer draws the barcode itself instead of printing a graphic.
+ *
+ * The native barcode commands are used where possible:
+ *
+ * - code 128 (all types) with ^BC: the chars of the barcode are sent with the
+ * invocation codes for the start char, the subset changes and FNC1, so the
+ * printer uses exactly the same subsets as getBars()
+ *
+ * - EAN13 with ^BE and EAN8 with ^B8, the printer adds the check digit
+ *
+ * - code 2/5 interleave with ^B2
+ *
+ * If the printer can not print the same bars (control chars, shift, an EAN with
+ * a wrong check digit, an odd number of digits for 2/5 interleave), each bar is
+ * written as a filled ^GB box.
+ *
+ * One pixel of the barcode is one dot of the printer: the module width is bar
+ * width * magnification dots. The text uses the scalable font 0 with the font
+ * size * magnification as height.
+ *
+ * @author Boris Klug
+ */
+public class BarcodeZplWriter {
+
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+  private BarcodeZplWriter() {
+  }
+
+  /**
+   * Writes a complete label (^XA ... ^XZ) with the barcode in the top left
+   * corner, including the quiet zone
+   */
+  public static void write(Barcode bc, OutputStream out) throws BarcodeException, IOException {
+    StringBuilder sb = new StringBuilder(256);
+    sb.append("^XA^CI28\n");
+    appendFields(sb, bc, 0, 0);
+    sb.append("^XZ\n");
+    out.write(sb.toString().getBytes(StandardCharsets.US_ASCII));
+  }
+
+  /**
+   * Writes the fields of the barcode at the given position (in dots) without
+   * ^XA/^XZ, e.g. to add it to a label with other fields. The text is UTF-8,
+   * the label needs ^CI28 for chars that are not ASCII.
+   *
+   * @param x the left side of the quiet zone
+   * @param y the top of the barcode
+   */
+  public static void writeFields(Barcode bc, int x, int y, OutputStream out) throws BarcodeException, IOException {
+    StringBuilder sb = new StringBuilder(256);
+    appendFields(sb, bc, x, y);
+    out.write(sb.toString().getBytes(StandardCharsets.US_ASCII));
+  }
+
+  /**
+   * Returns the fields of the barcode as ZPL, see writeFields()
+   */
+  static String toZpl(Barcode bc, int x, int y) throws BarcodeException {
+    StringBuilder sb = new StringBuilder(256);
+    appendFields(sb, bc, x, y);
+    return sb.toString();
+  }
+
+  private static void appendFields(StringBuilder sb, Barcode bc, int x, int y) throws BarcodeException {
+    if (bc == null) {
+      throw new BarcodeException("no barcode given to draw");
+    }
+    int mag = Math.max(1, (int) bc.getMagnification());
+    int module = bc.getBarWidth() * mag;
+    int height = bc.getBarHeight() * mag;
+    int left = x + bc.getPreflightWidth() * mag;
+    int top = y + (bc.getBarsTop() - 1) * mag;
+    String text = bc.isDrawtext() ? bc.toHumanText(bc.getCode()) : null;
+
+    String command = null;
+    String data = null;
+    boolean interpretation = false;
+    switch (bc.getCodeType()) {
+    case EAN13:
+    case EAN8:
+      data = eanData(bc.getCode(), bc.getCodeType() == BarcodeType.EAN13 ? 13 : 8);
+      command = bc.getCodeType() == BarcodeType.EAN13 ? "^BE" : "^B8";
+      // the printer places the digits like getCharPosArray()
+      interpretation = data != null && text != null && text.equals(bc.getCode()) && bc.getBaseline() >= 0;
+      break;
+    case CODE25INTER:
+      data = BarcodeInter25.keepNumbers(bc.getCode());
+      if (data.length() % 2 == 0) {
+        command = "^B2";
+      } else {
+        data = null;
+      }
+      break;
+    case CODE128:
+    case CODE128_A:
+    case CODE128_RAW:
+    case EAN128:
+      data = code128Data(bc);
+      command = "^BC";
+      break;
+    default:
+      break;
+    }
+
+    if (data != null) {
+      sb.append("^BY").append(module).append(",2.0,").append(height).append('\n');
+      sb.append("^FO").append(left).append(',').append(top);
+      sb.append(command).append("N,").append(height).append(interpretation ? ",Y,N" : ",N,N");
+      if (command.equals("^BC")) {
+        sb.append(",N,N"); // no check digit for the human text, no mode
+      } else if (command.equals("^B2")) {
+        sb.append(",N"); // the check digit is part of the data
+      }
+      sb.append("^FH_^FD").append(data).append("^FS\n");
+    } else {
+      appendBoxes(sb, bc, left, top, mag);
+    }
+
+    if (text != null && !interpretation) {
+      appendText(sb, bc, text, left, top, mag);
+    }
+  }
+
+  /**
+   * Returns the data for ^BE/^B8 (without check digit) or null if the code has
+   * not the right length or check digit
+   */
+  private static String eanData(String code, int len) {
+    if (code.length() != len) {
+      return null;
+    }
+    for (int i = 0; i < len; i++) {
+      if (code.charAt(i) < '0' || code.charAt(i) > '9') {
+        return null;
+      }
+    }
+    String digits = code.substring(0, len - 1);
+    if (BarcodeEAN.calculateEANParity(digits) != code.charAt(len - 1) - '0') {
+      return null;
+    }
+    return digits;
+  }
+
+  /**
+   * Converts the chars of the code 128 barcode to ^BC data with invocation codes,
+   * null if a char has no representation
+   */
+  static String code128Data(Barcode bc) {
+    boolean optimize = bc instanceof Barcode128 && ((Barcode128) bc).isOptimizeSubsets();
+    String code = bc.getCode();
+    int n = Barcode128.toCodewords(bc.getCodeType(), optimize, code, null, null, 0);
+    if (n == 0) {
+      return null;
+    }
+    byte[] chars = new byte[n];
+    Barcode128.toCodewords(bc.getCodeType(), optimize, code, chars, null, 0);
+
+    StringBuilder sb = new StringBuilder(n * 2);
+    int subset;
+    switch (chars[0]) {
+    case Barcode128.START_A:
+      sb.append(">9");
+      break;
+    case Barcode128.START_B:
+      sb.append(">:");
+      break;
+    case Barcode128.START_C:
+      sb.append(">;");
+      break;
+    default:
+      return null;
+    }
+    subset = chars[0];
+    for (int k = 1; k < n; k++) {
+      int c = chars[k];
+      if (c == Barcode128.FNC1) {
+        sb.append(">8");
+      } else if (c == Barcode128.CODE_AB_TO_C && subset != Barcode128.START_C) {
+        sb.append(">5");
+        subset = Barcode128.START_C;
+      } else if (c == Barcode128.CODE_AC_TO_B && subset != Barcode128.START_B) {
+        sb.append(">6");
+        subset = Barcode128.START_B;
+      } else if (c == Barcode128.CODE_BC_TO_A && subset != Barcode128.START_A) {
+        sb.append(">7");
+        subset = Barcode128.START_A;
+      } else if (subset == Barcode128.START_C && c < 100) {
+        sb.append((char) ('0' + c / 10)).append((char) ('0' + c % 10));
+      } else if (subset != Barcode128.START_C && c < 64 || subset == Barcode128.START_B && c < 95) {
+        appendDataChar(sb, (char) (c + ' '));
+      } else {
+        return null; // control chars, shift, FNC2-4
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Appends a printable ASCII char to ^BC data. '>' is an invocation code and
+   * '^', '~' and '_' are escaped for ^FH.
+   */
+  private static void appendDataChar(StringBuilder sb, char c) {
+    switch (c) {
+    case '>':
+      sb.append(">0");
+      break;
+    case '^':
+    case '~':
+    case '_':
+      appendHex(sb, c);
+      break;
+    default:
+      sb.append(c);
+      break;
+    }
+  }
+
+  /**
+   * Appends each bar as filled box
+   */
+  private static void appendBoxes(StringBuilder sb, Barcode bc, int left, int top, int mag)
+      throws BarcodeException {
+    byte[] bars = bc.getCachedBars();
+    if (bars == null) {
+      throw new BarcodeException("cant generate bars for barcode");
+    }
+    int[] guard = bc.getGuardBarsArray();
+    int height = bc.getBarHeight() * mag;
+    int guardHeight = height + bc.getGuardExtension() * mag;
+    int barwidth = bc.getBarWidth() * mag;
+    int bx = left;
+    int g = 0;
+    for (int k = 0; k < bars.length; ++k) {
+      int w = bars[k] * barwidth;
+      if ((k & 1) == 0 && w > 0) {
+        while (g < guard.length && guard[g] < k) {
+          g++;
+        }
+        int h = g < guard.length && guard[g] == k ? guardHeight : height;
+        sb.append("^FO").append(bx).append(',').append(top);
+        sb.append("^GB").append(w).append(',').append(h).append(',').append(w).append("^FS\n");
+      }
+      bx += w;
+    }
+  }
+
+  /**
+   * Appends the human readable text as field block with the alignment of the
+   * barcode
+   */
+  private static void appendText(StringBuilder sb, Barcode bc, String text, int left, int top, int mag)
+      throws BarcodeException {
+    byte[] bars = bc.getCachedBars();
+    if (bars == null) {
+      throw new BarcodeException("cant generate bars for barcode");
+    }
+    int width = bc.getBarsum(bars) * bc.getBarWidth() * mag;
+    int fontHeight = bc.getFontsize() * mag;
+    int baseline;
+    if (bc.getBaseline() < 0) { // above the barcode
+      baseline = top + bc.getBaseline() * mag;
+    } else { // below the barcode
+      baseline = top + (bc.getBarHeight() + bc.getBaseline()) * mag;
+    }
+    char justification;
+    switch (bc.getTextAlignment()) {
+    case Barcode.ALIGN_LEFT:
+      justification = 'L';
+      break;
+    case Barcode.ALIGN_RIGHT:
+      justification = 'R';
+      break;
+    default:
+      justification = 'C';
+      break;
+    }
+    sb.append("^FO").append(left).append(',').append(Math.max(0, baseline - fontHeight));
+    sb.append("^A0N,").append(fontHeight).append(',').append(fontHeight);
+    sb.append("^FB").append(width).append(",1,0,").append(justification);
+    sb.append("^FH_^FD");
+    for (int i = 0; i < text.length(); i += Character.charCount(text.codePointAt(i))) {
+      int c = text.codePointAt(i);
+      if (c < ' ' || c > '~' || c == '^' || c == '~' || c == '_' || c == '\\') {
+        appendHex(sb, c);
+      } else {
+        sb.append((char) c);
+      }
+    }
+    sb.append("^FS\n");
+  }
+
+  /**
+   * Appends the UTF-8 bytes of the char as _XX hex escapes for ^FH
+   */
+  private static void appendHex(StringBuilder sb, int codePoint) {
+    for (byte b : new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8)) {
+      sb.append('_').append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+    }
+  }
+}
@@ -0,0 +1,206 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.app;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.klg.lib.jbarcode.lib.Barcode128;
+import de.klg.lib.jbarcode.lib.BarcodeScanlineDecoder;
+import de.klg.lib.jbarcode.lib.BarcodeType;
+
+/**
+ * Test for the batch command line tool
+ *
+ * @author Boris Klug
+ */
+class JBarcodeBatchTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void testLines() throws IOException, InterruptedException {
+    JBarcodeBatch batch = new JBarcodeBatch();
+    batch.parseArgs(new String[] { "-o", dir.toString(), "-t", "EAN13", "-j", "2", "-q", "1", "--magnification",
+        "2" });
+    JBarcodeBatch.Summary summary = batch.run(new StringReader("4006381333931\n\n0123456789012\n"));
+    Assertions.assertEquals(2, summary.getRows());
+    Assertions.assertEquals(2, summary.getWritten());
+    Assertions.assertEquals(0, summary.getFailed());
+
+    BufferedImage image = ImageIO.read(dir.resolve("1_4006381333931.png").toFile());
+    BarcodeScanlineDecoder.Result result = new BarcodeScanlineDecoder().decode(image);
+    Assertions.assertEquals(BarcodeType.EAN13, result.getType());
+    Assertions.assertEquals("4006381333931", result.getText());
+    // {line} is the line number of the input, the blank line is counted
+    Assertions.assertTrue(Files.exists(dir.resolve("3_0123456789012.png")));
+  }
+
+  @Test
+  void testCsv() throws IOException, InterruptedException {
+    JBarcodeBatch batch = new JBarcodeBatch();
+    batch.parseArgs(new String[] { "-o", dir.toString(), "--csv", "-n", "{type}/{name}.{ext}", "--text", "false" });
+    String csv = "name,code,type,format,magnification\n" //
+        + "a,\"Hello, World\",,svg,\n" //
+        + "b,40170725,EAN8,zpl,\n" //
+        + "c,(01)04012345333336(10)ABC,GS1-128,png,3\n" //
+        + "d,12345670,ITF,,\n";
+    JBarcodeBatch.Summary summary = batch.run(new StringReader(csv));
+    Assertions.assertEquals(4, summary.getWritten(), summary.toString());
+
+    String svg = new String(Files.readAllBytes(dir.resolve("CODE128/a.svg")), StandardCharsets.UTF_8);
+    Assertions.assertTrue(svg.startsWith("<?xml") || svg.startsWith("<svg"), svg);
+    String zpl = new String(Files.readAllBytes(dir.resolve("EAN8/b.zpl")), StandardCharsets.US_ASCII);
+    Assertions.assertTrue(zpl.startsWith("^XA"), zpl);
+
+    BufferedImage image = ImageIO.read(dir.resolve("EAN128/c.png").toFile());
+    BarcodeScanlineDecoder.Result result = new BarcodeScanlineDecoder().decode(image);
+    Assertions.assertEquals("010401234533333610ABC", result.getText());
+    Assertions.assertTrue(Files.exists(dir.resolve("CODE25INTER/d.png")));
+  }
+
+  @Test
+  void testFailedRows() throws IOException, InterruptedException {
+    JBarcodeBatch batch = new JBarcodeBatch();
+    batch.parseArgs(new String[] { "-o", dir.toString(), "--csv", "--separator", ";" });
+    ByteArrayOutputStream errors = new ByteArrayOutputStream();
+    batch.setError(new PrintStream(errors, true, "UTF-8"));
+    JBarcodeBatch.Summary summary = batch.run(new StringReader("code;type\n4711;\n123;EAN13\nx;QR\n;\n"));
+    Assertions.assertEquals(4, summary.getRows());
+    Assertions.assertEquals(1, summary.getWritten());
+    Assertions.assertEquals(3, summary.getFailed());
+    String text = errors.toString("UTF-8");
+    // the header is line 1
+    Assertions.assertTrue(text.contains("line 4: Unknown barcode type 'QR'"), text);
+    Assertions.assertTrue(text.contains("line 5: No code"), text);
+    Assertions.assertTrue(Files.exists(dir.resolve("2_4711.png")));
+    Assertions.assertFalse(Files.exists(dir.resolve("3_123.png")));
+    // no temporary file is left of the failed row
+    Assertions.assertEquals(1, Files.list(dir).count());
+  }
+
+  @Test
+  void testSameFileName() throws IOException, InterruptedException {
+    StringBuilder codes = new StringBuilder();
+    for (int k = 0; k < 200; k++) {
+      codes.append("CODE-").append(k % 2 == 0 ? "A" : "LONGER-" + k).append('\n');
+    }
+    JBarcodeBatch batch = new JBarcodeBatch();
+    batch.parseArgs(new String[] { "-o", dir.toString(), "-n", "same.{ext}", "-j", "4" });
+    JBarcodeBatch.Summary summary = batch.run(new StringReader(codes.toString()));
+    Assertions.assertEquals(200, summary.getWritten());
+
+    // one complete file of one of the rows, not a mix of several
+    Assertions.assertEquals(1, Files.list(dir).count());
+    BufferedImage image = ImageIO.read(dir.resolve("same.png").toFile());
+    BarcodeScanlineDecoder.Result result = new BarcodeScanlineDecoder().decode(image);
+    Assertions.assertNotNull(result);
+    Assertions.assertTrue(result.getText().matches("CODE-(A|LONGER-\\d*[13579])"), result.getText());
+  }
+
+  @Test
+  void testManyRows() throws IOException, InterruptedException {
+    // the rows are generated while they are read, nothing holds all of them
+    int rows = 2000;
+    Reader in = new Reader() {
+      private int row;
+      private String line = "";
+      private int pos;
+
+      @Override
+      public int read(char[] cbuf, int off, int len) {
+        if (pos == line.length()) {
+          if (row == rows) {
+            return -1;
+          }
+          line = String.format("%012d%n", row++);
+          pos = 0;
+        }
+        int n = Math.min(len, line.length() - pos);
+        line.getChars(pos, pos + n, cbuf, off);
+        pos += n;
+        return n;
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    JBarcodeBatch batch = new JBarcodeBatch();
+    batch.parseArgs(new String[] { "-o", dir.toString(), "-f", "zpl", "-n", "{line}.{ext}", "-j", "3" });
+    JBarcodeBatch.Summary summary = batch.run(in);
+    Assertions.assertEquals(rows, summary.getWritten());
+    Assertions.assertEquals(rows, Files.list(dir).count());
+    Assertions.assertTrue(summary.getLatencyMillis(0.5) <= summary.getLatencyMillis(0.99));
+    Assertions.assertTrue(summary.getLatencyMillis(0.99) <= summary.getMaxLatencyMillis());
+    Assertions.assertTrue(summary.toString().startsWith("2000 rows, 2000 written, 0 failed"), summary.toString());
+  }
+
+  @Test
+  void testLatencies() {
+    for (long v : new long[] { 0, 1, 63, 64, 65, 100, 1000, 123456, 1L << 40 }) {
+      int bucket = JBarcodeBatch.Latencies.bucket(v);
+      long low = JBarcodeBatch.Latencies.value(bucket);
+      Assertions.assertTrue(low <= v && v - low <= v / 32, v + " " + low);
+      Assertions.assertEquals(bucket, JBarcodeBatch.Latencies.bucket(low));
+    }
+    JBarcodeBatch.Latencies latencies = new JBarcodeBatch.Latencies();
+    for (int k = 1; k <= 100; ++k) {
+      latencies.add(k * 10);
+    }
+    Assertions.assertEquals(500, latencies.percentile(0.5), 500 / 32);
+    Assertions.assertEquals(990, latencies.percentile(0.99), 990 / 32);
+    Assertions.assertEquals(1000, latencies.percentile(1.0), 1000 / 32);
+  }
+
+  @Test
+  void testHelpers() {
+    Assertions.assertEquals(Arrays.asList("a", "b,c", "d\"e", ""), JBarcodeBatch.splitCsv("a,\"b,c\",\"d\"\"e\",", ','));
+    Assertions.assertEquals("0104012345333336" + "15031231" + "10ABC" + Barcode128.FNC1_CHAR + "21X",
+        JBarcodeBatch.ean128Text("(01)04012345333336(10)ABC(21)X(15)031231"));
+    Assertions.assertEquals(BarcodeType.CODE25INTER, JBarcodeBatch.toType("itf"));
+
+    Map<String, String> values = new HashMap<>();
+    values.put("code", "A/B\u00f1.c");
+    values.put("line", "7");
+    Assertions.assertEquals("out_7_A_B_.c.png", new JBarcodeBatch.Template("out_{line}_{code}.png").expand(values));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new JBarcodeBatch.Template("{nope}").expand(values));
+
+    Assertions.assertNull(new JBarcodeBatch().parseArgs(new String[] { "--help" }));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new JBarcodeBatch().parseArgs(new String[] { "--colour", "red" }));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new JBarcodeBatch().parseArgs(new String[] { "-f", "gif" }));
+    // the options are checked before any row is read
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new JBarcodeBatch().parseArgs(new String[] { "--magnification", "foo" }));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new JBarcodeBatch().parseArgs(new String[] { "--barheight", "0" }));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new JBarcodeBatch().parseArgs(new String[] { "--text", "maybe" }));
+    Assertions.assertEquals("-",
+        new JBarcodeBatch().parseArgs(new String[] { "--guardbars", "no", "--fontsize", "9" }));
+  }
+}
@@ -0,0 +1,108 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the decoding of code 128 bars
+ *
+ * @author Boris Klug
+ */
+class Barcode128DecoderTest {
+
+  @Test
+  void testRoundTrip() throws BarcodeException {
+    String[] codes = { "01040123453333361503123110123456", "Hello World 4711", "AB\t12\r34567x", "12345A6", "a",
+        "\n", "1", "", "10ABC" + Barcode128.FNC1_CHAR + "21X", "abc\u0001def" };
+    Barcode128 bc = new Barcode128();
+    for (boolean optimize : new boolean[] { false, true }) {
+      bc.setOptimizeSubsets(optimize);
+      for (BarcodeType type : new BarcodeType[] { BarcodeType.CODE128, BarcodeType.EAN128 }) {
+        bc.setCodeType(type);
+        for (String code : codes) {
+          bc.setCode(code);
+          StringBuilder sb = new StringBuilder();
+          byte[] bars = bc.getBars();
+          Assertions.assertEquals(type, Barcode128Decoder.decode(bars, 0, bars.length, sb), code);
+          Assertions.assertEquals(code, sb.toString(), type + " " + code);
+        }
+      }
+    }
+
+    bc.setCodeType(BarcodeType.CODE128_A);
+    bc.setCode("ABC\t123");
+    Assertions.assertEquals("ABC\t123", Barcode128Decoder.decode(bc.getBars()));
+  }
+
+  @Test
+  void testRandomCodes() throws BarcodeException {
+    Random rnd = new Random(4711);
+    Barcode128 bc = new Barcode128();
+    byte[] buffer = new byte[Barcode128.getMaxBarsLength(40) + 10];
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      char[] chars = new char[1 + rnd.nextInt(40)];
+      for (int k = 0; k < chars.length; k++) {
+        chars[k] = (char) (rnd.nextBoolean() ? '0' + rnd.nextInt(10) : rnd.nextInt(128));
+      }
+      String code = new String(chars);
+      bc.setOptimizeSubsets(rnd.nextBoolean());
+      int n = bc.encodeInto(code, buffer, 5);
+      sb.setLength(0);
+      Barcode128Decoder.decode(buffer, 5, n, sb);
+      Assertions.assertEquals(code, sb.toString());
+    }
+  }
+
+  @Test
+  void testCodewords() throws BarcodeException {
+    Barcode128 bc = new Barcode128();
+    bc.setCodeType(BarcodeType.EAN128);
+    bc.setCode("0104012345333336");
+    byte[] bars = bc.getBars();
+    int[] codewords = new int[(bars.length - 7) / 6 - 1];
+    Assertions.assertEquals(codewords.length, Barcode128Decoder.decodeCodewords(bars, 0, bars.length, codewords));
+    Assertions.assertArrayEquals(new int[] { Barcode128.START_C, Barcode128.FNC1, 1, 4, 1, 23, 45, 33, 33, 36 },
+        codewords);
+  }
+
+  @Test
+  void testErrors() {
+    Barcode128 bc = new Barcode128();
+    bc.setCode("Hello 4711");
+    byte[] bars = bc.getBars();
+
+    Assertions.assertThrows(BarcodeException.class, () -> Barcode128Decoder.decode(new byte[] { 1, 1, 1 }));
+    Assertions.assertThrows(BarcodeException.class,
+        () -> Barcode128Decoder.decode(bars, 0, bars.length - 6, new StringBuilder()));
+    // the range must be inside the array
+    Assertions.assertThrows(BarcodeException.class,
+        () -> Barcode128Decoder.decode(bars, 6, bars.length, new StringBuilder()));
+    Assertions.assertThrows(BarcodeException.class,
+        () -> Barcode128Decoder.decode(bars, -6, bars.length, new StringBuilder()));
+    Assertions.assertThrows(BarcodeException.class,
+        () -> Barcode128Decoder.decodeCodewords(bars, 1, bars.length, new int[bars.length]));
+
+    // swap two bars of a char: another char or no char, but a wrong checksum
+    byte[] swapped = bars.clone();
+    swapped[13] = bars[14];
+    swapped[14] = bars[13];
+    Assertions.assertThrows(BarcodeException.class, () -> Barcode128Decoder.decode(swapped));
+
+    byte[] wide = bars.clone();
+    wide[8] = 5;
+    Assertions.assertThrows(BarcodeException.class, () -> Barcode128Decoder.decode(wide));
+
+    byte[] stop = bars.clone();
+    stop[stop.length - 1] = 1;
+    Assertions.assertThrows(BarcodeException.class, () -> Barcode128Decoder.decode(stop));
+  }
+}
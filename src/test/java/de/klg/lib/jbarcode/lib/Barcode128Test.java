@@ -6,6 +6,10 @@
  * ---------------------------------------------------------------------------- */
 package de.klg.lib.jbarcode.lib;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -29,4 +33,267 @@ class Barcode128Test {
     byte[] actual = bc128.getBars();
     Assertions.assertArrayEquals(expected, actual);
   }
+
+  @Test
+  void testGetBarsMatchesRawText() {
+    String[] codes = { "01040123453333361503123110123456", "Hello World 4711", "AB\t12\r34567x", "12345A6", "a",
+        "\n", "1", "" };
+    BarcodeType[] types = { BarcodeType.CODE128, BarcodeType.EAN128 };
+    Barcode128 bc128 = new Barcode128();
+    for (BarcodeType type : types) {
+      bc128.setCodeType(type);
+      for (String code : codes) {
+        bc128.setCode(code);
+        Assertions.assertArrayEquals(barsFromRawText(bc128.toRawText(code)), bc128.getBars(), type + " " + code);
+      }
+    }
+
+    bc128.setCodeType(BarcodeType.CODE128_A);
+    bc128.setCode("ABC\t123");
+    Assertions.assertArrayEquals(barsFromRawText(bc128.toRawText("ABC\t123")), bc128.getBars());
+  }
+
+  @Test
+  void testEncodeInto() {
+    Barcode128 bc128 = new Barcode128();
+    String code = "SKU-4711\t0815";
+    bc128.setCode(code);
+    byte[] expected = bc128.getBars();
+
+    byte[] out = new byte[Barcode128.getMaxBarsLength(code.length()) + 3];
+    int n = bc128.encodeInto(code, out, 3);
+    Assertions.assertEquals(expected.length, n);
+    Assertions.assertEquals(n, bc128.getBarsLength(code));
+    Assertions.assertArrayEquals(expected, Arrays.copyOfRange(out, 3, 3 + n));
+
+    ByteBuffer buf = ByteBuffer.allocateDirect(n + 5);
+    buf.position(5);
+    Assertions.assertEquals(n, bc128.encodeInto(code, buf));
+    Assertions.assertEquals(n + 5, buf.position());
+    for (int k = 0; k < n; k++) {
+      Assertions.assertEquals(expected[k], buf.get(5 + k));
+    }
+
+    Assertions.assertThrows(IndexOutOfBoundsException.class, () -> bc128.encodeInto(code, new byte[n - 1], 0));
+  }
+
+  @Test
+  void testEncodeIntoHeapBuffer() {
+    Barcode128 bc128 = new Barcode128();
+    String code = "SKU-4711\t0815";
+    bc128.setCode(code);
+    byte[] expected = bc128.getBars();
+    int n = expected.length;
+
+    // a sub range of an array
+    byte[] array = new byte[n + 20];
+    ByteBuffer buf = ByteBuffer.wrap(array, 7, n + 3);
+    Assertions.assertEquals(n, bc128.encodeInto(code, buf));
+    Assertions.assertEquals(7 + n, buf.position());
+    Assertions.assertArrayEquals(expected, Arrays.copyOfRange(array, 7, 7 + n));
+
+    // a slice starts at its own index 0
+    Arrays.fill(array, (byte) 0);
+    buf.position(4);
+    ByteBuffer slice = buf.slice();
+    slice.position(2);
+    Assertions.assertEquals(n, bc128.encodeInto(code, slice));
+    Assertions.assertEquals(2 + n, slice.position());
+    Assertions.assertArrayEquals(expected, Arrays.copyOfRange(array, 6, 6 + n));
+
+    // nothing is written after the limit
+    Arrays.fill(array, (byte) -1);
+    ByteBuffer limited = ByteBuffer.wrap(array);
+    limited.position(2).limit(n + 1);
+    Assertions.assertThrows(IndexOutOfBoundsException.class, () -> bc128.encodeInto(code, limited));
+    Assertions.assertEquals(2, limited.position());
+    for (byte b : array) {
+      Assertions.assertEquals(-1, b);
+    }
+    ByteBuffer direct = ByteBuffer.allocateDirect(n + 5);
+    direct.limit(n - 1);
+    Assertions.assertThrows(IndexOutOfBoundsException.class, () -> bc128.encodeInto(code, direct));
+    for (int k = 0; k < direct.limit(); k++) {
+      Assertions.assertEquals(0, direct.get(k));
+    }
+  }
+
+  @Test
+  void testOptimizeSubsets() {
+    Barcode128 bc128 = new Barcode128();
+    bc128.setOptimizeSubsets(true);
+    Assertions.assertEquals("" + Barcode128.START_B + (char) 65 + Barcode128.SHIFT + (char) 73 + (char) 66,
+        bc128.toRawText("a\tb"));
+    bc128.setOptimizeSubsets(false);
+    Assertions.assertEquals(6, bc128.toRawText("a\tb").length());
+
+    String alphabet = "0123456789012345ABCxyz\t\r-" + Barcode128.FNC1_CHAR;
+    Random rnd = new Random(4711);
+    Barcode128 greedy = new Barcode128();
+    for (BarcodeType type : new BarcodeType[] { BarcodeType.CODE128, BarcodeType.EAN128 }) {
+      bc128.setCodeType(type);
+      greedy.setCodeType(type);
+      bc128.setOptimizeSubsets(true);
+      for (int k = 0; k < 2000; k++) {
+        char[] c = new char[1 + rnd.nextInt(20)];
+        for (int j = 0; j < c.length; j++) {
+          c[j] = alphabet.charAt(rnd.nextInt(alphabet.length()));
+        }
+        String code = new String(c);
+        String raw = bc128.toRawText(code);
+        Assertions.assertEquals(code, decodeRawText(raw, type == BarcodeType.EAN128), code);
+        Assertions.assertTrue(raw.length() <= greedy.toRawText(code).length(), code);
+      }
+    }
+  }
+
+  @Test
+  void testOptimizeSubsetsMinimal() {
+    Barcode128 bc128 = new Barcode128();
+    bc128.setOptimizeSubsets(true);
+    // start, chars and subset changes
+    Assertions.assertEquals(1 + 5, bc128.toRawText("0123456789").length());
+    Assertions.assertEquals(1 + 1 + 1 + 2, bc128.toRawText("12345").length());
+    Assertions.assertEquals(1 + 2 + 1 + 3, bc128.toRawText("AB123456").length());
+    Assertions.assertEquals(1 + 2 + 1 + 2, bc128.toRawText("\t\ra\n").length());
+    Assertions.assertEquals(1 + 2 + 1 + 2 + 1 + 2, bc128.toRawText("ab1234\t\r").length());
+
+    // the same text again and a longer one, the tables of the thread are reused
+    Assertions.assertEquals(6, bc128.toRawText("0123456789").length());
+    Assertions.assertEquals(1 + 50, bc128.toRawText(new String(new char[100]).replace('\0', '7')).length());
+    Assertions.assertEquals(1, bc128.toRawText("").length());
+
+    String alphabet = "0123456789ABCxyz\t\r" + Barcode128.FNC1_CHAR;
+    Random rnd = new Random(815);
+    for (BarcodeType type : new BarcodeType[] { BarcodeType.CODE128, BarcodeType.EAN128 }) {
+      bc128.setCodeType(type);
+      for (int k = 0; k < 1000; k++) {
+        char[] c = new char[1 + rnd.nextInt(9)];
+        for (int j = 0; j < c.length; j++) {
+          c[j] = alphabet.charAt(rnd.nextInt(alphabet.length()));
+        }
+        String code = new String(c);
+        int expected = minimalLength(code, 0, -1) + (type == BarcodeType.EAN128 ? 1 : 0);
+        Assertions.assertEquals(expected, bc128.toRawText(code).length(), code);
+      }
+    }
+  }
+
+  /**
+   * Searches all encodings of the text from index i in subset set (-1 before
+   * the start char) for the minimal number of chars
+   */
+  private static int minimalLength(String text, int i, int set) {
+    if (set < 0) {
+      int best = Integer.MAX_VALUE;
+      for (int s = 0; s < 3; s++) {
+        best = Math.min(best, 1 + minimalLength(text, i, s));
+      }
+      return best;
+    }
+    if (i == text.length()) {
+      return 0;
+    }
+    int best = Integer.MAX_VALUE / 2;
+    char c = text.charAt(i);
+    if (set == 2) {
+      if (c == Barcode128.FNC1_CHAR) {
+        best = 1 + minimalLength(text, i + 1, 2);
+      } else if (i + 1 < text.length() && Character.isDigit(c) && Character.isDigit(text.charAt(i + 1))) {
+        best = 1 + minimalLength(text, i + 2, 2);
+      }
+    } else {
+      boolean inA = c < 96 || c == Barcode128.FNC1_CHAR;
+      boolean inB = c >= ' ' || c == Barcode128.FNC1_CHAR;
+      // directly or with a SHIFT to the other subset
+      best = (set == 0 ? inA : inB) ? 1 : 2;
+      best += minimalLength(text, i + 1, set);
+    }
+    for (int s = 0; s < 3; s++) {
+      // a subset change is followed by a char of the new subset
+      if (s != set) {
+        int change = 1 + minimalEncodedChar(text, i, s);
+        best = Math.min(best, change);
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Like minimalLength(), but the next char must be encoded in set without a
+   * change
+   */
+  private static int minimalEncodedChar(String text, int i, int set) {
+    char c = text.charAt(i);
+    if (set == 2) {
+      if (c == Barcode128.FNC1_CHAR) {
+        return 1 + minimalLength(text, i + 1, 2);
+      }
+      if (i + 1 < text.length() && Character.isDigit(c) && Character.isDigit(text.charAt(i + 1))) {
+        return 1 + minimalLength(text, i + 2, 2);
+      }
+      return Integer.MAX_VALUE / 2;
+    }
+    boolean inA = c < 96 || c == Barcode128.FNC1_CHAR;
+    boolean inB = c >= ' ' || c == Barcode128.FNC1_CHAR;
+    return ((set == 0 ? inA : inB) ? 1 : 2) + minimalLength(text, i + 1, set);
+  }
+
+  /**
+   * Converts raw code 128 text back to the text, FNC1 (except the leading one in
+   * EAN128) is returned as FNC1_CHAR
+   */
+  private static String decodeRawText(String raw, boolean ean128) {
+    StringBuilder sb = new StringBuilder();
+    int set = raw.charAt(0);
+    int k = ean128 ? 2 : 1;
+    boolean shift = false;
+    for (; k < raw.length(); k++) {
+      int c = raw.charAt(k);
+      int current = shift ? (set == Barcode128.START_A ? Barcode128.START_B : Barcode128.START_A) : set;
+      shift = false;
+      if (c == Barcode128.FNC1) {
+        sb.append(Barcode128.FNC1_CHAR);
+      } else if (current == Barcode128.START_C) {
+        if (c == Barcode128.CODE_AC_TO_B) {
+          set = Barcode128.START_B;
+        } else if (c == Barcode128.CODE_BC_TO_A) {
+          set = Barcode128.START_A;
+        } else {
+          sb.append((char) ('0' + c / 10)).append((char) ('0' + c % 10));
+        }
+      } else if (c == Barcode128.SHIFT) {
+        shift = true;
+      } else if (c == Barcode128.CODE_AB_TO_C) {
+        set = Barcode128.START_C;
+      } else if (c == Barcode128.CODE_AC_TO_B && current == Barcode128.START_A) {
+        set = Barcode128.START_B;
+      } else if (c == Barcode128.CODE_BC_TO_A && current == Barcode128.START_B) {
+        set = Barcode128.START_A;
+      } else if (current == Barcode128.START_A && c >= 64) {
+        sb.append((char) (c - 64));
+      } else {
+        sb.append((char) (c + ' '));
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Calculates the bars from the raw text the way getBars() did before the
+   * encoding was done in one pass.
+   */
+  private static byte[] barsFromRawText(String text) {
+    int chk = text.charAt(0);
+    for (int k = 1; k < text.length(); ++k) {
+      chk += k * text.charAt(k);
+    }
+    text += (char) (chk % 103);
+    byte[] bars = new byte[text.length() * 6 + 7];
+    for (int k = 0; k < text.length(); ++k) {
+      System.arraycopy(Barcode128.BARS, text.charAt(k) * 6, bars, k * 6, 6);
+    }
+    System.arraycopy(Barcode128.BARS, Barcode128.STOP_OFFSET, bars, text.length() * 6, 7);
+    return bars;
+  }
 }
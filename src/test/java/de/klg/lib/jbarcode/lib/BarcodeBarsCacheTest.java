@@ -0,0 +1,124 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the bars cache
+ *
+ * @author Boris Klug
+ */
+class BarcodeBarsCacheTest {
+
+  private final BarcodeSpec spec = BarcodeSpec.builder(BarcodeType.CODE128).build();
+
+  @Test
+  void testHitsAndMisses() {
+    BarcodeBarsCache cache = new BarcodeBarsCache(10);
+    byte[] bars = cache.getBars(spec, "4711");
+    Assertions.assertArrayEquals(BarcodeEncoder.forType(BarcodeType.CODE128).getBars(spec, "4711"), bars);
+    Assertions.assertSame(bars, cache.getBars(spec, "4711"));
+    Assertions.assertEquals(1, cache.getHitCount());
+    Assertions.assertEquals(1, cache.getMissCount());
+
+    // the type and the subset optimization are part of the key
+    Barcode bc = BarcodeSpec.builder(BarcodeType.EAN128).build().newBarcode("4711");
+    Assertions.assertNotSame(bars, cache.getBars(bc));
+    Assertions.assertNotSame(bars, cache.getBars(spec.toBuilder().optimizeSubsets(true).build(), "4711"));
+    Assertions.assertEquals(3, cache.getMissCount());
+    Assertions.assertEquals(3, cache.size());
+
+    cache.clear();
+    Assertions.assertEquals(0, cache.size());
+    Assertions.assertNotSame(bars, cache.getBars(spec, "4711"));
+    Assertions.assertEquals(1, cache.getHitCount());
+    Assertions.assertEquals(4, cache.getMissCount());
+    Assertions.assertEquals(0, cache.getEvictionCount());
+  }
+
+  @Test
+  void testLruEviction() {
+    BarcodeBarsCache cache = new BarcodeBarsCache(3, 1);
+    byte[] a = cache.getBars(spec, "A");
+    byte[] b = cache.getBars(spec, "B");
+    byte[] c = cache.getBars(spec, "C");
+    // A is used again, so B is the least recently used
+    Assertions.assertSame(a, cache.getBars(spec, "A"));
+    cache.getBars(spec, "D");
+    Assertions.assertEquals(1, cache.getEvictionCount());
+    Assertions.assertEquals(3, cache.size());
+
+    Assertions.assertSame(a, cache.getBars(spec, "A"));
+    Assertions.assertSame(c, cache.getBars(spec, "C"));
+    Assertions.assertNotSame(b, cache.getBars(spec, "B"));
+    // B evicted D, the least recently used after A and C were read
+    Assertions.assertEquals(2, cache.getEvictionCount());
+    Assertions.assertEquals(5, cache.getMissCount());
+    Assertions.assertEquals(3, cache.getHitCount());
+  }
+
+  @Test
+  void testSegments() {
+    BarcodeBarsCache cache = new BarcodeBarsCache(5, 16);
+    for (int k = 0; k < 100; k++) {
+      cache.getBars(spec, "code" + k);
+    }
+    Assertions.assertTrue(cache.size() <= 5, cache.toString());
+    Assertions.assertEquals(100 - cache.size(), cache.getEvictionCount());
+    Assertions.assertEquals(5, cache.getMaxEntries());
+  }
+
+  @Test
+  void testIllegalArguments() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new BarcodeBarsCache(0));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new BarcodeBarsCache(10, 0));
+    BarcodeBarsCache cache = new BarcodeBarsCache(10);
+    Assertions.assertThrows(IllegalArgumentException.class, () -> cache.getBars(spec, null));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> cache.getBars(spec.newBarcode(null)));
+  }
+
+  @Test
+  void testConcurrentAccess() throws Exception {
+    BarcodeBarsCache cache = new BarcodeBarsCache(32, 4);
+    BarcodeEncoder encoder = BarcodeEncoder.forType(BarcodeType.CODE128);
+    int threads = 8;
+    int lookups = 5000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        int seed = t;
+        futures.add(executor.submit(() -> {
+          for (int k = 0; k < lookups; k++) {
+            // 64 codes for 32 entries, so there are hits and evictions
+            String code = "SKU" + (k * 7 + seed) % 64;
+            Assertions.assertArrayEquals(encoder.getBars(spec, code), cache.getBars(spec, code), code);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    Assertions.assertEquals(threads * lookups, cache.getHitCount() + cache.getMissCount());
+    Assertions.assertTrue(cache.getHitCount() > 0, cache.toString());
+    // two threads missing the same code both put it, the second put replaces
+    Assertions.assertTrue(cache.getEvictionCount() > 0, cache.toString());
+    Assertions.assertTrue(cache.getEvictionCount() <= cache.getMissCount() - cache.size(), cache.toString());
+    Assertions.assertTrue(cache.size() <= 32, cache.toString());
+  }
+}
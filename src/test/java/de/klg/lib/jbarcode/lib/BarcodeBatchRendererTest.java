@@ -0,0 +1,81 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the parallel batch renderer
+ *
+ * @author Boris Klug
+ */
+class BarcodeBatchRendererTest {
+
+  static {
+    System.setProperty("java.awt.headless", "true");
+  }
+
+  @Test
+  void testRender() throws Exception {
+    BarcodeSpec ean = BarcodeSpec.builder(BarcodeType.EAN13).drawtext(false).build();
+    BarcodeSpec code128 = BarcodeSpec.builder(BarcodeType.CODE128).drawtext(false).build();
+    List<BarcodeBatchRenderer.Job> jobs = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      if (i % 10 == 3) {
+        jobs.add(new BarcodeBatchRenderer.Job(ean, "123")); // wrong length
+      } else {
+        jobs.add(new BarcodeBatchRenderer.Job(i % 2 == 0 ? ean : code128, "400151300062" + (i % 10)));
+      }
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (boolean ordered : new boolean[] { true, false }) {
+        BarcodeBatchRenderer renderer = new BarcodeBatchRenderer(pool, 3);
+        renderer.setOrdered(ordered);
+        List<Integer> indexes = new ArrayList<>();
+        int failed = renderer.render(jobs.stream(), new BarcodeBatchRenderer.Sink() {
+          @Override
+          public void rendered(int index, BarcodeBatchRenderer.Job job, BufferedImage image) {
+            indexes.add(index);
+            try {
+              BufferedImage expected = BarcodeRenderer.getBarcodeBufimage(job.getSpec().newBarcode(job.getCode()));
+              Assertions.assertEquals(expected.getWidth(), image.getWidth());
+              Assertions.assertEquals(expected.getRGB(12, 5), image.getRGB(12, 5));
+            } catch (BarcodeException ex) {
+              Assertions.fail(ex);
+            }
+          }
+
+          @Override
+          public void failed(int index, BarcodeBatchRenderer.Job job, Exception ex) {
+            indexes.add(index);
+            Assertions.assertEquals(3, index % 10);
+            Assertions.assertTrue(ex instanceof BarcodeException);
+          }
+        });
+        Assertions.assertEquals(10, failed);
+        Assertions.assertEquals(100, indexes.size());
+        if (ordered) {
+          for (int i = 0; i < 100; i++) {
+            Assertions.assertEquals(i, indexes.get(i));
+          }
+        } else {
+          Assertions.assertEquals(100, indexes.stream().distinct().count());
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the builder of EAN128 texts
+ *
+ * @author Boris Klug
+ */
+class BarcodeEAN128BuilderTest {
+
+  private static final char FNC1 = Barcode128.FNC1_CHAR;
+
+  @Test
+  void testOrderAndSeparators() {
+    BarcodeEAN128Builder b = new BarcodeEAN128Builder();
+    b.add("21", "SN123").add("10", "ABC").add("01", "04012345333336").add("3103", "000750").add("15", "031231");
+    Assertions.assertEquals("0104012345333336150312313103000750" + "10ABC" + FNC1 + "21SN123", b.toText());
+    Assertions.assertEquals("(01)04012345333336(15)031231(3103)000750(10)ABC(21)SN123", b.toHumanText());
+
+    // 422 has a fixed length in the table but not one predefined by GS1
+    Assertions.assertFalse(BarcodeEAN128Builder.isPredefinedLength("422"));
+    Assertions.assertTrue(BarcodeEAN128Builder.isPredefinedLength("410"));
+    Assertions.assertFalse(BarcodeEAN128Builder.isPredefinedLength("10"));
+    b.remove("21").add("422", "276").add("30", "12");
+    Assertions.assertEquals("0104012345333336150312313103000750" + "3012" + FNC1 + "422276" + FNC1 + "10ABC",
+        b.toText());
+  }
+
+  @Test
+  void testValidation() {
+    BarcodeEAN128Builder b = new BarcodeEAN128Builder();
+    Assertions.assertThrows(IllegalArgumentException.class, () -> b.add("14", "1"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> b.add("01", "04012345333335"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> b.add("01", "0401234533333"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> b.add("10", "A" + FNC1 + "B"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> b.add("10", "123456789012345678901"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> b.add("30", "12A"));
+    // a value longer than the fixed length is not parsed as further fields
+    Assertions.assertThrows(IllegalArgumentException.class, () -> b.add("01", "0401234533333610ABC"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> b.add("15", "03123110ABC"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> b.add("3103", "00075010L1"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> b.add("10", ""));
+    Assertions.assertThrows(IllegalArgumentException.class, b::getBars);
+    Assertions.assertEquals(0, b.size());
+
+    Map<String, String> fields = new LinkedHashMap<>();
+    fields.put("10", "L1");
+    fields.put("00", "340123450000000017");
+    Assertions.assertEquals("00340123450000000017" + "10L1", new BarcodeEAN128Builder(fields).toText());
+
+    b.add("10", "ABC").add("01", "04012345333336").add("15", "031231");
+    Assertions.assertEquals("01040123453333361503123110ABC", b.toText());
+  }
+
+  @Test
+  void testBars() throws BarcodeException {
+    BarcodeEAN128Builder b = new BarcodeEAN128Builder();
+    b.add("10", "ABC").add("01", "04012345333336").add("15", "031231");
+
+    BarcodeSpec spec = BarcodeSpec.builder(BarcodeType.EAN128).build();
+    Barcode bc = b.newBarcode(spec);
+    Assertions.assertArrayEquals(bc.getBars(), b.getBars());
+    Assertions.assertEquals(bc.getModules(), b.getModules());
+    Assertions.assertEquals("(01)04012345333336(15)031231(10)ABC", bc.toHumanText(bc.getCode()));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> b.newBarcode(BarcodeSpec.builder(BarcodeType.CODE128).build()));
+
+    // shorter than the fields in the given order
+    Barcode given = spec.newBarcode("10ABC" + FNC1 + "0104012345333336" + "15031231");
+    Assertions.assertTrue(bc.getBarsum(b.getBars()) < given.getBarsum(given.getBars()));
+  }
+}
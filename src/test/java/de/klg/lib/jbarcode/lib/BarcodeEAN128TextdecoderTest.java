@@ -0,0 +1,103 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the conversion of EAN128 texts to human readable text
+ *
+ * @author Boris Klug
+ */
+class BarcodeEAN128TextdecoderTest {
+
+  private static final char FNC1 = Barcode128.FNC1_CHAR;
+
+  @Test
+  void testFixedAndVariableFields() {
+    Assertions.assertEquals("(01)04012345333336(15)031231(10)123456",
+        BarcodeEAN128Textdecoder.toHumanText("01040123453333361503123110123456"));
+    Assertions.assertEquals("(01)04012345333336(10)123456(15)031231",
+        BarcodeEAN128Textdecoder.toHumanText("010401234533333610123456" + FNC1 + "15031231"));
+    Assertions.assertEquals("(10)ABC", BarcodeEAN128Textdecoder.toHumanText("10ABC"));
+    Assertions.assertEquals("(10)ABC(21)X1", BarcodeEAN128Textdecoder.toHumanText("10ABC" + FNC1 + "21X1" + FNC1));
+    // a FNC1 after a fixed field is skipped
+    Assertions.assertEquals("(01)04012345333336(10)1",
+        BarcodeEAN128Textdecoder.toHumanText("0104012345333336" + FNC1 + "101"));
+  }
+
+  @Test
+  void testLongIdentifiers() {
+    Assertions.assertEquals("(3103)000750(10)L1", BarcodeEAN128Textdecoder.toHumanText("310300075010L1"));
+    Assertions.assertEquals("(240)XY(8005)000123", BarcodeEAN128Textdecoder.toHumanText("240XY" + FNC1 + "8005000123"));
+    Assertions.assertEquals("(7034)DE1", BarcodeEAN128Textdecoder.toHumanText("7034DE1"));
+    Assertions.assertEquals("Zulassungsnummer des Verarbeitungsbetriebs",
+        BarcodeEAN128Textdecoder.getField("7039").getFieldinfo());
+    Assertions.assertEquals(6, BarcodeEAN128Textdecoder.getField("3302").getContentlen());
+    Assertions.assertNull(BarcodeEAN128Textdecoder.getField("7030-7039"));
+    Assertions.assertNull(BarcodeEAN128Textdecoder.getField("0"));
+    Assertions.assertNull(BarcodeEAN128Textdecoder.getField("010"));
+  }
+
+  @Test
+  void testErrors() {
+    Assertions.assertNull(BarcodeEAN128Textdecoder.toHumanText("0104012345")); // too short
+    Assertions.assertNull(BarcodeEAN128Textdecoder.toHumanText("14ABC")); // unknown AI
+    Assertions.assertNull(BarcodeEAN128Textdecoder.toHumanText("1")); // no AI
+    Assertions.assertEquals("<cant parse text>", Barcode128.humanText(BarcodeType.EAN128, "14ABC"));
+    Assertions.assertNull(BarcodeEAN128Textdecoder.toHumanText(""));
+  }
+
+  @Test
+  void testHumanTextDoesNotCheckContent() {
+    // a label with a wrong check digit or char still shows its fields
+    Assertions.assertEquals("(01)04012345333335", BarcodeEAN128Textdecoder.toHumanText("0104012345333335"));
+    Assertions.assertEquals("(15)0312A1", BarcodeEAN128Textdecoder.toHumanText("150312A1"));
+    Assertions.assertEquals("(10)AB#", Barcode128.humanText(BarcodeType.EAN128, "10AB#"));
+    Assertions.assertEquals(BarcodeEAN128Textdecoder.WRONG_CHECK_DIGIT,
+        BarcodeEAN128Textdecoder.validate("0104012345333335"));
+    Assertions.assertFalse(BarcodeEAN128Textdecoder.isTextOK("150312A1"));
+  }
+
+  @Test
+  void testValidate() {
+    String[] texts = { "01040123453333361503123110123456", null, "", String.valueOf(FNC1), "14ABC",
+        "0104012345", "10" + FNC1 + "21A", "10123456789012345678901", "150312A1", "10AB\u00e4", "10AB#",
+        "0104012345333335", "00340123450000000017", "4140401234500005", "4140401234500007", "1503123110A-1/B.2" };
+    int[] expected = { BarcodeEAN128Textdecoder.VALID, BarcodeEAN128Textdecoder.EMPTY,
+        BarcodeEAN128Textdecoder.EMPTY, BarcodeEAN128Textdecoder.EMPTY, BarcodeEAN128Textdecoder.UNKNOWN_AI,
+        BarcodeEAN128Textdecoder.WRONG_LENGTH, BarcodeEAN128Textdecoder.WRONG_LENGTH,
+        BarcodeEAN128Textdecoder.WRONG_LENGTH, BarcodeEAN128Textdecoder.NOT_NUMERIC,
+        BarcodeEAN128Textdecoder.ILLEGAL_CHAR, BarcodeEAN128Textdecoder.ILLEGAL_CHAR,
+        BarcodeEAN128Textdecoder.WRONG_CHECK_DIGIT, BarcodeEAN128Textdecoder.VALID, BarcodeEAN128Textdecoder.VALID,
+        BarcodeEAN128Textdecoder.WRONG_CHECK_DIGIT, BarcodeEAN128Textdecoder.VALID };
+    for (int k = 0; k < texts.length; k++) {
+      Assertions.assertEquals(expected[k], BarcodeEAN128Textdecoder.validate(texts[k]), String.valueOf(texts[k]));
+    }
+    Assertions.assertArrayEquals(expected, BarcodeEAN128Textdecoder.validate(texts));
+
+    int[] status = new int[texts.length + 1];
+    Assertions.assertEquals(12, BarcodeEAN128Textdecoder.validate(texts, status));
+    Assertions.assertTrue(BarcodeEAN128Textdecoder.isTextOK("0104012345333336"));
+    Assertions.assertFalse(BarcodeEAN128Textdecoder.isTextOK("0104012345333337"));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> BarcodeEAN128Textdecoder.validate(texts, new int[1]));
+  }
+
+  @Test
+  void testAppendReusesBuilder() {
+    StringBuilder sb = new StringBuilder();
+    Assertions.assertTrue(BarcodeEAN128Textdecoder.appendHumanText("1503123110123456", sb));
+    sb.setLength(0);
+    Assertions.assertTrue(BarcodeEAN128Textdecoder.appendHumanText("0104012345333336", sb));
+    Assertions.assertEquals("(01)04012345333336", sb.toString());
+    sb.setLength(0);
+    Assertions.assertFalse(BarcodeEAN128Textdecoder.appendHumanText("150312314", sb));
+    Assertions.assertEquals("(15)031231", sb.toString());
+  }
+}
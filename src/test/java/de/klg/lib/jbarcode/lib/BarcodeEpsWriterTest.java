@@ -0,0 +1,58 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the EPS writer
+ *
+ * @author Boris Klug
+ */
+class BarcodeEpsWriterTest {
+
+  @Test
+  void testEan13() throws Exception {
+    BarcodeSpec spec = BarcodeSpec.builder(BarcodeType.EAN13).magnification(2).build();
+    String eps = write(spec, "4001513000620");
+    Assertions.assertTrue(eps.startsWith("%!PS-Adobe-3.0 EPSF-3.0\n%%BoundingBox: 0 0 230 76\n"), eps);
+    Assertions.assertTrue(eps.contains("\n10 10 27 [1 1 1 "), eps); // bars from y 10 to 37
+    Assertions.assertEquals(6, eps.split(" rectfill\n").length - 1); // guard bar extensions
+    Assertions.assertEquals(13, eps.split(" show\n").length - 1); // one per char
+    Assertions.assertTrue(eps.endsWith("grestore\n%%EOF\n"));
+  }
+
+  @Test
+  void testEan13Aligned() throws Exception {
+    // the char positions are relative to the aligned text like in BarcodeRenderer
+    BarcodeSpec spec = BarcodeSpec.builder(BarcodeType.EAN13).build();
+    Assertions.assertTrue(write(spec, "4001513000620").contains("\n/tx 10 def\n"));
+    String eps = write(spec.toBuilder().textAlignment(Barcode.ALIGN_CENTER).build(), "4001513000620");
+    Assertions.assertTrue(eps.contains("(4001513000620) stringwidth pop 2 div neg 57 add /tx exch def\n"), eps);
+    Assertions.assertEquals(13, eps.split(" show\n").length - 1);
+    eps = write(spec.toBuilder().textAlignment(Barcode.ALIGN_RIGHT).build(), "4001513000620");
+    Assertions.assertTrue(eps.contains("(4001513000620) stringwidth pop neg 105 add /tx exch def\n"), eps);
+  }
+
+  @Test
+  void testText() throws Exception {
+    BarcodeSpec spec = BarcodeSpec.builder(BarcodeType.CODE128).textAlignment(Barcode.ALIGN_RIGHT).build();
+    String eps = write(spec, "a(b)\\c");
+    Assertions.assertTrue(eps.contains("(a\\(b\\)\\\\c) dup stringwidth pop neg "), eps);
+    Assertions.assertTrue(eps.contains("/Helvetica findfont"), eps);
+    Assertions.assertEquals("Courier", BarcodeEpsWriter.fontName("Monospaced"));
+  }
+
+  private static String write(BarcodeSpec spec, String code) throws Exception {
+    StringWriter out = new StringWriter();
+    BarcodeEpsWriter.write(spec, code, out);
+    return out.toString();
+  }
+}
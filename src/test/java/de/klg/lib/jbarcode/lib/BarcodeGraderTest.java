@@ -0,0 +1,177 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the print quality grading
+ *
+ * @author Boris Klug
+ */
+class BarcodeGraderTest {
+
+  private final BarcodeGrader grader = new BarcodeGrader();
+
+  @Test
+  void testPerfectImages() throws BarcodeException {
+    Object[][] codes = { { BarcodeType.EAN13, "4006381333931" }, { BarcodeType.EAN8, "40170725" },
+        { BarcodeType.CODE128, "Hello World 4711" }, { BarcodeType.CODE25INTER, "12345670" } };
+    for (Object[] c : codes) {
+      BarcodeType type = (BarcodeType) c[0];
+      Barcode bc = BarcodeSpec.builder(type).magnification(2).build().newBarcode((String) c[1]);
+      BarcodeGrader.Report report = grader.grade(BarcodeRenderer.getBarcodeBufimageDirect(bc));
+      Assertions.assertEquals(type, report.getType());
+      Assertions.assertEquals(c[1], report.getText());
+      Assertions.assertEquals(4f, report.getGrade(), 0f, report.toString());
+      Assertions.assertEquals('A', report.getGradeLetter());
+      Assertions.assertEquals(BarcodeGrader.DEFAULT_SCANLINES, report.getScanCount());
+      for (int scan = 0; scan < report.getScanCount(); ++scan) {
+        Assertions.assertTrue(report.isDecoded(scan));
+        Assertions.assertEquals(0f, report.getRmin(scan), 0f);
+        Assertions.assertEquals(100f, report.getSymbolContrast(scan), 0.01f);
+        Assertions.assertEquals(100f, report.getEdgeContrast(scan), 0.01f);
+        Assertions.assertEquals(1f, report.getModulation(scan), 0f);
+        Assertions.assertEquals(0f, report.getDefects(scan), 0f);
+        Assertions.assertEquals(1f, report.getDecodability(scan), 0f);
+        // the scanlines are in the bars, not in the text
+        Assertions.assertTrue(report.getRow(scan) >= bc.getBarsTop() * 2);
+        Assertions.assertTrue(report.getRow(scan) < (bc.getBarsTop() + bc.getBarHeight()) * 2);
+      }
+    }
+  }
+
+  @Test
+  void testContrast() throws BarcodeException {
+    Barcode bc = BarcodeSpec.builder(BarcodeType.CODE128).magnification(2).build().newBarcode("4711");
+    BufferedImage image = BarcodeRenderer.getBarcodeBufimageDirect(bc);
+
+    // black 60, white 220: symbol contrast 63%
+    BarcodeGrader.Report report = grader.grade(remap(image, 60, 220));
+    Assertions.assertEquals(3f, report.getGrade(), 0f, report.toString());
+    Assertions.assertEquals(3, report.getParameterGrade(BarcodeGrader.Report.SYMBOL_CONTRAST));
+    Assertions.assertEquals(4, report.getParameterGrade(BarcodeGrader.Report.MODULATION));
+    Assertions.assertEquals(62.75f, report.getSymbolContrast(0), 0.01f);
+
+    // black 130, white 240: Rmin is more than half of Rmax
+    report = grader.grade(remap(image, 130, 240));
+    Assertions.assertEquals('F', report.getGradeLetter());
+    Assertions.assertEquals(0, report.getParameterGrade(BarcodeGrader.Report.RMIN));
+    Assertions.assertEquals(4, report.getParameterGrade(BarcodeGrader.Report.DECODE));
+    BarcodeGrader.Report last = report;
+    Assertions.assertThrows(IllegalArgumentException.class, () -> last.getParameterGrade(BarcodeGrader.Report.RMAX));
+  }
+
+  @Test
+  void testDefects() throws BarcodeException {
+    Barcode bc = BarcodeSpec.builder(BarcodeType.CODE128).magnification(4).build().newBarcode("4711");
+    BufferedImage image = BarcodeRenderer.getBarcodeBufimageDirect(bc);
+    WritableRaster raster = image.getRaster();
+
+    // a gray line in the middle of the first wide space
+    int y = image.getHeight() / 2;
+    int x = bc.getPreflightWidth() * 4;
+    while (raster.getSample(x, y, 0) == 0) {
+      ++x;
+    }
+    int start = x;
+    while (raster.getSample(x, y, 0) != 0 || x - start < 8) {
+      if (raster.getSample(x, y, 0) == 0) {
+        while (raster.getSample(x, y, 0) == 0) {
+          ++x;
+        }
+        start = x;
+      }
+      ++x;
+    }
+    for (int row = 0; row < image.getHeight(); ++row) {
+      raster.setSample((start + x) / 2, row, 0, 170);
+    }
+
+    BarcodeGrader.Report report = grader.grade(image);
+    Assertions.assertEquals(85f / 255, report.getDefects(0), 0.001f);
+    Assertions.assertEquals(0, report.getParameterGrade(BarcodeGrader.Report.DEFECTS));
+    Assertions.assertEquals(4, report.getParameterGrade(BarcodeGrader.Report.DECODE));
+    Assertions.assertEquals(0f, report.getGrade(), 0f);
+  }
+
+  @Test
+  void testDecodability() throws BarcodeException {
+    Barcode bc = BarcodeSpec.builder(BarcodeType.EAN13).magnification(2).build().newBarcode("4006381333931");
+    BufferedImage image = BarcodeRenderer.getBarcodeBufimage(bc);
+    BufferedImage scaled = new BufferedImage(image.getWidth() * 17 / 10 + 2, image.getHeight(),
+        BufferedImage.TYPE_BYTE_GRAY);
+    Graphics2D g = scaled.createGraphics();
+    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    g.drawImage(image, AffineTransform.getScaleInstance(1.7, 1), null);
+    g.dispose();
+
+    BarcodeGrader.Report report = grader.grade(scaled);
+    Assertions.assertEquals(BarcodeType.EAN13, report.getType());
+    Assertions.assertTrue(report.getDecodability(0) < 1f);
+    Assertions.assertTrue(report.getDecodability(0) > 0.25f, report.getDecodability(0) + "");
+
+    // the stop char of code 128, 2 pixels per module and with one bar too wide
+    byte[] stop = { 2, 3, 3, 1, 1, 1, 2 };
+    Assertions.assertEquals(1f,
+        BarcodeGrader.decodability(BarcodeType.CODE128, new int[] { 4, 6, 6, 2, 2, 2, 4 }, stop, 7), 0f);
+    Assertions.assertEquals(1 - 2 * (3 * 13 / 27f - 1),
+        BarcodeGrader.decodability(BarcodeType.CODE128, new int[] { 4, 6, 6, 3, 2, 2, 4 }, stop, 7), 0.001f);
+    Assertions.assertEquals(7 / 11f,
+        BarcodeGrader.decodability(BarcodeType.CODE25INTER, new int[] { 2, 2, 6, 3 }, new byte[] { 1, 1, 2, 1 }, 4),
+        0.001f);
+  }
+
+  @Test
+  void testParallel() throws BarcodeException {
+    Barcode bc = BarcodeSpec.builder(BarcodeType.EAN13).magnification(3).build().newBarcode("0123456789012");
+    BufferedImage image = remap(BarcodeRenderer.getBarcodeBufimageDirect(bc), 40, 230);
+    BarcodeGrader.Report expected = grader.grade(image, 25);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      BarcodeGrader.Report report = new BarcodeGrader(pool).grade(image, 25);
+      Assertions.assertEquals(expected.getGrade(), report.getGrade(), 0f);
+      for (int scan = 0; scan < 25; ++scan) {
+        Assertions.assertEquals(expected.getRow(scan), report.getRow(scan));
+        Assertions.assertEquals(expected.getModulation(scan), report.getModulation(scan), 0f);
+        Assertions.assertEquals(expected.getScanGrade(scan), report.getScanGrade(scan));
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void testNoBarcode() {
+    BarcodeGrader.Report report = grader.grade(new BufferedImage(200, 50, BufferedImage.TYPE_BYTE_GRAY));
+    Assertions.assertNull(report.getType());
+    Assertions.assertEquals(0f, report.getGrade(), 0f);
+    Assertions.assertEquals('F', report.getGradeLetter());
+    Assertions.assertThrows(IllegalArgumentException.class, () -> grader.grade(new BufferedImage(1, 1, 1), 0));
+  }
+
+  /**
+   * Maps black to dark and white to light
+   */
+  private static BufferedImage remap(BufferedImage image, int dark, int light) {
+    WritableRaster raster = image.getRaster();
+    for (int y = 0; y < image.getHeight(); ++y) {
+      for (int x = 0; x < image.getWidth(); ++x) {
+        raster.setSample(x, y, 0, dark + raster.getSample(x, y, 0) * (light - dark) / 255);
+      }
+    }
+    return image;
+  }
+}
@@ -0,0 +1,121 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the image cache
+ *
+ * @author Boris Klug
+ */
+class BarcodeImageCacheTest {
+
+  static {
+    System.setProperty("java.awt.headless", "true");
+  }
+
+  private final BarcodeSpec spec = BarcodeSpec.builder(BarcodeType.CODE128).drawtext(false).build();
+
+  @Test
+  void testCopyOnRead() throws BarcodeException {
+    BarcodeImageCache cache = new BarcodeImageCache(1 << 20);
+    BufferedImage first = cache.getBarcodeBufimage(spec, "4006381333931");
+    BufferedImage expected = BarcodeRenderer.getBarcodeBufimage(spec.newBarcode("4006381333931"));
+    assertSameImage(expected, first);
+
+    // drawing on the returned image does not change the cached one
+    first.setRGB(0, 0, 0xff123456);
+    BufferedImage second = cache.getBarcodeBufimage(spec, "4006381333931");
+    Assertions.assertNotSame(first, second);
+    assertSameImage(expected, second);
+    Assertions.assertEquals(1, cache.getHitCount());
+    Assertions.assertEquals(1, cache.getMissCount());
+    Assertions.assertEquals(0.5, cache.getHitRatio(), 0);
+
+    // the replacement text and the barcode properties are part of the key
+    cache.getBarcodeBufimage(spec, "4006381333931", "text");
+    cache.getBarcodeBufimage(spec.newBarcode("4006381333931"));
+    Assertions.assertEquals(2, cache.getHitCount());
+    Assertions.assertEquals(2, cache.getMissCount());
+    Assertions.assertEquals(2, cache.size());
+  }
+
+  @Test
+  void testBudget() throws BarcodeException {
+    long bytes = BarcodeImageCache.rasterBytes(BarcodeRenderer.getBarcodeBufimage(spec.newBarcode("4006381333931")));
+
+    // an image bigger than the budget divided by the segments is still cached
+    BarcodeImageCache cache = new BarcodeImageCache(bytes * 2, 16);
+    cache.getBarcodeBufimage(spec, "4006381333931");
+    cache.getBarcodeBufimage(spec, "4006381333931");
+    Assertions.assertEquals(1, cache.getHitCount());
+    Assertions.assertEquals(bytes, cache.getResidentBytes());
+
+    for (int k = 0; k < 10; k++) {
+      cache.getBarcodeBufimage(spec, "400638133393" + k);
+      Assertions.assertTrue(cache.getResidentBytes() <= cache.getMaxBytes(), cache.toString());
+    }
+    Assertions.assertEquals(2, cache.size());
+    Assertions.assertEquals(2 * bytes, cache.getResidentBytes());
+    // 10 different codes, the one of the first lookup is one of them
+    Assertions.assertEquals(10 - 2, cache.getEvictionCount());
+
+    // an image bigger than the whole budget is not cached
+    cache = new BarcodeImageCache(bytes - 1);
+    cache.getBarcodeBufimage(spec, "4006381333931");
+    Assertions.assertEquals(0, cache.size());
+    Assertions.assertEquals(0, cache.getResidentBytes());
+
+    cache.clear();
+    Assertions.assertEquals(0, cache.getResidentBytes());
+  }
+
+  @Test
+  void testLruEviction() throws BarcodeException {
+    long bytes = BarcodeImageCache.rasterBytes(BarcodeRenderer.getBarcodeBufimage(spec.newBarcode("4006381333931")));
+    BarcodeImageCache cache = new BarcodeImageCache(bytes * 3, 1);
+    cache.getBarcodeBufimage(spec, "4006381333931");
+    cache.getBarcodeBufimage(spec, "4006381333932");
+    cache.getBarcodeBufimage(spec, "4006381333933");
+    // the first one is used again, so the second is the least recently used
+    cache.getBarcodeBufimage(spec, "4006381333931");
+    cache.getBarcodeBufimage(spec, "4006381333934");
+    Assertions.assertEquals(1, cache.getEvictionCount());
+    Assertions.assertEquals(3 * bytes, cache.getResidentBytes());
+
+    long misses = cache.getMissCount();
+    cache.getBarcodeBufimage(spec, "4006381333931");
+    cache.getBarcodeBufimage(spec, "4006381333933");
+    Assertions.assertEquals(misses, cache.getMissCount());
+    cache.getBarcodeBufimage(spec, "4006381333932");
+    Assertions.assertEquals(misses + 1, cache.getMissCount());
+  }
+
+  @Test
+  void testIllegalArguments() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new BarcodeImageCache(0));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new BarcodeImageCache(100, 0));
+    BarcodeImageCache cache = new BarcodeImageCache(1 << 20);
+    Assertions.assertThrows(BarcodeException.class, () -> cache.getBarcodeBufimage(spec, null));
+    Assertions.assertThrows(BarcodeException.class, () -> cache.getBarcodeBufimage(spec.newBarcode(null)));
+    Assertions.assertThrows(BarcodeException.class, () -> cache.getBarcodeBufimage((Barcode) null));
+  }
+
+  private static void assertSameImage(BufferedImage expected, BufferedImage actual) {
+    Assertions.assertEquals(expected.getWidth(), actual.getWidth());
+    Assertions.assertEquals(expected.getHeight(), actual.getHeight());
+    for (int y = 0; y < expected.getHeight(); y++) {
+      for (int x = 0; x < expected.getWidth(); x++) {
+        Assertions.assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+      }
+    }
+  }
+}
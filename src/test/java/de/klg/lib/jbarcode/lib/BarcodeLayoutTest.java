@@ -0,0 +1,96 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the measurement of barcodes without rendering
+ *
+ * @author Boris Klug
+ */
+class BarcodeLayoutTest {
+
+  private static final Object[][] CASES = { { BarcodeType.EAN13, "4001513000620" }, { BarcodeType.EAN8, "40170725" },
+      { BarcodeType.CODE25INTER, "4001513000620" }, { BarcodeType.CODE25INTER, "40015130006205" },
+      { BarcodeType.CODE128, "Hello 4711" }, { BarcodeType.CODE128_A, "HELLO\t4711" },
+      { BarcodeType.EAN128, "01040123453333361503123110123456" } };
+
+  @Test
+  void testMeasureMatchesRenderer() throws BarcodeException {
+    for (Object[] c : CASES) {
+      BarcodeType type = (BarcodeType) c[0];
+      String code = (String) c[1];
+      BarcodeSpec[] specs = { BarcodeSpec.builder(type).build(),
+          BarcodeSpec.builder(type).barWidth(3).magnification(2).baseline(-2).optimizeSubsets(true).build(),
+          BarcodeSpec.builder(type).drawtext(false).preflightWidth(7).build() };
+      for (BarcodeSpec spec : specs) {
+        Barcode bc = spec.newBarcode(code);
+        BufferedImage image = BarcodeRenderer.getBarcodeBufimage(bc);
+        BarcodeDimension d = BarcodeLayout.measure(spec, code);
+        Assertions.assertEquals(image.getWidth(), d.getWidth(), spec.toString());
+        Assertions.assertEquals(image.getHeight(), d.getHeight(), spec.toString());
+        Assertions.assertEquals(bc.getBarsum(bc.getBars()), d.getBarsum(), spec.toString());
+        Assertions.assertEquals(d, BarcodeLayout.measure(bc));
+      }
+    }
+  }
+
+  @Test
+  void testFit() {
+    for (Object[] c : CASES) {
+      BarcodeType type = (BarcodeType) c[0];
+      String code = (String) c[1];
+      for (BarcodeSpec spec : new BarcodeSpec[] { BarcodeSpec.builder(type).build(),
+          BarcodeSpec.builder(type).preflightWidth(4).build() }) {
+        for (int[] box : new int[][] { { 400, 100 }, { 1200, 300 }, { 2000, 60 } }) {
+          BarcodeSpec fit = BarcodeLayout.fit(spec, code, box[0], box[1]);
+          Assertions.assertNotNull(fit, type + " " + box[0]);
+          BarcodeDimension d = BarcodeLayout.measure(fit, code);
+          Assertions.assertTrue(d.getWidth() <= box[0] && d.getHeight() <= box[1], d.toString());
+          Assertions.assertEquals(spec.getBarHeight(), fit.getBarHeight());
+
+          // one more pixel for the smallest bar does not fit
+          int module = d.getModuleWidth() + 1;
+          boolean fits = false;
+          for (int mag = 1; mag <= module; mag++) {
+            if (module % mag == 0) {
+              BarcodeSpec.Builder b = spec.toBuilder().barWidth(module / mag).magnification(mag);
+              if (spec.getPreflightWidth() != 10 * spec.getBarWidth()) {
+                b.preflightWidth(spec.getPreflightWidth());
+              }
+              BarcodeDimension bigger = BarcodeLayout.measure(b.build(), code);
+              fits |= bigger.getWidth() <= box[0] && bigger.getHeight() <= box[1];
+            }
+          }
+          Assertions.assertFalse(fits, d.toString());
+        }
+      }
+    }
+  }
+
+  @Test
+  void testFitMillimeters() {
+    BarcodeSpec spec = BarcodeSpec.builder(BarcodeType.EAN13).build();
+    // 50mm x 25mm at 300dpi are 590 x 295 pixels
+    BarcodeSpec fit = BarcodeLayout.fitMillimeters(spec, "4001513000620", 50, 25, 300);
+    BarcodeDimension d = BarcodeLayout.measure(fit, "4001513000620");
+    Assertions.assertEquals(5, d.getModuleWidth());
+    Assertions.assertEquals(575, d.getWidth());
+    Assertions.assertEquals(48.68f, d.getWidthMillimeters(300), 0.01f);
+    // the biggest magnification is used for the same module width
+    Assertions.assertEquals(1, fit.getBarWidth());
+    Assertions.assertEquals(5, (int) fit.getMagnification());
+    Assertions.assertEquals(300, BarcodeLayout.toPixels(25.4f, 300));
+
+    Assertions.assertNull(BarcodeLayout.fit(spec, "4001513000620", 100, 100));
+    Assertions.assertNull(BarcodeLayout.fit(spec, "4001513000620", 1000, 10));
+  }
+}
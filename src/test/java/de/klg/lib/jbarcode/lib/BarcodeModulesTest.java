@@ -0,0 +1,65 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the packed modules of the barcodes
+ *
+ * @author Boris Klug
+ */
+class BarcodeModulesTest {
+
+  @Test
+  void testModulesMatchBars() {
+    Object[][] cases = { { BarcodeType.EAN13, "4001513000620" }, { BarcodeType.EAN13, "9780201379624" },
+        { BarcodeType.EAN8, "40170725" }, { BarcodeType.CODE25INTER, "40015130006205" },
+        { BarcodeType.CODE25INTER, "12345678901231" }, { BarcodeType.CODE128, "Hello 4711" },
+        { BarcodeType.CODE128, "0123456789012345678901234567890123456789" },
+        { BarcodeType.EAN128, "01040123453333361503123110123456" } };
+    for (Object[] c : cases) {
+      BarcodeType type = (BarcodeType) c[0];
+      String code = (String) c[1];
+      BarcodeSpec spec = BarcodeSpec.builder(type).build();
+      Barcode bc = spec.newBarcode(code);
+      byte[] bars = bc.getBars();
+
+      BarcodeModules modules = bc.getModules();
+      Assertions.assertEquals(BarcodeModules.fromBars(bars, bc.getGuardBarsArray()), modules, code);
+      Assertions.assertEquals(bc.getBarsum(bars), modules.getWidth(), code);
+      Assertions.assertArrayEquals(bars, modules.toBars(), code);
+      Assertions.assertEquals(modules, BarcodeEncoder.forType(type).getModules(spec, code), code);
+    }
+  }
+
+  @Test
+  void testGuard() {
+    BarcodeModules modules = new BarcodeEAN().getModules();
+    Assertions.assertEquals(95, modules.getWidth());
+    Assertions.assertTrue(modules.hasGuard());
+    for (int i = 0; i < 95; i++) {
+      boolean guard = i == 0 || i == 2 || i == 46 || i == 48 || i == 92 || i == 94;
+      Assertions.assertEquals(guard, modules.isGuard(i), "module " + i);
+    }
+    Assertions.assertFalse(new Barcode128().getModules().hasGuard());
+  }
+
+  @Test
+  void testLongRuns() {
+    byte[] bars = { 70, 1, 1, 80, 2 };
+    BarcodeModules modules = BarcodeModules.fromBars(bars, new int[] { 2 });
+    Assertions.assertEquals(154, modules.getWidth());
+    Assertions.assertArrayEquals(bars, modules.toBars());
+    Assertions.assertEquals(70, modules.nextChange(0));
+    Assertions.assertEquals(72, modules.nextChange(71));
+    Assertions.assertEquals(152, modules.nextChange(100));
+    Assertions.assertTrue(modules.isGuard(71));
+    Assertions.assertFalse(modules.isGuard(72));
+  }
+}
@@ -0,0 +1,63 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the PDF label sheet writer
+ *
+ * @author Boris Klug
+ */
+class BarcodePdfWriterTest {
+
+  @Test
+  void testPages() throws Exception {
+    BarcodeSpec spec = BarcodeSpec.builder(BarcodeType.EAN13).build();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BarcodePdfWriter pdf = new BarcodePdfWriter(out);
+    for (int i = 0; i < 30; i++) {
+      pdf.addLabel(spec, "4001513000620");
+    }
+    Assertions.assertEquals(1, pdf.getPageCount()); // 24 labels per page
+    pdf.close();
+    Assertions.assertEquals(2, pdf.getPageCount());
+
+    String text = new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+    Assertions.assertTrue(text.startsWith("%PDF-1.4"));
+    Assertions.assertTrue(text.contains("/Type /Pages /Count 2 /Kids [5 0 R 7 0 R]"), text);
+    Assertions.assertEquals(1, text.split("/BaseFont /Helvetica").length - 1);
+
+    // every entry of the cross reference table points to its object
+    Matcher startxref = Pattern.compile("startxref\n(\\d+)\n").matcher(text);
+    Assertions.assertTrue(startxref.find());
+    int xref = Integer.parseInt(startxref.group(1));
+    Assertions.assertTrue(text.startsWith("xref\n0 8\n", xref));
+    Matcher entries = Pattern.compile("(\\d{10}) 00000 n ").matcher(text.substring(xref));
+    int object = 1;
+    while (entries.find()) {
+      int offset = Integer.parseInt(entries.group(1));
+      Assertions.assertTrue(text.startsWith(object + " 0 obj\n", offset), "object " + object);
+      object++;
+    }
+    Assertions.assertEquals(8, object);
+  }
+
+  @Test
+  void testFormat() {
+    Assertions.assertEquals("12", BarcodePdfWriter.fmt(12f));
+    Assertions.assertEquals("0.5", BarcodePdfWriter.fmt(0.5f));
+    Assertions.assertEquals("-3.25", BarcodePdfWriter.fmt(-3.25f));
+    Assertions.assertEquals(6.67f, BarcodePdfWriter.textWidth("AA", 5), 0.001f);
+  }
+}
@@ -0,0 +1,85 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the ESC/POS and EPL raster writer
+ *
+ * @author Boris Klug
+ */
+class BarcodeRasterWriterTest {
+
+  static {
+    System.setProperty("java.awt.headless", "true");
+  }
+
+  @Test
+  void testEscPosMatchesImage() throws Exception {
+    for (int mag = 1; mag <= 3; mag++) {
+      BarcodeSpec spec = BarcodeSpec.builder(BarcodeType.EAN13).magnification(mag).barWidth(2).build();
+      Barcode bc = spec.newBarcode("4001513000620");
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      BarcodeRasterWriter.writeEscPos(bc, out);
+      byte[] escpos = out.toByteArray();
+
+      BufferedImage image = BarcodeRenderer.getBarcodeBufimageDirect(bc, null, BufferedImage.TYPE_BYTE_BINARY);
+      byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+      int rowBytes = (image.getWidth() + 7) / 8;
+      int rows = (27 + 4) * mag; // bars and guard extension
+      Assertions.assertEquals(rowBytes, (escpos[4] & 0xff) | (escpos[5] & 0xff) << 8);
+      Assertions.assertEquals(rows, (escpos[6] & 0xff) | (escpos[7] & 0xff) << 8);
+      Assertions.assertEquals(8 + rowBytes * rows, escpos.length);
+
+      // first bar row and first guard row of the image, inverted
+      int barRow = 1;
+      int guardRow = 1 + (1 + 27) * mag;
+      Assertions.assertArrayEquals(inverted(data, barRow * rowBytes, rowBytes),
+          Arrays.copyOfRange(escpos, 8, 8 + rowBytes), "mag " + mag);
+      Assertions.assertArrayEquals(inverted(data, guardRow * rowBytes, rowBytes),
+          Arrays.copyOfRange(escpos, escpos.length - rowBytes, escpos.length), "mag " + mag);
+    }
+  }
+
+  @Test
+  void testEpl() throws Exception {
+    Barcode128 bc = new Barcode128();
+    bc.setDrawtext(false);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BarcodeRasterWriter.writeEpl(bc, 10, 20, out);
+    byte[] epl = out.toByteArray();
+    String head = new String(epl, 0, 20, StandardCharsets.US_ASCII);
+    int width = (bc.getModules().getWidth() + 20 + 7) / 8;
+    Assertions.assertTrue(head.startsWith("GW10,20," + width + "," + bc.getBarHeight() + ","), head);
+    Assertions.assertEquals('\n', epl[epl.length - 1]);
+    Assertions.assertEquals((byte) 0xff, epl[epl.length - 2]); // quiet zone is white
+  }
+
+  @Test
+  void testSetBits() {
+    byte[] row = new byte[3];
+    BarcodeRasterWriter.setBits(row, 3, 5);
+    BarcodeRasterWriter.setBits(row, 7, 17);
+    Assertions.assertArrayEquals(new byte[] { (byte) 0x19, (byte) 0xff, (byte) 0x80 }, row);
+  }
+
+  private static byte[] inverted(byte[] data, int offset, int len) {
+    byte[] row = new byte[len];
+    for (int i = 0; i < len; i++) {
+      row[i] = (byte) ~data[offset + i];
+    }
+    return row;
+  }
+}
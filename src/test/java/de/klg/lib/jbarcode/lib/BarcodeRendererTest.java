@@ -0,0 +1,122 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the barcode renderer
+ *
+ * @author Boris Klug
+ */
+class BarcodeRendererTest {
+
+  static {
+    System.setProperty("java.awt.headless", "true");
+  }
+
+  private static final Object[][] CODES = { { BarcodeType.EAN13, "4001513000620" }, { BarcodeType.EAN8, "40170725" },
+      { BarcodeType.CODE25INTER, "4001513000620" }, { BarcodeType.CODE128, "Hello 4711" } };
+
+  @Test
+  void testDirectMatchesGraphics() throws BarcodeException {
+    for (Object[] c : CODES) {
+      for (int mag = 1; mag <= 3; mag++) {
+        for (int barWidth = 1; barWidth <= 2; barWidth++) {
+          for (boolean drawtext : new boolean[] { false, true }) {
+            BarcodeSpec spec = BarcodeSpec.builder((BarcodeType) c[0]).magnification(mag).barWidth(barWidth)
+                .drawtext(drawtext).build();
+            Barcode bc = spec.newBarcode((String) c[1]);
+            String msg = spec.toString();
+
+            BufferedImage expected = BarcodeRenderer.getBarcodeBufimage(bc);
+            BufferedImage gray = BarcodeRenderer.getBarcodeBufimageDirect(bc);
+            assertSamePixels(expected, gray, msg);
+
+            BufferedImage binary = BarcodeRenderer.getBarcodeBufimageDirect(bc, null,
+                BufferedImage.TYPE_BYTE_BINARY);
+            Assertions.assertEquals(BufferedImage.TYPE_BYTE_BINARY, binary.getType());
+            assertSamePixels(expected, binary, msg);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void testGuardBarsAboveText() throws BarcodeException {
+    // text above the bars: no guard bar extension
+    BarcodeSpec spec = BarcodeSpec.builder(BarcodeType.EAN13).baseline(-2).build();
+    Barcode bc = spec.newBarcode("4001513000620");
+    assertSamePixels(BarcodeRenderer.getBarcodeBufimage(bc), BarcodeRenderer.getBarcodeBufimageDirect(bc), "above");
+  }
+
+  @Test
+  void testTextCaches() throws BarcodeException {
+    Assertions.assertSame(BarcodeFontCache.get("SanSerif", 18), BarcodeFontCache.get("SanSerif", 18));
+    Assertions.assertSame(new BarcodeEAN().charPosArray(), new BarcodeEAN().charPosArray());
+    // the public array is a copy, changing it does not move the text of other barcodes
+    BarcodePoint[] charpos = new BarcodeEAN().getCharPosArray();
+    charpos[1].setX(100);
+    Assertions.assertEquals(5f, new BarcodeEAN().getCharPosArray()[1].getX(), 0f);
+    Assertions.assertEquals(5f, BarcodeEncoder.forType(BarcodeType.EAN13).getCharPosArray()[1].getX(), 0f);
+
+    // text with chars outside of the glyph atlas is drawn with Graphics2D
+    for (int alignment : new int[] { Barcode.ALIGN_LEFT, Barcode.ALIGN_CENTER, Barcode.ALIGN_RIGHT }) {
+      Barcode bc = BarcodeSpec.builder(BarcodeType.CODE128).magnification(2).textAlignment(alignment).build()
+          .newBarcode("ABC");
+      for (String text : new String[] { "Gr\u00fc\u00dfe", "{[(x)]}~" }) {
+        assertSamePixels(BarcodeRenderer.getBarcodeBufimage(bc, text),
+            BarcodeRenderer.getBarcodeBufimageDirect(bc, text, BufferedImage.TYPE_BYTE_GRAY), text);
+      }
+    }
+  }
+
+  @Test
+  void testPngRoundTrip() throws BarcodeException, IOException {
+    BarcodePngWriter writer = new BarcodePngWriter();
+    for (Object[] c : CODES) {
+      for (int mag = 1; mag <= 4; mag += 3) {
+        BarcodeSpec spec = BarcodeSpec.builder((BarcodeType) c[0]).magnification(mag).build();
+        Barcode bc = spec.newBarcode((String) c[1]);
+        String msg = spec.toString();
+        for (int type : new int[] { BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_BYTE_BINARY }) {
+          BufferedImage image = BarcodeRenderer.getBarcodeBufimageDirect(bc, null, type);
+          ByteArrayOutputStream out = new ByteArrayOutputStream();
+          writer.write(image, out);
+          assertSamePixels(image, ImageIO.read(new ByteArrayInputStream(out.toByteArray())), msg);
+
+          ByteArrayOutputStream channelOut = new ByteArrayOutputStream();
+          writer.write(image, Channels.newChannel(channelOut));
+          Assertions.assertArrayEquals(out.toByteArray(), channelOut.toByteArray(), msg);
+        }
+      }
+    }
+    writer.end();
+  }
+
+  private static void assertSamePixels(BufferedImage expected, BufferedImage actual, String msg) {
+    Assertions.assertEquals(expected.getWidth(), actual.getWidth(), msg);
+    Assertions.assertEquals(expected.getHeight(), actual.getHeight(), msg);
+    for (int y = 0; y < expected.getHeight(); y++) {
+      for (int x = 0; x < expected.getWidth(); x++) {
+        if (expected.getRGB(x, y) != actual.getRGB(x, y)) {
+          Assertions.fail(msg + " differs at " + x + "," + y);
+        }
+      }
+    }
+  }
+}
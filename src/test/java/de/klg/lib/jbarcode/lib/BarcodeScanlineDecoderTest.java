@@ -0,0 +1,149 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the decoding of rendered barcode images
+ *
+ * @author Boris Klug
+ */
+class BarcodeScanlineDecoderTest {
+
+  private static final Object[][] CODES = { { BarcodeType.EAN13, "4006381333931" },
+      { BarcodeType.EAN13, "0123456789012" }, { BarcodeType.EAN8, "40170725" },
+      { BarcodeType.CODE128, "Hello World 4711" }, { BarcodeType.CODE128, "1234567890" },
+      { BarcodeType.EAN128, "01040123453333361503123110ABC" + Barcode128.FNC1_CHAR + "21X" },
+      { BarcodeType.CODE25INTER, "12345670" }, { BarcodeType.CODE25INTER, "00" } };
+
+  private final BarcodeScanlineDecoder decoder = new BarcodeScanlineDecoder();
+
+  @Test
+  void testRenderedImages() throws BarcodeException {
+    for (Object[] c : CODES) {
+      BarcodeType type = (BarcodeType) c[0];
+      String code = (String) c[1];
+      for (int mag = 1; mag <= 3; ++mag) {
+        for (int barWidth = 1; barWidth <= 2; ++barWidth) {
+          Barcode bc = BarcodeSpec.builder(type).magnification(mag).barWidth(barWidth).build().newBarcode(code);
+          String msg = type + " " + code + " mag " + mag + " barWidth " + barWidth;
+          assertDecoded(type, code, BarcodeRenderer.getBarcodeBufimage(bc), msg);
+          assertDecoded(type, code,
+              BarcodeRenderer.getBarcodeBufimageDirect(bc, null, BufferedImage.TYPE_BYTE_BINARY), msg);
+          assertDecoded(type, code, convert(BarcodeRenderer.getBarcodeBufimageDirect(bc),
+              BufferedImage.TYPE_INT_RGB, AffineTransform.getScaleInstance(1, 1)), msg);
+          // read with Raster.getSamples()
+          assertDecoded(type, code, convert(BarcodeRenderer.getBarcodeBufimageDirect(bc),
+              BufferedImage.TYPE_USHORT_GRAY, AffineTransform.getScaleInstance(1, 1)), msg);
+        }
+      }
+    }
+  }
+
+  @Test
+  void testTransformedImages() throws BarcodeException {
+    for (Object[] c : CODES) {
+      BarcodeType type = (BarcodeType) c[0];
+      String code = (String) c[1];
+      Barcode bc = BarcodeSpec.builder(type).magnification(2).build().newBarcode(code);
+      BufferedImage image = BarcodeRenderer.getBarcodeBufimage(bc);
+
+      // upside down, the bars are read from right to left
+      AffineTransform rotate = AffineTransform.getQuadrantRotateInstance(2, image.getWidth() / 2.0,
+          image.getHeight() / 2.0);
+      assertDecoded(type, code, convert(image, BufferedImage.TYPE_3BYTE_BGR, rotate), type + " rotated");
+
+      // not an integer number of pixels per module, with gray edges
+      assertDecoded(type, code, convert(image, BufferedImage.TYPE_INT_ARGB, AffineTransform.getScaleInstance(1.7, 1)),
+          type + " scaled");
+    }
+  }
+
+  @Test
+  void testResult() throws BarcodeException {
+    Barcode bc = BarcodeSpec.builder(BarcodeType.EAN13).build().newBarcode("4006381333931");
+    BufferedImage image = BarcodeRenderer.getBarcodeBufimageDirect(bc);
+    BarcodeScanlineDecoder.Result result = decoder.decodeRow(image, bc.getBarsTop() + 10);
+    Assertions.assertNotNull(result);
+    Assertions.assertEquals(bc.getPreflightWidth(), result.getX());
+    Assertions.assertEquals(95, result.getWidth());
+    Assertions.assertEquals(bc.getBarsTop() + 10, result.getRow());
+  }
+
+  @Test
+  void testDataBitOffset() throws BarcodeException {
+    // a 1 bit image whose rows do not start on a byte boundary
+    Barcode bc = BarcodeSpec.builder(BarcodeType.EAN13).build().newBarcode("4006381333931");
+    BufferedImage source = BarcodeRenderer.getBarcodeBufimageDirect(bc);
+    int width = source.getWidth();
+    int height = source.getHeight();
+    int stride = (13 + width + 7) / 8;
+    MultiPixelPackedSampleModel sm = new MultiPixelPackedSampleModel(DataBuffer.TYPE_BYTE, width, height, 1, stride,
+        13);
+    WritableRaster raster = Raster.createWritableRaster(sm, new DataBufferByte(stride * height), null);
+    byte[] bw = { 0, (byte) 0xff };
+    BufferedImage image = new BufferedImage(new IndexColorModel(1, 2, bw, bw, bw), raster, false, null);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, source.getRGB(x, y));
+      }
+    }
+    BarcodeScanlineDecoder.Result result = decoder.decodeRow(image, bc.getBarsTop() + 10);
+    Assertions.assertNotNull(result);
+    Assertions.assertEquals("4006381333931", result.getText());
+    Assertions.assertEquals(bc.getPreflightWidth(), result.getX());
+    assertDecoded(BarcodeType.EAN13, "4006381333931", image, "data bit offset");
+  }
+
+  @Test
+  void testNoBarcode() throws BarcodeException {
+    Assertions.assertNull(decoder.decode(new BufferedImage(200, 50, BufferedImage.TYPE_BYTE_GRAY)));
+
+    // a damaged barcode is not decoded to a wrong text
+    Barcode bc = BarcodeSpec.builder(BarcodeType.EAN13).magnification(2).build().newBarcode("4006381333931");
+    BufferedImage image = BarcodeRenderer.getBarcodeBufimageDirect(bc);
+    Graphics2D g = image.createGraphics();
+    g.setColor(Color.WHITE);
+    g.fillRect(bc.getPreflightWidth() * 2 + 40, 0, 8, image.getHeight());
+    g.dispose();
+    Assertions.assertNull(decoder.decode(image));
+  }
+
+  private void assertDecoded(BarcodeType type, String code, BufferedImage image, String msg) {
+    BarcodeScanlineDecoder.Result result = decoder.decode(image);
+    Assertions.assertNotNull(result, msg);
+    Assertions.assertEquals(type, result.getType(), msg);
+    String expected = type == BarcodeType.CODE25INTER && code.length() % 2 == 1 ? code.substring(1) : code;
+    Assertions.assertEquals(expected, result.getText(), msg);
+  }
+
+  private static BufferedImage convert(BufferedImage image, int type, AffineTransform tx) {
+    BufferedImage result = new BufferedImage((int) Math.ceil(image.getWidth() * Math.abs(tx.getScaleX())) + 2,
+        image.getHeight(), type);
+    Graphics2D g = result.createGraphics();
+    g.setColor(Color.WHITE);
+    g.fillRect(0, 0, result.getWidth(), result.getHeight());
+    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    g.drawImage(image, tx, null);
+    g.dispose();
+    return result;
+  }
+}
@@ -0,0 +1,63 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the immutable barcode spec and the stateless encoders
+ *
+ * @author Boris Klug
+ */
+class BarcodeSpecTest {
+
+  @Test
+  void testEncoderMatchesBarcode() {
+    Object[][] cases = { { BarcodeType.EAN13, "4001513000620" }, { BarcodeType.EAN8, "40170725" },
+        { BarcodeType.CODE25INTER, "4001513000620" }, { BarcodeType.CODE128, "Hello 4711" },
+        { BarcodeType.CODE128_A, "HELLO\t4711" }, { BarcodeType.EAN128, "01040123453333361503123110123456" } };
+    for (Object[] c : cases) {
+      BarcodeType type = (BarcodeType) c[0];
+      String code = (String) c[1];
+      BarcodeSpec spec = BarcodeSpec.builder(type).build();
+      Barcode bc = spec.newBarcode(code);
+      BarcodeEncoder encoder = BarcodeEncoder.forType(type);
+      Assertions.assertArrayEquals(bc.getBars(), encoder.getBars(spec, code), type.name());
+      Assertions.assertEquals(bc.toHumanText(code), encoder.toHumanText(spec, code), type.name());
+      Assertions.assertEquals(spec, BarcodeSpec.of(bc), type.name());
+    }
+  }
+
+  @Test
+  void testBuilder() {
+    BarcodeSpec spec = BarcodeSpec.builder(BarcodeType.EAN13).barWidth(2).barHeight(40).build();
+    Assertions.assertEquals(20, spec.getPreflightWidth());
+    Assertions.assertEquals(95 * 2 + 40, spec.getTotalWidth());
+    Assertions.assertArrayEquals(BarcodeEAN.GUARD_EAN13, spec.getGuardBarsArray());
+    spec.getGuardBarsArray()[0] = -1;
+    Assertions.assertArrayEquals(BarcodeEAN.GUARD_EAN13, spec.getGuardBarsArray());
+    BarcodeEncoder.forType(BarcodeType.EAN13).getGuardBarsArray()[0] = -1;
+    Assertions.assertArrayEquals(BarcodeEAN.GUARD_EAN13, BarcodeEncoder.forType(BarcodeType.EAN13).getGuardBarsArray());
+    Assertions.assertTrue(spec.isUseCharPos());
+
+    BarcodeSpec copy = spec.toBuilder().build();
+    Assertions.assertEquals(spec, copy);
+    Assertions.assertEquals(spec.hashCode(), copy.hashCode());
+    Assertions.assertNotEquals(spec, spec.toBuilder().preflightWidth(5).build());
+    Assertions.assertEquals(-1, BarcodeSpec.builder(BarcodeType.CODE128).build().getTotalWidth());
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> BarcodeSpec.builder(BarcodeType.CODE128_UCC));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> spec.toBuilder().barWidth(0).build());
+    Assertions.assertThrows(IllegalArgumentException.class, () -> spec.toBuilder().barHeight(-1).build());
+    Assertions.assertThrows(IllegalArgumentException.class, () -> spec.toBuilder().magnification(0).build());
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> spec.toBuilder().magnification(Float.NaN).build());
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> BarcodeEncoder.forType(BarcodeType.EAN8).getBars(spec, "40170725"));
+  }
+}
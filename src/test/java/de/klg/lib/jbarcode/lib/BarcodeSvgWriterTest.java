@@ -0,0 +1,80 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+/**
+ * Test for the SVG writer
+ *
+ * @author Boris Klug
+ */
+class BarcodeSvgWriterTest {
+
+  @Test
+  void testEan13() throws Exception {
+    BarcodeSpec spec = BarcodeSpec.builder(BarcodeType.EAN13).magnification(2).build();
+    Document doc = parse(spec, "4001513000620");
+    Element svg = doc.getDocumentElement();
+    int width = 95 + 2 * 10;
+    Assertions.assertEquals("0 0 " + width + " " + (27 + 2 + 9), svg.getAttribute("viewBox"));
+    Assertions.assertEquals(Integer.toString(2 * width), svg.getAttribute("width"));
+
+    String d = ((Element) doc.getElementsByTagName("path").item(0)).getAttribute("d");
+    Assertions.assertEquals(30, d.split("M").length - 1); // 59 bars and spaces
+    Assertions.assertTrue(d.startsWith("M10 1h1v31h-1z")); // guard bar with extension
+    Element text = (Element) doc.getElementsByTagName("text").item(0);
+    Assertions.assertEquals("4001513000620", text.getTextContent());
+    Assertions.assertEquals(13, text.getAttribute("x").split(" ").length);
+  }
+
+  @Test
+  void testEan13Aligned() throws Exception {
+    // the char positions are relative to the aligned text like in BarcodeRenderer
+    BarcodeSpec spec = BarcodeSpec.builder(BarcodeType.EAN13).build();
+    int width = BarcodeFontCache.get(spec.getFontname(), spec.getFontsize()).metrics.stringWidth("4001513000620");
+    int left = firstX(parse(spec, "4001513000620"));
+    int center = firstX(parse(spec.toBuilder().textAlignment(Barcode.ALIGN_CENTER).build(), "4001513000620"));
+    int right = firstX(parse(spec.toBuilder().textAlignment(Barcode.ALIGN_RIGHT).build(), "4001513000620"));
+    Assertions.assertEquals(left + 95 / 2 - width / 2, center);
+    Assertions.assertEquals(left + 95 - width, right);
+  }
+
+  @Test
+  void testCode128Text() throws Exception {
+    BarcodeSpec spec = BarcodeSpec.builder(BarcodeType.CODE128).textAlignment(Barcode.ALIGN_RIGHT).build();
+    Document doc = parse(spec, "A<B>&C");
+    Element text = (Element) doc.getElementsByTagName("text").item(0);
+    Assertions.assertEquals("A<B>&C", text.getTextContent());
+    Assertions.assertEquals("end", text.getAttribute("text-anchor"));
+    Assertions.assertEquals("sans-serif", text.getAttribute("font-family"));
+
+    Document noText = parse(spec.toBuilder().drawtext(false).build(), "A<B>&C");
+    Assertions.assertEquals(0, noText.getElementsByTagName("text").getLength());
+  }
+
+  private static int firstX(Document doc) {
+    Element text = (Element) doc.getElementsByTagName("text").item(0);
+    return Integer.parseInt(text.getAttribute("x").split(" ")[0]);
+  }
+
+  private static Document parse(BarcodeSpec spec, String code) throws Exception {
+    StringWriter out = new StringWriter();
+    BarcodeSvgWriter.write(spec, code, out);
+    return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+        .parse(new InputSource(new StringReader(out.toString())));
+  }
+}
@@ -0,0 +1,102 @@
+/* ----------------------------------------------------------------------------
+ * JBarcode - https://github.com/borisklug/jbarcode
+ *
+ * Written by Boris Klug, https://klg.de/
+ * Licensed under the Apache License Version 2.0
+ * ---------------------------------------------------------------------------- */
+package de.klg.lib.jbarcode.lib;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the ZPL writer
+ *
+ * @author Boris Klug
+ */
+class BarcodeZplWriterTest {
+
+  @Test
+  void testCode128Subsets() {
+    String[] codes = { "Hello 4711", "0123456789", "AB12345678cd", "a>b^c~d_e", "01040123453333361503123110123456",
+        "x" + Barcode128.FNC1_CHAR + "12" };
+    for (BarcodeType type : new BarcodeType[] { BarcodeType.CODE128, BarcodeType.EAN128 }) {
+      for (boolean optimize : new boolean[] { false, true }) {
+        for (String code : codes) {
+          Barcode128 bc = (Barcode128) BarcodeSpec.builder(type).optimizeSubsets(optimize).build().newBarcode(code);
+          String data = BarcodeZplWriter.code128Data(bc);
+          byte[] expected = new byte[Barcode128.toCodewords(type, optimize, code, null, null, 0)];
+          Barcode128.toCodewords(type, optimize, code, expected, null, 0);
+          Assertions.assertArrayEquals(expected, decode(data), type + " " + code + " -> " + data);
+        }
+      }
+    }
+    Barcode128 bc = new Barcode128();
+    bc.setCode("A\tB");
+    Assertions.assertNull(BarcodeZplWriter.code128Data(bc)); // control char
+  }
+
+  @Test
+  void testNativeAndBoxes() throws Exception {
+    BarcodeEAN ean = new BarcodeEAN();
+    String zpl = BarcodeZplWriter.toZpl(ean, 0, 0);
+    Assertions.assertTrue(zpl.contains("^BEN,27,Y,N^FH_^FD400151300062^FS"), zpl);
+
+    ean.setCode("4001513000621"); // wrong check digit
+    zpl = BarcodeZplWriter.toZpl(ean, 0, 0);
+    Assertions.assertEquals(30, count(zpl, "^GB"), zpl);
+
+    BarcodeInter25 itf = new BarcodeInter25();
+    itf.setCode("12345");
+    Assertions.assertEquals(14, count(BarcodeZplWriter.toZpl(itf, 0, 0), "^GB"));
+    itf.setCode("1234");
+    Assertions.assertTrue(BarcodeZplWriter.toZpl(itf, 0, 0).contains("^B2N,24,N,N,N^FH_^FD1234^FS"));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BarcodeZplWriter.write(BarcodeSpec.builder(BarcodeType.EAN128).build().newBarcode("0104012345333336"), out);
+    String label = new String(out.toByteArray(), StandardCharsets.US_ASCII);
+    Assertions.assertTrue(label.startsWith("^XA"));
+    Assertions.assertTrue(label.contains("^FD(01)04012345333336^FS"), label);
+  }
+
+  /**
+   * Converts ^BC data with invocation codes back to code 128 chars
+   */
+  private static byte[] decode(String data) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    int subset = 0;
+    for (int i = 0; i < data.length(); i++) {
+      char c = data.charAt(i);
+      if (c == '>') {
+        char d = data.charAt(++i);
+        if (d >= '9' && d <= ';') {
+          subset = d - '9' + Barcode128.START_A;
+          out.write(subset);
+        } else if (d == '0') {
+          out.write('>' - ' ');
+        } else {
+          int v = d + 46;
+          out.write(v);
+          if (v >= Barcode128.CODE_AB_TO_C && v <= Barcode128.CODE_BC_TO_A) {
+            subset = Barcode128.START_C - (v - Barcode128.CODE_AB_TO_C);
+          }
+        }
+      } else if (c == '_') {
+        out.write(Integer.parseInt(data.substring(i + 1, i + 3), 16) - ' ');
+        i += 2;
+      } else if (subset == Barcode128.START_C) {
+        out.write((c - '0') * 10 + data.charAt(++i) - '0');
+      } else {
+        out.write(c - ' ');
+      }
+    }
+    return out.toByteArray();
+  }
+
+  private static int count(String s, String part) {
+    return s.split(java.util.regex.Pattern.quote(part), -1).length - 1;
+  }
+}